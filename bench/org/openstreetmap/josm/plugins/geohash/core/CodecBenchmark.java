@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import net.exfidefortis.map.BoundingBox;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+import net.exfidefortis.map.Point;
+
+
+/**
+ * Measures the string based {@link Codec} and the packed {@link LongCodec} on random locations.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({ "5", "8", "12" })
+    private int precision;
+
+    private final Codec codec = new Codec();
+    private Point[] points;
+    private double[] latitudes;
+    private double[] longitudes;
+    private String[] codes;
+    private long[] packedCodes;
+    private final double[] bounds = new double[4];
+    private final long[] bulkCodes = new long[SAMPLE_SIZE];
+    private final double[] bulkBounds = new double[SAMPLE_SIZE * 4];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        points = new Point[SAMPLE_SIZE];
+        latitudes = new double[SAMPLE_SIZE];
+        longitudes = new double[SAMPLE_SIZE];
+        codes = new String[SAMPLE_SIZE];
+        packedCodes = new long[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            latitudes[i] = random.nextDouble() * 180 - 90;
+            longitudes[i] = random.nextDouble() * 360 - 180;
+            points[i] = new Point(Longitude.forDegrees(longitudes[i]), Latitude.forDegrees(latitudes[i]));
+            codes[i] = codec.encode(points[i], precision);
+            packedCodes[i] = LongCodec.fromString(codes[i]);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (SAMPLE_SIZE - 1);
+        return index;
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(points[next()], precision);
+    }
+
+    @Benchmark
+    public BoundingBox decode() {
+        return codec.decode(codes[next()]);
+    }
+
+    @Benchmark
+    public long encodePacked() {
+        final int i = next();
+        return LongCodec.encode(latitudes[i], longitudes[i], precision);
+    }
+
+    @Benchmark
+    public double[] decodePacked() {
+        LongCodec.decode(packedCodes[next()], bounds);
+        return bounds;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public long[] encodeBulk() {
+        LongCodec.encode(latitudes, longitudes, precision, bulkCodes);
+        return bulkCodes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public double[] decodeBulk() {
+        LongCodec.decode(packedCodes, bulkBounds);
+        return bulkBounds;
+    }
+}
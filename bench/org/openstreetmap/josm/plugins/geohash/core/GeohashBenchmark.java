@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Collection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import net.exfidefortis.map.BoundingBox;
+
+
+/**
+ * Measures the navigation and decoding operations of {@link Geohash}.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeohashBenchmark {
+
+    @Param({ "u", "u33d", "u33dc0cpke" })
+    private String code;
+
+    @Benchmark
+    public Collection<Geohash> children() {
+        return new Geohash(code).children();
+    }
+
+    @Benchmark
+    public Collection<Geohash> neighbors() {
+        return new Geohash(code).neighbors();
+    }
+
+    @Benchmark
+    public BoundingBox bounds() {
+        // a new instance each time, since the bounds are cached by the geohash
+        return new Geohash(code).bounds();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Collection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import net.exfidefortis.map.BoundingBox;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+
+
+/**
+ * Measures the viewport cover computation of {@link GeohashIdentifier} for viewports of different widths (zoom
+ * levels), all centered on Berlin.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeohashIdentifierBenchmark {
+
+    private static final double CENTER_LATITUDE = 52.52;
+    private static final double CENTER_LONGITUDE = 13.40;
+
+    /** The viewport width in degrees; the height is half of it, similar to a landscape map view */
+    @Param({ "90", "10", "1", "0.1", "0.01", "0.001" })
+    private double width;
+
+    private GeohashIdentifier identifier;
+    private BoundingBox bounds;
+
+    @Setup
+    public void setUp() {
+        identifier = new GeohashIdentifier();
+        final double height = width / 2;
+        bounds = new BoundingBox.Builder()
+                .north(Latitude.forDegrees(Math.min(Latitude.MAXIMUM_DEGREE_VALUE, CENTER_LATITUDE + height / 2)))
+                .south(Latitude.forDegrees(Math.max(Latitude.MINIMUM_DEGREE_VALUE, CENTER_LATITUDE - height / 2)))
+                .east(Longitude.forDegrees(CENTER_LONGITUDE + width / 2))
+                .west(Longitude.forDegrees(CENTER_LONGITUDE - width / 2)).build();
+    }
+
+    /** Repeated paints of the same view, answered from the cache */
+    @Benchmark
+    public Collection<Geohash> get() {
+        return identifier.get(bounds);
+    }
+
+    /** A new view on each call, so the cover is always computed */
+    @Benchmark
+    public Collection<Geohash> getUncached() {
+        identifier.clearCache();
+        return identifier.get(bounds);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.data.Bounds;
+import net.exfidefortis.map.BoundingBox;
+
+
+/**
+ * Measures the conversion between JOSM bounds and geohash bounding boxes.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+
+    private final Bounds bounds = new Bounds(52.4, 13.2, 52.6, 13.6);
+
+    @Benchmark
+    public BoundingBox convertBoundsToBoundingBox() {
+        return Convert.convertBoundsToBoundingBox(bounds);
+    }
+}
@@ -78,6 +78,22 @@ public class BoundingBox {
     }
 
 
+    /**
+     * Builds a bounding box from its boundaries given in decimal degrees.
+     *
+     * @param north the north latitude
+     * @param south the south latitude
+     * @param east the east longitude
+     * @param west the west longitude
+     * @return a new bounding box
+     */
+    public static BoundingBox forDegrees(final double north, final double south, final double east,
+            final double west) {
+        return new BoundingBox(Latitude.forDegrees(north), Latitude.forDegrees(south), Longitude.forDegrees(east),
+                Longitude.forDegrees(west));
+    }
+
+
     /** A bounding box which encompasses the whole world */
     public static final BoundingBox WORLD =
             new BoundingBox(Latitude.MAXIMUM, Latitude.MINIMUM, Longitude.MAXIMUM, Longitude.MINIMUM);
@@ -222,37 +238,111 @@ public class BoundingBox {
         if (point == null) {
             throw new IllegalArgumentException("received null point");
         }
-        return point.latitude().asDegrees() >= south.asDegrees() && point.latitude().asDegrees() <= north.asDegrees()
-                && point.longitude().asDegrees() >= west.asDegrees()
-                && point.longitude().asDegrees() <= east.asDegrees();
+        return contains(north.asDegrees(), south.asDegrees(), east.asDegrees(), west.asDegrees(),
+                point.latitude().asDegrees(), point.longitude().asDegrees());
     }
 
     public boolean contains(final BoundingBox other) {
         if (other == null) {
             throw new IllegalArgumentException("received null bounding box");
         }
-        return contains(other.northEast()) && contains(other.northWest()) && contains(other.southEast())
-                && contains(other.southWest());
+        return contains(north.asDegrees(), south.asDegrees(), east.asDegrees(), west.asDegrees(),
+                other.north.asDegrees(), other.south.asDegrees(), other.east.asDegrees(), other.west.asDegrees());
     }
 
     public boolean intersects(final BoundingBox other) {
         if (other == null) {
             throw new IllegalArgumentException("received null bounding box");
         }
-        return (intersectsLatitude(other) && other.intersectsLongitude(this))
-                || (intersectsLongitude(other) && other.intersectsLatitude(this));
+        return intersects(north.asDegrees(), south.asDegrees(), east.asDegrees(), west.asDegrees(),
+                other.north.asDegrees(), other.south.asDegrees(), other.east.asDegrees(), other.west.asDegrees());
     }
 
-    private boolean intersectsLatitude(final BoundingBox other) {
-        return other.south().between(south, north) || other.north().between(south, north);
+    public boolean sharesAreaWith(final BoundingBox other) {
+        return sharesAreaWith(north.asDegrees(), south.asDegrees(), east.asDegrees(), west.asDegrees(),
+                other.north.asDegrees(), other.south.asDegrees(), other.east.asDegrees(), other.west.asDegrees());
+    }
+
+    /*
+     * Primitive forms of the checks above, working on the boundaries in decimal degrees. They allocate nothing, so they
+     * can be used in loops over many bounding boxes; the object methods delegate to them.
+     */
+
+    /**
+     * Checks if the bounding box with the given boundaries contains the given location.
+     *
+     * @param north the north boundary, in decimal degrees
+     * @param south the south boundary, in decimal degrees
+     * @param east the east boundary, in decimal degrees
+     * @param west the west boundary, in decimal degrees
+     * @param latitude the latitude of the location, in decimal degrees
+     * @param longitude the longitude of the location, in decimal degrees
+     * @return true if the location is inside the bounding box or on its edges, false otherwise
+     */
+    public static boolean contains(final double north, final double south, final double east, final double west,
+            final double latitude, final double longitude) {
+        return latitude >= south && latitude <= north && longitude >= west && longitude <= east;
     }
 
-    private boolean intersectsLongitude(final BoundingBox other) {
-        return other.west().between(west, east) || other.east().between(west, east);
+    /**
+     * Checks if the first bounding box contains the second one. Both are given by their boundaries in decimal degrees.
+     *
+     * @return true if all the corners of the other bounding box are inside this one or on its edges, false otherwise
+     */
+    public static boolean contains(final double north, final double south, final double east, final double west,
+            final double otherNorth, final double otherSouth, final double otherEast, final double otherWest) {
+        return otherSouth >= south && otherNorth <= north && otherWest >= west && otherEast <= east;
     }
 
-    public boolean sharesAreaWith(final BoundingBox other) {
-        return contains(other) || intersects(other) || other.contains(this);
+    /**
+     * Checks if the edges of the two bounding boxes cross each other. Both are given by their boundaries in decimal
+     * degrees.
+     *
+     * @return true if the bounding boxes intersect, false otherwise
+     */
+    public static boolean intersects(final double north, final double south, final double east, final double west,
+            final double otherNorth, final double otherSouth, final double otherEast, final double otherWest) {
+        return (crosses(otherSouth, otherNorth, south, north) && crosses(west, east, otherWest, otherEast))
+                || (crosses(otherWest, otherEast, west, east) && crosses(south, north, otherSouth, otherNorth));
+    }
+
+    /**
+     * Checks if the two bounding boxes have a common area, either because one contains the other or because they
+     * intersect. Both are given by their boundaries in decimal degrees.
+     *
+     * @return true if the bounding boxes share an area, false otherwise
+     */
+    public static boolean sharesAreaWith(final double north, final double south, final double east, final double west,
+            final double otherNorth, final double otherSouth, final double otherEast, final double otherWest) {
+        return contains(north, south, east, west, otherNorth, otherSouth, otherEast, otherWest)
+                || intersects(north, south, east, west, otherNorth, otherSouth, otherEast, otherWest)
+                || contains(otherNorth, otherSouth, otherEast, otherWest, north, south, east, west);
+    }
+
+    /*
+     * Checks if one of the bounds of the first interval lies strictly inside the second interval.
+     */
+    private static boolean crosses(final double minimum, final double maximum, final double rangeMinimum,
+            final double rangeMaximum) {
+        return (minimum > rangeMinimum && minimum < rangeMaximum) || (maximum > rangeMinimum && maximum < rangeMaximum);
+    }
+
+    /**
+     * Returns the width of this bounding box.
+     *
+     * @return the difference between the east and west longitudes, in decimal degrees
+     */
+    public double widthInDegrees() {
+        return east.asDegrees() - west.asDegrees();
+    }
+
+    /**
+     * Returns the height of this bounding box.
+     *
+     * @return the difference between the north and south latitudes, in decimal degrees
+     */
+    public double heightInDegrees() {
+        return north.asDegrees() - south.asDegrees();
     }
 
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.batch;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.openstreetmap.josm.plugins.geohash.core.LongCodec;
+
+
+/**
+ * Headless command line tool which appends a geohash column to a delimited text file (e.g. CSV or TSV). It only uses
+ * the core package of the plug-in, so it can be run from the plug-in jar without JOSM:
+ *
+ * <pre>
+ * java -jar geohash.jar [options] &lt;input&gt; &lt;output&gt;
+ * </pre>
+ *
+ * The input file is memory mapped and split at row boundaries into chunks, which are geohashed in parallel on a
+ * fork-join pool and written to the output channel in their original order. The coordinates are parsed directly from
+ * the mapped bytes. A bounded number of chunks is in flight at any time, so the memory use does not depend on the size
+ * of the input.
+ *
+ * @author agent
+ */
+public final class BatchGeohasher {
+
+    /** The nominal size of the chunks the input is split into; actual chunks end at the next row boundary */
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /** The number of chunks processed or waiting to be written, per thread */
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private static final int BOUNDARY_SEARCH_BUFFER_SIZE = 64 * 1024;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+
+    private static final String USAGE = "Usage: java -jar geohash.jar [options] <input> <output>\n"
+            + "Appends a geohash column to the rows of a delimited text file.\n"
+            + "Options:\n"
+            + "  --latitude-column <n>   the column holding the latitude, counted from 1 (default 1)\n"
+            + "  --longitude-column <n>  the column holding the longitude, counted from 1 (default 2)\n"
+            + "  --precision <n>         the length of the geohashes, 1 to " + LongCodec.MAX_PRECISION
+            + " (default 7)\n"
+            + "  --delimiter <c>         the column delimiter; 'tab' for tabs (default tab for .tsv files, comma"
+            + " otherwise)\n"
+            + "  --header                the first row is a header; 'geohash' is appended to it\n"
+            + "  --threads <n>           the number of worker threads (default: the number of processors)\n";
+
+    private Path input;
+    private Path output;
+    private int latitudeColumn = 0;
+    private int longitudeColumn = 1;
+    private int precision = 7;
+    private Byte delimiter;
+    private boolean header;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private long rowCount;
+    private long invalidRowCount;
+
+
+    private BatchGeohasher() {}
+
+    public static void main(final String[] args) {
+        final BatchGeohasher geohasher;
+        try {
+            geohasher = parseArguments(args);
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            geohasher.run(System.err);
+        } catch (final IOException e) {
+            System.err.println("Geohashing failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds a geohasher from the command line arguments.
+     *
+     * @param args the options followed by the input and output file names
+     * @return the configured geohasher
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    static BatchGeohasher parseArguments(final String[] args) {
+        final BatchGeohasher geohasher = new BatchGeohasher();
+        int index = 0;
+        while (index < args.length && args[index].startsWith("--")) {
+            final String option = args[index++];
+            if (option.equals("--header")) {
+                geohasher.header = true;
+            } else {
+                if (index == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                final String value = args[index++];
+                switch (option) {
+                    case "--latitude-column":
+                        geohasher.latitudeColumn = parseInt(option, value, 1, Integer.MAX_VALUE) - 1;
+                        break;
+                    case "--longitude-column":
+                        geohasher.longitudeColumn = parseInt(option, value, 1, Integer.MAX_VALUE) - 1;
+                        break;
+                    case "--precision":
+                        geohasher.precision = parseInt(option, value, 1, LongCodec.MAX_PRECISION);
+                        break;
+                    case "--threads":
+                        geohasher.threads = parseInt(option, value, 1, Short.MAX_VALUE);
+                        break;
+                    case "--delimiter":
+                        geohasher.delimiter = parseDelimiter(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+        }
+        if (args.length - index != 2) {
+            throw new IllegalArgumentException("Expected an input and an output file");
+        }
+        if (geohasher.latitudeColumn == geohasher.longitudeColumn) {
+            throw new IllegalArgumentException("The latitude and longitude columns must differ");
+        }
+        geohasher.input = Paths.get(args[index]);
+        geohasher.output = Paths.get(args[index + 1]);
+        if (geohasher.delimiter == null) {
+            geohasher.delimiter = (byte) (args[index].toLowerCase().endsWith(".tsv") ? '\t' : ',');
+        }
+        return geohasher;
+    }
+
+    private static int parseInt(final String option, final String value, final int minimum, final int maximum) {
+        final int result;
+        try {
+            result = Integer.parseInt(value);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+        }
+        if (result < minimum || result > maximum) {
+            throw new IllegalArgumentException(
+                    "The value of " + option + " must be in the interval [" + minimum + ", " + maximum + "]");
+        }
+        return result;
+    }
+
+    private static byte parseDelimiter(final String value) {
+        final byte delimiter;
+        if (value.equals("tab") || value.equals("\\t")) {
+            delimiter = '\t';
+        } else if (value.length() == 1 && value.charAt(0) < 0x80 && value.charAt(0) != '\n'
+                && value.charAt(0) != '\r') {
+            delimiter = (byte) value.charAt(0);
+        } else {
+            throw new IllegalArgumentException("The delimiter must be a single ASCII character: " + value);
+        }
+        return delimiter;
+    }
+
+    /**
+     * Geohashes the input file into the output file and reports the throughput.
+     *
+     * @param report the stream receiving the report
+     * @throws IOException if reading or writing fails
+     */
+    void run(final PrintStream report) throws IOException {
+        final long startTime = System.nanoTime();
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel inputChannel = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel outputChannel = FileChannel.open(output, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final long size = inputChannel.size();
+            final Deque<ForkJoinTask<ChunkEncoder>> inFlight = new ArrayDeque<>();
+            long chunkStart = 0;
+            while (chunkStart < size || !inFlight.isEmpty()) {
+                while (chunkStart < size && inFlight.size() < threads * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                    final long chunkEnd = rowBoundary(inputChannel, Math.min(size, chunkStart + CHUNK_SIZE), size);
+                    final ByteBuffer chunk =
+                            inputChannel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+                    inFlight.add(pool.submit(new ChunkEncoder(chunk, delimiter, latitudeColumn, longitudeColumn,
+                            precision, header && chunkStart == 0)));
+                    chunkStart = chunkEnd;
+                }
+                final ChunkEncoder encoder = inFlight.remove().join();
+                encoder.writeTo(outputChannel);
+                rowCount += encoder.rowCount();
+                invalidRowCount += encoder.invalidRowCount();
+            }
+            final double seconds = Math.max(1, System.nanoTime() - startTime) / NANOSECONDS_PER_SECOND;
+            final double megabytes = size / BYTES_PER_MEGABYTE;
+            report.printf("Geohashed %,d rows (%,d invalid) from %,.1f MB in %.2f s: %,.1f MB/s, %,.0f rows/s%n",
+                    rowCount, invalidRowCount, megabytes, seconds, megabytes / seconds, rowCount / seconds);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * Returns the position right after the end of the row containing the byte preceding the given position, i.e. the
+     * given position itself if a row ends just before it.
+     */
+    private static long rowBoundary(final FileChannel channel, final long position, final long size)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SEARCH_BUFFER_SIZE);
+        long boundary = position;
+        long readPosition = position - 1;
+        while (boundary < size) {
+            buffer.clear();
+            final int count = channel.read(buffer, readPosition);
+            if (count <= 0) {
+                return size;
+            }
+            for (int i = 0; i < count; i++) {
+                if (buffer.get(i) == '\n') {
+                    return readPosition + i + 1;
+                }
+            }
+            readPosition += count;
+            boundary = readPosition;
+        }
+        return size;
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    long invalidRowCount() {
+        return invalidRowCount;
+    }
+}
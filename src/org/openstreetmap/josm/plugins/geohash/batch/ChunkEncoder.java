@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import org.openstreetmap.josm.plugins.geohash.core.LongCodec;
+
+
+/**
+ * Geohashes the rows of a chunk of the input file. The chunk starts at the beginning of a row and ends after the end
+ * of a row, so chunks can be processed independently. Each row is copied to the output followed by the delimiter and
+ * the geohash of its location; rows whose location cannot be parsed or is out of range get an empty geohash.
+ *
+ * @author agent
+ */
+final class ChunkEncoder implements Callable<ChunkEncoder> {
+
+    static final byte[] HEADER = "geohash".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer input;
+    private final byte delimiter;
+    private final int latitudeColumn;
+    private final int longitudeColumn;
+    private final int precision;
+    private final boolean header;
+
+    private byte[] output;
+    private int outputLength;
+    private long rowCount;
+    private long invalidRowCount;
+
+    /**
+     * Builds a chunk encoder.
+     *
+     * @param input the chunk of the input file
+     * @param delimiter the column delimiter
+     * @param latitudeColumn the index of the latitude column, counted from 0
+     * @param longitudeColumn the index of the longitude column, counted from 0
+     * @param precision the length of the geohashes
+     * @param header true if the first row of the chunk is the header of the file
+     */
+    ChunkEncoder(final ByteBuffer input, final byte delimiter, final int latitudeColumn, final int longitudeColumn,
+            final int precision, final boolean header) {
+        this.input = input;
+        this.delimiter = delimiter;
+        this.latitudeColumn = latitudeColumn;
+        this.longitudeColumn = longitudeColumn;
+        this.precision = precision;
+        this.header = header;
+    }
+
+    @Override
+    public ChunkEncoder call() {
+        final int limit = input.limit();
+        output = new byte[limit + limit / 8 + precision + 2];
+        final char[] code = new char[precision];
+        int rowStart = 0;
+        boolean firstRow = true;
+        while (rowStart < limit) {
+            // finds the end of the row and the bounds of the coordinate fields in a single pass
+            int rowEnd = rowStart;
+            int column = 0;
+            int fieldStart = rowStart;
+            int latitudeStart = -1;
+            int latitudeEnd = -1;
+            int longitudeStart = -1;
+            int longitudeEnd = -1;
+            byte character = 0;
+            while (rowEnd < limit && (character = input.get(rowEnd)) != '\n') {
+                if (character == delimiter) {
+                    if (column == latitudeColumn) {
+                        latitudeStart = fieldStart;
+                        latitudeEnd = rowEnd;
+                    } else if (column == longitudeColumn) {
+                        longitudeStart = fieldStart;
+                        longitudeEnd = rowEnd;
+                    }
+                    column++;
+                    fieldStart = rowEnd + 1;
+                }
+                rowEnd++;
+            }
+            final int contentEnd = rowEnd > rowStart && input.get(rowEnd - 1) == '\r' ? rowEnd - 1 : rowEnd;
+            if (column == latitudeColumn) {
+                latitudeStart = fieldStart;
+                latitudeEnd = contentEnd;
+            } else if (column == longitudeColumn) {
+                longitudeStart = fieldStart;
+                longitudeEnd = contentEnd;
+            }
+            final int nextRowStart = rowEnd < limit ? rowEnd + 1 : limit;
+
+            if (contentEnd == rowStart) {
+                // empty rows are copied as they are
+                append(rowStart, nextRowStart);
+            } else {
+                append(rowStart, contentEnd);
+                ensureCapacity(precision + 1);
+                output[outputLength++] = delimiter;
+                if (header && firstRow) {
+                    append(HEADER);
+                } else {
+                    rowCount++;
+                    final double latitude = latitudeStart < 0 ? Double.NaN
+                            : CoordinateParser.parse(input, latitudeStart, latitudeEnd);
+                    final double longitude = longitudeStart < 0 ? Double.NaN
+                            : CoordinateParser.parse(input, longitudeStart, longitudeEnd);
+                    if (latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180) {
+                        LongCodec.toChars(LongCodec.encode(latitude, longitude, precision), code, 0);
+                        for (final char codeCharacter : code) {
+                            output[outputLength++] = (byte) codeCharacter;
+                        }
+                    } else {
+                        invalidRowCount++;
+                    }
+                }
+                append(contentEnd, nextRowStart);
+            }
+            firstRow = false;
+            rowStart = nextRowStart;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the geohashed rows to the given channel.
+     *
+     * @param channel the output channel
+     * @throws IOException if the writing fails
+     */
+    void writeTo(final WritableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(output, 0, outputLength);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    long invalidRowCount() {
+        return invalidRowCount;
+    }
+
+    private void append(final int from, final int to) {
+        ensureCapacity(to - from);
+        input.position(from);
+        input.get(output, outputLength, to - from);
+        outputLength += to - from;
+    }
+
+    private void append(final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, output, outputLength, bytes.length);
+        outputLength += bytes.length;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (outputLength + length > output.length) {
+            output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + length));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.batch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Parses decimal coordinates directly from the bytes of a text field, without building strings.
+ *
+ * Plain decimal numbers (an optional sign, digits and an optional decimal point) with at most 15 significant digits are
+ * parsed as an exact integer mantissa divided by an exact power of ten; this single division is correctly rounded, so
+ * the result is exactly the one of {@link Double#parseDouble(String)}. Any other form (e.g. exponents or very long
+ * fractions) falls back to {@link Double#parseDouble(String)}.
+ *
+ * @author agent
+ */
+final class CoordinateParser {
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /** Mantissas up to this value are represented exactly as doubles */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CoordinateParser() {}
+
+
+    /**
+     * Parses the coordinate found between the given indexes of the given buffer. Surrounding spaces and double quotes
+     * are ignored.
+     *
+     * @param buffer the buffer holding the text
+     * @param from the index of the first byte of the field, inclusive
+     * @param to the index of the last byte of the field, exclusive
+     * @return the parsed value, or {@link Double#NaN} if the field is not a number
+     */
+    static double parse(final ByteBuffer buffer, final int from, final int to) {
+        int start = from;
+        int end = to;
+        while (start < end && isPadding(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isPadding(buffer.get(end - 1))) {
+            end--;
+        }
+        int index = start;
+        boolean negative = false;
+        if (index < end && (buffer.get(index) == '-' || buffer.get(index) == '+')) {
+            negative = buffer.get(index) == '-';
+            index++;
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int fractionDigitCount = 0;
+        boolean decimalPoint = false;
+        boolean plain = true;
+        for (; plain && index < end; index++) {
+            final byte character = buffer.get(index);
+            if (character >= '0' && character <= '9') {
+                mantissa = mantissa * 10 + (character - '0');
+                digitCount++;
+                if (decimalPoint) {
+                    fractionDigitCount++;
+                }
+                plain = mantissa <= MAX_EXACT_MANTISSA && fractionDigitCount < POWERS_OF_TEN.length;
+            } else if (character == '.' && !decimalPoint) {
+                decimalPoint = true;
+            } else {
+                plain = false;
+            }
+        }
+        final double value;
+        if (plain && digitCount > 0) {
+            final double magnitude = mantissa / POWERS_OF_TEN[fractionDigitCount];
+            value = negative ? -magnitude : magnitude;
+        } else if (start == end) {
+            value = Double.NaN;
+        } else {
+            value = parseSlowly(buffer, start, end);
+        }
+        return value;
+    }
+
+    private static double parseSlowly(final ByteBuffer buffer, final int from, final int to) {
+        final byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        double value;
+        try {
+            value = Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (final NumberFormatException e) {
+            value = Double.NaN;
+        }
+        return value;
+    }
+
+    private static boolean isPadding(final byte character) {
+        return character == ' ' || character == '"';
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongUnaryOperator;
+
+
+/**
+ * Aggregates (sum, count, minimum and maximum) of values attached to geohashes, kept for every prefix of the geohashes,
+ * from the world geohash down to a fixed depth, so that the statistics of any geohash at most that long are looked up
+ * in constant time, whatever its size.
+ *
+ * The values are attached to the geohashes of the deepest level (the leaves); a leaf may aggregate several values, e.g.
+ * the values of longer geohashes when the pyramid is built. The aggregates are stored in primitive arrays, and each
+ * level maps the packed geohashes to their aggregate. Changing a leaf updates the aggregates of its ancestors only, in
+ * O(depth): the sum and the count are adjusted by the change, while the minimum and the maximum are recomputed from the
+ * (at most 32) children of each ancestor.
+ *
+ * The pyramid is thread-safe.
+ *
+ * @author agent
+ */
+public final class AggregatePyramid {
+
+    private static final int CHILD_COUNT = 1 << LongCodec.BITS_PER_CHARACTER;
+    private static final long ABSENT = -1;
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private final int depth;
+
+    /** Packed geohash to aggregate index, for every level (the array is indexed by precision) */
+    private final LongLongMap[] levels;
+
+    private long[] counts;
+    private double[] sums;
+    private double[] minimums;
+    private double[] maximums;
+    private int aggregateCount;
+
+    /** Indices of the aggregates which were released and may be reused */
+    private int[] freeAggregates = new int[MINIMUM_CAPACITY];
+    private int freeAggregateCount;
+
+
+    /**
+     * Builds an empty pyramid.
+     *
+     * @param depth the precision of the leaves, between 1 and {@link GeohashIdentifier#CUTOFF_DEPTH}
+     */
+    public AggregatePyramid(final int depth) {
+        this(depth, MINIMUM_CAPACITY);
+    }
+
+    private AggregatePyramid(final int depth, final int capacity) {
+        if (depth < 1 || depth > GeohashIdentifier.CUTOFF_DEPTH) {
+            throw new IllegalArgumentException(
+                    "The depth must be in the interval [1, " + GeohashIdentifier.CUTOFF_DEPTH + "]: " + depth);
+        }
+        this.depth = depth;
+        levels = new LongLongMap[depth + 1];
+        for (int precision = 0; precision <= depth; precision++) {
+            levels[precision] = new LongLongMap();
+        }
+        counts = new long[capacity];
+        sums = new double[capacity];
+        minimums = new double[capacity];
+        maximums = new double[capacity];
+    }
+
+    /**
+     * Builds the pyramid of the given values in a single pass.
+     *
+     * @param geohashes packed geohashes, at least as long as the depth, sorted in the order of
+     * {@link LongCodec#compare(long, long)}; the values of the geohashes longer than the depth are aggregated into the
+     * leaf containing them
+     * @param values the values of the geohashes
+     * @param depth the precision of the leaves, between 1 and {@link GeohashIdentifier#CUTOFF_DEPTH}
+     * @return the new pyramid
+     */
+    public static AggregatePyramid build(final long[] geohashes, final double[] values, final int depth) {
+        if (geohashes.length != values.length) {
+            throw new IllegalArgumentException("The geohash and value counts differ");
+        }
+        return build(geohashes.length, index -> geohashes[(int) index], index -> values[(int) index], depth);
+    }
+
+    /**
+     * Builds the pyramid of the given values in a single streaming pass, reading each geohash and value once, e.g. from
+     * a {@link GeohashStore}. In sorted order the geohashes sharing a prefix are adjacent, so only the aggregates of
+     * the ancestors of the current leaf are open at any time; an aggregate is added to its parent once the geohashes
+     * leave it. Apart from the pyramid itself, the pass needs no memory.
+     *
+     * @param size the number of geohashes
+     * @param geohashes the packed geohash at the given index, at least as long as the depth; the geohashes have to be
+     * sorted in the order of {@link LongCodec#compare(long, long)}, and the values of those longer than the depth are
+     * aggregated into the leaf containing them
+     * @param values the value at the given index
+     * @param depth the precision of the leaves, between 1 and {@link GeohashIdentifier#CUTOFF_DEPTH}
+     * @return the new pyramid
+     */
+    public static AggregatePyramid build(final long size, final LongUnaryOperator geohashes,
+            final LongToDoubleFunction values, final int depth) {
+        final AggregatePyramid pyramid = new AggregatePyramid(depth);
+        // the aggregate and the geohash of the ancestor of the current leaf, for every level (indexed by precision)
+        final int[] open = new int[depth + 1];
+        final long[] openGeohashes = new long[depth + 1];
+        long previous = 0;
+        for (long index = 0; index < size; index++) {
+            final long geohash = geohashes.applyAsLong(index);
+            final double value = values.applyAsDouble(index);
+            if (LongCodec.precision(geohash) < depth) {
+                throw new IllegalArgumentException(
+                        "The geohash " + LongCodec.toString(geohash) + " is shorter than the depth " + depth);
+            }
+            checkValue(value);
+            if (index > 0 && LongCodec.compare(previous, geohash) > 0) {
+                throw new IllegalArgumentException("The geohashes are not sorted");
+            }
+            // the shallowest level whose open aggregate does not contain the geohash
+            int changed = 0;
+            if (index > 0) {
+                changed = depth + 1;
+                for (int precision = 0; precision <= depth; precision++) {
+                    if (openGeohashes[precision] != ancestor(geohash, precision)) {
+                        changed = precision;
+                        break;
+                    }
+                }
+                pyramid.close(open, changed);
+            }
+            for (int precision = changed; precision <= depth; precision++) {
+                final long ancestor = ancestor(geohash, precision);
+                open[precision] = pyramid.allocate(0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+                openGeohashes[precision] = ancestor;
+                pyramid.levels[precision].put(ancestor, open[precision], ABSENT);
+            }
+            pyramid.combine(open[depth], 1, value, value, value);
+            previous = geohash;
+        }
+        if (size > 0) {
+            pyramid.close(open, 0);
+        }
+        return pyramid;
+    }
+
+    /**
+     * Returns the deepest pyramid depth for which the pyramid of the given geohashes has at most the given number of
+     * aggregates, counting the distinct prefixes of the geohashes in a single streaming pass. The depth is at most the
+     * length of the shortest geohash.
+     *
+     * @param size the number of geohashes
+     * @param geohashes the packed geohash at the given index; the geohashes have to be sorted in the order of
+     * {@link LongCodec#compare(long, long)}
+     * @param maxAggregates the largest number of aggregates
+     * @return the depth, between 1 and {@link GeohashIdentifier#CUTOFF_DEPTH}, or 0 if no pyramid fits
+     */
+    public static int depthFor(final long size, final LongUnaryOperator geohashes, final long maxAggregates) {
+        final long[] prefixCounts = new long[GeohashIdentifier.CUTOFF_DEPTH + 1];
+        int shortestPrecision = GeohashIdentifier.CUTOFF_DEPTH;
+        long previous = 0;
+        for (long index = 0; index < size; index++) {
+            final long geohash = geohashes.applyAsLong(index);
+            shortestPrecision = Math.min(shortestPrecision, LongCodec.precision(geohash));
+            // in sorted order a prefix starts wherever it differs from the prefix of the previous geohash
+            for (int precision = 0; precision < prefixCounts.length; precision++) {
+                final long mask = LongCodec.hashMask(precision);
+                if (index == 0 || (geohash & mask) != (previous & mask)) {
+                    prefixCounts[precision]++;
+                }
+            }
+            previous = geohash;
+        }
+        if (size == 0 || prefixCounts[0] > maxAggregates) {
+            return 0;
+        }
+        int depth = 0;
+        long aggregateCount = prefixCounts[0];
+        while (depth < shortestPrecision && aggregateCount + prefixCounts[depth + 1] <= maxAggregates) {
+            depth++;
+            aggregateCount += prefixCounts[depth];
+        }
+        return depth;
+    }
+
+    /*
+     * Adds the open aggregates of the levels from the depth up to the given precision to their parents, deepest
+     * first, so that each parent has received all of its children before being added to its own parent. The world
+     * geohash has no parent.
+     */
+    private void close(final int[] open, final int precision) {
+        for (int level = depth; level >= Math.max(precision, 1); level--) {
+            final int child = open[level];
+            combine(open[level - 1], counts[child], sums[child], minimums[child], maximums[child]);
+        }
+    }
+
+    /**
+     * Returns the precision of the leaves.
+     *
+     * @return the depth of the pyramid
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Sets the value of the given leaf, replacing the values it aggregated.
+     *
+     * @param leaf a packed geohash whose precision is the depth of the pyramid
+     * @param value the value
+     */
+    public synchronized void put(final long leaf, final double value) {
+        checkLeaf(leaf);
+        checkValue(value);
+        final int aggregate = (int) levels[depth].get(leaf, ABSENT);
+        if (aggregate == ABSENT) {
+            levels[depth].put(leaf, allocate(1, value, value, value), ABSENT);
+            updateAncestors(leaf, 1, value);
+        } else {
+            final long countDelta = 1 - counts[aggregate];
+            final double sumDelta = value - sums[aggregate];
+            counts[aggregate] = 1;
+            sums[aggregate] = value;
+            minimums[aggregate] = value;
+            maximums[aggregate] = value;
+            updateAncestors(leaf, countDelta, sumDelta);
+        }
+    }
+
+    /**
+     * Removes the values of the given leaf; does nothing if the leaf has no value.
+     *
+     * @param leaf a packed geohash whose precision is the depth of the pyramid
+     */
+    public synchronized void remove(final long leaf) {
+        checkLeaf(leaf);
+        final int aggregate = (int) levels[depth].remove(leaf, ABSENT);
+        if (aggregate != ABSENT) {
+            updateAncestors(leaf, -counts[aggregate], -sums[aggregate]);
+            release(aggregate);
+        }
+    }
+
+    /**
+     * Returns the number of values found in the given geohash.
+     *
+     * @param geohash a packed geohash, at most as long as the depth of the pyramid
+     * @return the number of values
+     */
+    public synchronized long count(final long geohash) {
+        final int aggregate = aggregateOf(geohash);
+        return aggregate == ABSENT ? 0 : counts[aggregate];
+    }
+
+    /**
+     * Returns the sum of the values found in the given geohash.
+     *
+     * @param geohash a packed geohash, at most as long as the depth of the pyramid
+     * @return the sum of the values, or 0 if there is none
+     */
+    public synchronized double sum(final long geohash) {
+        final int aggregate = aggregateOf(geohash);
+        return aggregate == ABSENT ? 0 : sums[aggregate];
+    }
+
+    /**
+     * Returns the minimum of the values found in the given geohash.
+     *
+     * @param geohash a packed geohash, at most as long as the depth of the pyramid
+     * @return the minimum value, or {@link Double#NaN} if there is none
+     */
+    public synchronized double minimum(final long geohash) {
+        final int aggregate = aggregateOf(geohash);
+        return aggregate == ABSENT ? Double.NaN : minimums[aggregate];
+    }
+
+    /**
+     * Returns the maximum of the values found in the given geohash.
+     *
+     * @param geohash a packed geohash, at most as long as the depth of the pyramid
+     * @return the maximum value, or {@link Double#NaN} if there is none
+     */
+    public synchronized double maximum(final long geohash) {
+        final int aggregate = aggregateOf(geohash);
+        return aggregate == ABSENT ? Double.NaN : maximums[aggregate];
+    }
+
+    private int aggregateOf(final long geohash) {
+        final int precision = LongCodec.precision(geohash);
+        if (precision > depth) {
+            throw new IllegalArgumentException(
+                    "The geohash " + LongCodec.toString(geohash) + " is longer than the depth " + depth);
+        }
+        return (int) levels[precision].get(geohash, ABSENT);
+    }
+
+    /*
+     * Applies a leaf change to the ancestors of the leaf, from the parent up to the world geohash.
+     */
+    private void updateAncestors(final long leaf, final long countDelta, final double sumDelta) {
+        for (int precision = depth - 1; precision >= 0; precision--) {
+            final long ancestor = ancestor(leaf, precision);
+            int aggregate = (int) levels[precision].get(ancestor, ABSENT);
+            if (aggregate == ABSENT) {
+                aggregate = allocate(0, 0, Double.NaN, Double.NaN);
+                levels[precision].put(ancestor, aggregate, ABSENT);
+            }
+            counts[aggregate] += countDelta;
+            if (counts[aggregate] == 0) {
+                levels[precision].remove(ancestor, ABSENT);
+                release(aggregate);
+            } else {
+                sums[aggregate] += sumDelta;
+                updateExtremes(aggregate, ancestor, precision);
+            }
+        }
+    }
+
+    private void updateExtremes(final int aggregate, final long geohash, final int precision) {
+        final LongLongMap childLevel = levels[precision + 1];
+        final long first = (geohash & LongCodec.hashMask(precision)) | (precision + 1);
+        final int shift = LongCodec.shiftFor(precision);
+        double minimum = Double.POSITIVE_INFINITY;
+        double maximum = Double.NEGATIVE_INFINITY;
+        for (long index = 0; index < CHILD_COUNT; index++) {
+            final int child = (int) childLevel.get(first | (index << shift), ABSENT);
+            if (child != ABSENT) {
+                minimum = Math.min(minimum, minimums[child]);
+                maximum = Math.max(maximum, maximums[child]);
+            }
+        }
+        minimums[aggregate] = minimum;
+        maximums[aggregate] = maximum;
+    }
+
+    private void combine(final int aggregate, final long count, final double sum, final double minimum,
+            final double maximum) {
+        counts[aggregate] += count;
+        sums[aggregate] += sum;
+        minimums[aggregate] = Math.min(minimums[aggregate], minimum);
+        maximums[aggregate] = Math.max(maximums[aggregate], maximum);
+    }
+
+    private int allocate(final long count, final double sum, final double minimum, final double maximum) {
+        final int aggregate;
+        if (freeAggregateCount > 0) {
+            aggregate = freeAggregates[--freeAggregateCount];
+        } else {
+            if (aggregateCount == counts.length) {
+                final int capacity = counts.length * 2;
+                counts = Arrays.copyOf(counts, capacity);
+                sums = Arrays.copyOf(sums, capacity);
+                minimums = Arrays.copyOf(minimums, capacity);
+                maximums = Arrays.copyOf(maximums, capacity);
+            }
+            aggregate = aggregateCount++;
+        }
+        counts[aggregate] = count;
+        sums[aggregate] = sum;
+        minimums[aggregate] = minimum;
+        maximums[aggregate] = maximum;
+        return aggregate;
+    }
+
+    private void release(final int aggregate) {
+        if (freeAggregateCount == freeAggregates.length) {
+            freeAggregates = Arrays.copyOf(freeAggregates, freeAggregates.length * 2);
+        }
+        freeAggregates[freeAggregateCount++] = aggregate;
+    }
+
+    private static long ancestor(final long geohash, final int precision) {
+        return (geohash & LongCodec.hashMask(precision)) | precision;
+    }
+
+    private void checkLeaf(final long leaf) {
+        if (LongCodec.precision(leaf) != depth) {
+            throw new IllegalArgumentException(
+                    "The geohash " + LongCodec.toString(leaf) + " is not a leaf of a pyramid of depth " + depth);
+        }
+    }
+
+    private static void checkValue(final double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("The value may not be NaN");
+        }
+    }
+}
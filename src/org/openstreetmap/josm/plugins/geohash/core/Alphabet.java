@@ -6,8 +6,11 @@
  */
 package org.openstreetmap.josm.plugins.geohash.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -23,13 +26,19 @@ class Alphabet {
     private final char[] characters = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'b', 'c', 'd', 'e', 'f', 'g',
             'h', 'j', 'k', 'm', 'n', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z' };
 
-    private final HashMap<Character, Integer> indexForCharacter = new HashMap<>();
+    /** Direct character to index lookup table; characters outside the alphabet are mapped to -1 */
+    private final byte[] indexForCharacter = new byte['z' + 1];
+
+    private final List<Character> characterList;
 
     private Alphabet() {
-        int i = 0;
-        for (final char c : characters) {
-            indexForCharacter.put(c, i++);
+        Arrays.fill(indexForCharacter, (byte) -1);
+        final List<Character> list = new ArrayList<>(characters.length);
+        for (int i = 0; i < characters.length; i++) {
+            indexForCharacter[characters[i]] = (byte) i;
+            list.add(characters[i]);
         }
+        characterList = Collections.unmodifiableList(list);
     }
 
     public int bitsPerCharacter() {
@@ -37,21 +46,26 @@ class Alphabet {
     }
 
     public Collection<Character> characters() {
-        return indexForCharacter.keySet();
+        return characterList;
     }
 
     public char get(final int index) {
         return characters[index];
     }
 
+    /**
+     * Returns the index of the given character in this alphabet.
+     * @param character a character
+     * @return the index of the character or -1 if the character is not part of this alphabet
+     */
     public int indexOf(final char character) {
-        return indexForCharacter.get(character);
+        return character < indexForCharacter.length ? indexForCharacter[character] : -1;
     }
 
     public boolean isValid(final String text) {
         boolean valid = text != null;
         for (int i = 0; valid && i < text.length(); i++) {
-            if (!indexForCharacter.keySet().contains(text.charAt(i))) {
+            if (indexOf(text.charAt(i)) < 0) {
                 valid = false;
             }
         }
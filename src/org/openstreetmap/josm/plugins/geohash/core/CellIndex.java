@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Immutable index of the geohashes holding data, answering which geohashes under a given prefix hold nodes or ways,
+ * and how many, for geohash code completion.
+ *
+ * The nodes and the ways (placed at a single location, e.g. the center of their bounds) are kept as two sorted arrays
+ * of packed geohashes of length {@link LongCodec#MAX_PRECISION}. In sorted order the descendants of any geohash are
+ * contiguous, so counting the data of a geohash takes two binary searches and listing the children of a prefix takes
+ * at most 64 per array, whatever the size of the data.
+ *
+ * @author agent
+ */
+public final class CellIndex {
+
+    private static final int CHILD_COUNT = 32;
+
+    private final long[] nodeGeohashes;
+    private final long[] wayGeohashes;
+
+
+    private CellIndex(final long[] nodeGeohashes, final long[] wayGeohashes) {
+        this.nodeGeohashes = nodeGeohashes;
+        this.wayGeohashes = wayGeohashes;
+    }
+
+    /**
+     * Builds the index of the given nodes and ways. The geohashes are computed and sorted in parallel, on the common
+     * fork-join pool.
+     *
+     * @param nodeLatitudes the latitudes of the nodes, in decimal degrees
+     * @param nodeLongitudes the longitudes of the nodes, in decimal degrees
+     * @param wayLatitudes the latitudes of the locations of the ways, in decimal degrees
+     * @param wayLongitudes the longitudes of the locations of the ways, in decimal degrees
+     * @return the new index
+     */
+    public static CellIndex build(final double[] nodeLatitudes, final double[] nodeLongitudes,
+            final double[] wayLatitudes, final double[] wayLongitudes) {
+        if (nodeLatitudes.length != nodeLongitudes.length || wayLatitudes.length != wayLongitudes.length) {
+            throw new IllegalArgumentException("The latitude and longitude counts differ");
+        }
+        return new CellIndex(sortedGeohashes(nodeLatitudes, nodeLongitudes),
+                sortedGeohashes(wayLatitudes, wayLongitudes));
+    }
+
+    private static long[] sortedGeohashes(final double[] latitudes, final double[] longitudes) {
+        final long[] geohashes = new long[latitudes.length];
+        // flipping the sign bit maps the geohash order onto the signed order used by the parallel sort
+        Arrays.parallelSetAll(geohashes,
+                i -> LongCodec.encode(latitudes[i], longitudes[i], LongCodec.MAX_PRECISION) ^ Long.MIN_VALUE);
+        Arrays.parallelSort(geohashes);
+        Arrays.parallelSetAll(geohashes, i -> geohashes[i] ^ Long.MIN_VALUE);
+        return geohashes;
+    }
+
+    /**
+     * Returns the number of indexed nodes.
+     *
+     * @return the number of nodes
+     */
+    public int nodeCount() {
+        return nodeGeohashes.length;
+    }
+
+    /**
+     * Returns the number of indexed ways.
+     *
+     * @return the number of ways
+     */
+    public int wayCount() {
+        return wayGeohashes.length;
+    }
+
+    /**
+     * Returns the data held by the given geohash.
+     *
+     * @param code a geohash code of at most {@link LongCodec#MAX_PRECISION} characters
+     * @return the numbers of nodes and ways of the geohash
+     */
+    public Cell cell(final String code) {
+        final long geohash = LongCodec.fromString(code);
+        return new Cell(code, count(nodeGeohashes, geohash), count(wayGeohashes, geohash));
+    }
+
+    /**
+     * Returns the geohashes one character longer than the given prefix which hold nodes or ways, in code order. A
+     * prefix of {@link LongCodec#MAX_PRECISION} characters has no children, so the prefix itself is returned instead
+     * if it holds data.
+     *
+     * @param prefix a geohash code of at most {@link LongCodec#MAX_PRECISION} characters, possibly empty
+     * @return the geohashes holding data under the prefix, with their numbers of nodes and ways
+     */
+    public List<Cell> children(final String prefix) {
+        if (prefix.length() == LongCodec.MAX_PRECISION) {
+            final Cell cell = cell(prefix);
+            return cell.nodeCount() + cell.wayCount() > 0 ? List.of(cell) : Collections.emptyList();
+        }
+        final long parent = LongCodec.fromString(prefix);
+        final int childPrecision = prefix.length() + 1;
+        final List<Cell> children = new ArrayList<>();
+        for (int index = 0; index < CHILD_COUNT; index++) {
+            final long child = (parent & LongCodec.hashMask(prefix.length()))
+                    | ((long) index << LongCodec.shiftFor(prefix.length())) | childPrecision;
+            final int nodeCount = count(nodeGeohashes, child);
+            final int wayCount = count(wayGeohashes, child);
+            if (nodeCount + wayCount > 0) {
+                children.add(new Cell(LongCodec.toString(child), nodeCount, wayCount));
+            }
+        }
+        return children;
+    }
+
+    /*
+     * Counts the sorted geohashes which are descendants of the given geohash.
+     */
+    private static int count(final long[] sortedGeohashes, final long geohash) {
+        final int precision = LongCodec.precision(geohash);
+        final long prefix = geohash & LongCodec.hashMask(precision);
+        final int from = lowerBound(sortedGeohashes, prefix);
+        final long lastDescendant = prefix | ~LongCodec.hashMask(precision);
+        final int to = lastDescendant == -1L ? sortedGeohashes.length
+                : lowerBound(sortedGeohashes, lastDescendant + 1);
+        return to - from;
+    }
+
+    /*
+     * Returns the index of the first sorted geohash not less than the given key.
+     */
+    private static int lowerBound(final long[] sortedGeohashes, final long key) {
+        int low = 0;
+        int high = sortedGeohashes.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (LongCodec.compare(sortedGeohashes[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * A geohash and the numbers of nodes and ways it holds.
+     */
+    public static final class Cell {
+
+        private final String code;
+        private final int nodeCount;
+        private final int wayCount;
+
+        private Cell(final String code, final int nodeCount, final int wayCount) {
+            this.code = code;
+            this.nodeCount = nodeCount;
+            this.wayCount = wayCount;
+        }
+
+        public String code() {
+            return code;
+        }
+
+        public int nodeCount() {
+            return nodeCount;
+        }
+
+        public int wayCount() {
+            return wayCount;
+        }
+
+        @Override
+        public String toString() {
+            return code + " (" + nodeCount + " nodes, " + wayCount + " ways)";
+        }
+    }
+}
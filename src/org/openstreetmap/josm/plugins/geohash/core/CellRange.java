@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import net.exfidefortis.map.BoundingBox;
+
+
+/**
+ * A rectangular block of geohashes having the same precision, identified by their row (latitude index, counted from
+ * the south) and column (longitude index, counted from the west) in the geohash grid of that precision.
+ *
+ * The range covering an area contains exactly the geohashes sharing a non-empty area with it, so enumerating it costs
+ * O(number of geohashes) and no geohash outside the area is ever built.
+ *
+ * @author agent
+ */
+final class CellRange {
+
+    private final int precision;
+    private final long southRow;
+    private final long northRow;
+    private final long westColumn;
+    private final long eastColumn;
+
+    CellRange(final int precision, final long southRow, final long northRow, final long westColumn,
+            final long eastColumn) {
+        this.precision = precision;
+        this.southRow = southRow;
+        this.northRow = northRow;
+        this.westColumn = westColumn;
+        this.eastColumn = eastColumn;
+    }
+
+    /**
+     * Returns the range of geohashes with the given precision which share area with the given bounds. Geohashes which
+     * only touch the bounds along an edge are not part of the range.
+     *
+     * @param bounds a bounding box
+     * @param precision the geohash precision
+     * @return the range covering the bounds
+     */
+    static CellRange covering(final BoundingBox bounds, final int precision) {
+        return covering(bounds.south().asDegrees(), bounds.west().asDegrees(), bounds.north().asDegrees(),
+                bounds.east().asDegrees(), precision);
+    }
+
+    static CellRange covering(final double south, final double west, final double north, final double east,
+            final int precision) {
+        final long southRow = LongCodec.latitudeIndex(south, precision);
+        long northRow = LongCodec.latitudeIndex(north, precision);
+        if (northRow > southRow && LongCodec.south(northRow, precision) == north) {
+            // the bounds end exactly on the southern edge of this row
+            northRow--;
+        }
+        final long westColumn = LongCodec.longitudeIndex(west, precision);
+        long eastColumn = LongCodec.longitudeIndex(east, precision);
+        if (eastColumn > westColumn && LongCodec.west(eastColumn, precision) == east) {
+            eastColumn--;
+        }
+        return new CellRange(precision, southRow, northRow, westColumn, eastColumn);
+    }
+
+    int precision() {
+        return precision;
+    }
+
+    long southRow() {
+        return southRow;
+    }
+
+    long northRow() {
+        return northRow;
+    }
+
+    long westColumn() {
+        return westColumn;
+    }
+
+    long eastColumn() {
+        return eastColumn;
+    }
+
+    long rowCount() {
+        return northRow - southRow + 1;
+    }
+
+    long columnCount() {
+        return eastColumn - westColumn + 1;
+    }
+
+    long size() {
+        return rowCount() * columnCount();
+    }
+
+    boolean contains(final long row, final long column) {
+        return row >= southRow && row <= northRow && column >= westColumn && column <= eastColumn;
+    }
+
+    /**
+     * Passes the packed geohashes of this range to the given consumer, row by row from south to north.
+     *
+     * @param consumer the consumer receiving the packed geohashes
+     */
+    void forEach(final LongConsumer consumer) {
+        for (long row = southRow; row <= northRow; row++) {
+            forEachInRow(row, westColumn, eastColumn, consumer);
+        }
+    }
+
+    /**
+     * Passes the packed geohashes of this range which are not part of the given range to the given consumer. Only the
+     * strips of this range lying outside the other range are visited, so the cost is proportional to the number of
+     * geohashes passed to the consumer (plus the number of rows).
+     *
+     * @param other a range with the same precision as this one
+     * @param consumer the consumer receiving the packed geohashes
+     */
+    void forEachNotIn(final CellRange other, final LongConsumer consumer) {
+        for (long row = southRow; row <= northRow; row++) {
+            if (row < other.southRow || row > other.northRow || eastColumn < other.westColumn
+                    || westColumn > other.eastColumn) {
+                forEachInRow(row, westColumn, eastColumn, consumer);
+            } else {
+                forEachInRow(row, westColumn, other.westColumn - 1, consumer);
+                forEachInRow(row, other.eastColumn + 1, eastColumn, consumer);
+            }
+        }
+    }
+
+    private void forEachInRow(final long row, final long fromColumn, final long toColumn,
+            final LongConsumer consumer) {
+        for (long column = fromColumn; column <= toColumn; column++) {
+            consumer.accept(LongCodec.fromIndices(row, column, precision));
+        }
+    }
+
+    /**
+     * Returns the geohashes of this range.
+     *
+     * @return a new collection holding the geohashes of this range
+     */
+    Set<Geohash> geohashes() {
+        final Set<Geohash> geohashes = new HashSet<>(capacityFor(size()));
+        forEach(geohash -> geohashes.add(new Geohash(geohash)));
+        return geohashes;
+    }
+
+    private static int capacityFor(final long size) {
+        return (int) Math.min(Integer.MAX_VALUE, size * 4 / 3 + 1);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final CellRange other = (CellRange) obj;
+        return precision == other.precision && southRow == other.southRow && northRow == other.northRow
+                && westColumn == other.westColumn && eastColumn == other.eastColumn;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(precision, southRow, northRow, westColumn, eastColumn);
+    }
+
+    @Override
+    public String toString() {
+        return "precision " + precision + ", rows [" + southRow + ", " + northRow + "], columns [" + westColumn + ", "
+                + eastColumn + "]";
+    }
+}
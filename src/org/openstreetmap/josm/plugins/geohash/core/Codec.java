@@ -15,19 +15,43 @@ import net.exfidefortis.map.Range;
 
 
 /**
- *
+ * String based geohash codec. Codes of at most {@link LongCodec#MAX_PRECISION} characters are handled by the
+ * allocation-free {@link LongCodec}; longer codes fall back to the bit array based algorithms below.
  *
  * @author Mihai Chintoanu
  */
 class Codec {
 
+    public String encode(final Point point, final int resolution) {
+        final long start = Instrumentation.start();
+        try {
+            return encodePoint(point, resolution);
+        } finally {
+            Instrumentation.stop(Instrumentation.CODEC_ENCODE, start);
+        }
+    }
+
+    public BoundingBox decode(final String code) {
+        final long start = Instrumentation.start();
+        try {
+            return decodeCode(code);
+        } finally {
+            Instrumentation.stop(Instrumentation.CODEC_DECODE, start);
+        }
+    }
+
     /*
      * The following algorithm is taken from http://architects.dzone.com/articles/designing-spacial-index
      */
-    public String encode(final Point point, final int resolution) {
+    private String encodePoint(final Point point, final int resolution) {
         if (resolution < 0) {
             throw new IllegalArgumentException("The resolution must be > 0");
         }
+        if (resolution <= LongCodec.MAX_PRECISION) {
+            final long geohash = LongCodec.encode(point.latitude().asDegrees(), point.longitude().asDegrees(),
+                    resolution);
+            return LongCodec.toString(geohash);
+        }
         final int bitCount = Alphabet.INSTANCE.bitsPerCharacter() * resolution;
         final int latitudeBitCount = bitCount / 2;
         final int longitudeBitCount = bitCount - latitudeBitCount;
@@ -78,9 +102,14 @@ class Codec {
     /*
      * The following algorithm is taken from http://en.wikipedia.org/wiki/Geohash
      */
-    public BoundingBox decode(final String code) {
+    private BoundingBox decodeCode(final String code) {
         if (code.equals(Geohash.ROOT_CODE)) {
             return BoundingBox.WORLD;
+        } else if (code.length() <= LongCodec.MAX_PRECISION) {
+            final double[] bounds = new double[4];
+            LongCodec.decode(LongCodec.fromString(code), bounds);
+            return BoundingBox.forDegrees(bounds[LongCodec.NORTH], bounds[LongCodec.SOUTH], bounds[LongCodec.EAST],
+                    bounds[LongCodec.WEST]);
         } else {
             final BitArray codeBits = codeToBitArray(code);
             final BitArray.Builder longitudeBits = new BitArray.Builder();
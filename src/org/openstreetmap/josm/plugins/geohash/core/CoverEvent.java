@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Collection;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import net.exfidefortis.map.BoundingBox;
+
+
+/**
+ * Flight recorder event of a geohash cover computed by the {@link GeohashIdentifier}, lasting as long as the
+ * computation. While the event is disabled in the recording settings, building and committing it costs next to
+ * nothing.
+ *
+ * @author agent
+ */
+@Name("org.openstreetmap.josm.plugins.geohash.Cover")
+@Label("Geohash Cover")
+@Category({"JOSM", "Geohash"})
+@Description("Computation of the geohashes covering an area")
+class CoverEvent extends jdk.jfr.Event {
+
+    @Label("South")
+    double south;
+
+    @Label("West")
+    double west;
+
+    @Label("North")
+    double north;
+
+    @Label("East")
+    double east;
+
+    @Label("Side Ratio")
+    @Description("The smallest ratio, in percent, of the geohash side to the area side")
+    int sideRatio;
+
+    @Label("Precision")
+    @Description("The length of the geohashes")
+    int precision;
+
+    @Label("Cell Count")
+    int cellCount;
+
+    @Label("Incremental")
+    @Description("Whether the geohashes of the previous cover were reused")
+    boolean incremental;
+
+
+    /**
+     * Commits the event, if enabled, with the details of the given cover.
+     *
+     * @param bounds the covered area
+     * @param sideRatio the side ratio the cover was computed with
+     * @param geohashes the geohashes of the cover
+     * @param incremental whether the cover was updated from the previous one
+     */
+    void commit(final BoundingBox bounds, final Percent sideRatio, final Collection<Geohash> geohashes,
+            final boolean incremental) {
+        end();
+        if (shouldCommit()) {
+            south = bounds.south().asDegrees();
+            west = bounds.west().asDegrees();
+            north = bounds.north().asDegrees();
+            east = bounds.east().asDegrees();
+            this.sideRatio = sideRatio.value();
+            precision = geohashes.isEmpty() ? 0 : geohashes.iterator().next().code().length();
+            cellCount = geohashes.size();
+            this.incremental = incremental;
+            commit();
+        }
+    }
+}
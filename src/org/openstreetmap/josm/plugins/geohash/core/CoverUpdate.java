@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Collection;
+import java.util.Collections;
+
+
+/**
+ * The result of a cover update: the geohashes covering the new area, together with the geohashes which entered and
+ * left the cover compared to the previous area. The update is incremental if the previous cover was reused; otherwise
+ * the new cover was computed from scratch and all of it counts as added.
+ *
+ * @author agent
+ */
+public final class CoverUpdate {
+
+    private final Collection<Geohash> geohashes;
+    private final Collection<Geohash> added;
+    private final Collection<Geohash> removed;
+    private final boolean incremental;
+
+    /**
+     * Builds a cover update.
+     *
+     * @param geohashes the geohashes covering the new area
+     * @param added the geohashes which entered the cover
+     * @param removed the geohashes which left the cover
+     * @param incremental true if the new cover was derived from the previous one, false if it was computed from scratch
+     */
+    public CoverUpdate(final Collection<Geohash> geohashes, final Collection<Geohash> added,
+            final Collection<Geohash> removed, final boolean incremental) {
+        this.geohashes = geohashes;
+        this.added = Collections.unmodifiableCollection(added);
+        this.removed = Collections.unmodifiableCollection(removed);
+        this.incremental = incremental;
+    }
+
+    /**
+     * Returns the geohashes covering the new area.
+     *
+     * @return an unmodifiable collection of geohashes
+     */
+    public Collection<Geohash> geohashes() {
+        return geohashes;
+    }
+
+    /**
+     * Returns the geohashes which cover the new area but did not cover the previous one.
+     *
+     * @return an unmodifiable collection of geohashes
+     */
+    public Collection<Geohash> added() {
+        return added;
+    }
+
+    /**
+     * Returns the geohashes which covered the previous area but do not cover the new one.
+     *
+     * @return an unmodifiable collection of geohashes
+     */
+    public Collection<Geohash> removed() {
+        return removed;
+    }
+
+    /**
+     * Checks if the new cover was derived from the previous one, with only the added and removed geohashes computed.
+     *
+     * @return true if the update is incremental, false if the new cover was computed from scratch
+     */
+    public boolean incremental() {
+        return incremental;
+    }
+
+    /**
+     * Checks if the cover changed at all.
+     *
+     * @return true if geohashes were added or removed, false otherwise
+     */
+    public boolean isChanged() {
+        return !added.isEmpty() || !removed.isEmpty();
+    }
+}
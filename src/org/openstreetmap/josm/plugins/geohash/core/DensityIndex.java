@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Counts the points (e.g. OSM nodes, or ways placed at a point) found in each geohash, for all the precisions from 1
+ * to {@link #MAX_PRECISION}.
+ *
+ * The index is built in parallel from a snapshot of the points and then maintained incrementally: each point is
+ * identified by a unique id, and adding, moving or removing a point only updates the counts of the geohashes containing
+ * it. The counts go as deep as the geohashes the layer displays ({@link GeohashIdentifier#CUTOFF_DEPTH}), so the
+ * density can be shown at every grid precision; deeper geohashes are never displayed and are not counted.
+ *
+ * The index is thread-safe.
+ *
+ * @author agent
+ */
+public final class DensityIndex {
+
+    /** The maximum length of the geohashes whose points are counted: the length of the deepest displayed geohashes */
+    public static final int MAX_PRECISION = GeohashIdentifier.CUTOFF_DEPTH;
+
+    private static final long ABSENT = -1;
+
+    /** Point id to the packed geohash of length MAX_PRECISION containing the point */
+    private final LongLongMap pointGeohashes;
+
+    /** Packed geohash to point count, for every precision (the array is indexed by precision) */
+    private final LongLongMap[] counts = new LongLongMap[MAX_PRECISION + 1];
+
+
+    /**
+     * Builds an empty index.
+     */
+    public DensityIndex() {
+        pointGeohashes = new LongLongMap();
+        for (int precision = 1; precision <= MAX_PRECISION; precision++) {
+            counts[precision] = new LongLongMap();
+        }
+    }
+
+    private DensityIndex(final LongLongMap pointGeohashes, final LongLongMap[] counts) {
+        this.pointGeohashes = pointGeohashes;
+        System.arraycopy(counts, 0, this.counts, 0, counts.length);
+    }
+
+    /**
+     * Builds the index of the given points. The geohashes are computed and sorted in parallel, on the common fork-join
+     * pool; in sorted order the geohashes sharing a prefix are adjacent, so the counts of each precision are then
+     * gathered in a single pass.
+     *
+     * @param ids the unique ids of the points
+     * @param latitudes the latitudes of the points, in decimal degrees
+     * @param longitudes the longitudes of the points, in decimal degrees
+     * @return the new index
+     */
+    public static DensityIndex build(final long[] ids, final double[] latitudes, final double[] longitudes) {
+        if (ids.length != latitudes.length || ids.length != longitudes.length) {
+            throw new IllegalArgumentException("The id, latitude and longitude counts differ");
+        }
+        final long[] geohashes = new long[ids.length];
+        Arrays.parallelSetAll(geohashes, i -> LongCodec.encode(latitudes[i], longitudes[i], MAX_PRECISION));
+        final long[] sortedGeohashes = geohashes.clone();
+        // the signed order differs from the geohash order, but it keeps the geohashes with a common prefix adjacent too
+        Arrays.parallelSort(sortedGeohashes);
+        final LongLongMap[] counts = new LongLongMap[MAX_PRECISION + 1];
+        for (int precision = 1; precision <= MAX_PRECISION; precision++) {
+            counts[precision] = countRuns(sortedGeohashes, precision);
+        }
+        final LongLongMap pointGeohashes = new LongLongMap(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            final long previous = pointGeohashes.put(ids[i], geohashes[i], ABSENT);
+            if (previous != ABSENT) {
+                throw new IllegalArgumentException("Duplicate point id " + ids[i]);
+            }
+        }
+        return new DensityIndex(pointGeohashes, counts);
+    }
+
+    /*
+     * Counts the sorted geohashes per parent with the given precision.
+     */
+    private static LongLongMap countRuns(final long[] sortedGeohashes, final int precision) {
+        int runCount = 0;
+        long previous = ABSENT;
+        for (final long geohash : sortedGeohashes) {
+            final long parent = parent(geohash, precision);
+            if (parent != previous) {
+                runCount++;
+                previous = parent;
+            }
+        }
+        final LongLongMap counts = new LongLongMap(runCount);
+        int runStart = 0;
+        for (int i = 1; i <= sortedGeohashes.length; i++) {
+            if (i == sortedGeohashes.length
+                    || parent(sortedGeohashes[i], precision) != parent(sortedGeohashes[runStart], precision)) {
+                counts.put(parent(sortedGeohashes[runStart], precision), i - runStart, 0);
+                runStart = i;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adds the given point to the index or, if it is already indexed, moves it to the given location.
+     *
+     * @param id the unique id of the point
+     * @param latitude the latitude of the point, in decimal degrees
+     * @param longitude the longitude of the point, in decimal degrees
+     */
+    public synchronized void put(final long id, final double latitude, final double longitude) {
+        final long geohash = LongCodec.encode(latitude, longitude, MAX_PRECISION);
+        final long previous = pointGeohashes.put(id, geohash, ABSENT);
+        if (previous != geohash) {
+            if (previous != ABSENT) {
+                updateCounts(previous, -1);
+            }
+            updateCounts(geohash, 1);
+        }
+    }
+
+    /**
+     * Removes the given point from the index; does nothing if the point is not indexed.
+     *
+     * @param id the unique id of the point
+     */
+    public synchronized void remove(final long id) {
+        final long previous = pointGeohashes.remove(id, ABSENT);
+        if (previous != ABSENT) {
+            updateCounts(previous, -1);
+        }
+    }
+
+    /**
+     * Returns the number of points found in the given geohash.
+     *
+     * @param geohash a geohash
+     * @return the number of points, or 0 if the geohash is longer than {@link #MAX_PRECISION}
+     */
+    public int count(final Geohash geohash) {
+        final int precision = geohash.code().length();
+        final int count;
+        if (precision == 0) {
+            count = size();
+        } else if (precision > MAX_PRECISION) {
+            count = 0;
+        } else {
+            final long packed = geohash.toLong();
+            synchronized (this) {
+                count = (int) counts[precision].get(packed, 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of indexed points.
+     *
+     * @return the number of points
+     */
+    public synchronized int size() {
+        return pointGeohashes.size();
+    }
+
+    private void updateCounts(final long geohash, final int delta) {
+        for (int precision = MAX_PRECISION; precision >= 1; precision--) {
+            counts[precision].add(parent(geohash, precision), delta);
+        }
+    }
+
+    private static long parent(final long geohash, final int precision) {
+        return (geohash & LongCodec.hashMask(precision)) | precision;
+    }
+}
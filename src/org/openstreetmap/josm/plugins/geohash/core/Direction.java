@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+/**
+ * The directions in which the neighbor of a geohash can be looked up.
+ * <p>
+ * Each direction holds the lookup tables used for moving one geohash character in that direction. A character covers
+ * a grid of 8 columns by 4 rows when it has an even position in the code (its bits start with a longitude bit), and of
+ * 4 columns by 8 rows when it has an odd position. For each position parity and character index the tables give the
+ * index of the adjacent character and tell whether the move crosses the border of the parent geohash, in which case
+ * the parent has to be moved in the same direction as well.
+ *
+ * @author agent
+ */
+public enum Direction {
+
+    NORTH(1, 0), EAST(0, 1), SOUTH(-1, 0), WEST(0, -1);
+
+    private static final int CHARACTER_COUNT = 32;
+    private static final int EVEN = 0;
+    private static final int ODD = 1;
+
+    private final int rowStep;
+
+    /** Adjacent character index, indexed by position parity and character index */
+    private final byte[][] neighborIndex = new byte[2][CHARACTER_COUNT];
+
+    /** Whether moving the character crosses the border of the parent, indexed by position parity and character index */
+    private final boolean[][] border = new boolean[2][CHARACTER_COUNT];
+
+    Direction(final int rowStep, final int columnStep) {
+        this.rowStep = rowStep;
+        for (int parity = EVEN; parity <= ODD; parity++) {
+            final int rows = parity == EVEN ? 4 : 8;
+            final int columns = parity == EVEN ? 8 : 4;
+            for (int index = 0; index < CHARACTER_COUNT; index++) {
+                final int row = row(index, parity) + rowStep;
+                final int column = column(index, parity) + columnStep;
+                border[parity][index] = row < 0 || row >= rows || column < 0 || column >= columns;
+                neighborIndex[parity][index] =
+                        (byte) index(Math.floorMod(row, rows), Math.floorMod(column, columns), parity);
+            }
+        }
+    }
+
+    /**
+     * Returns the direction opposite to this one.
+     *
+     * @return the opposite direction
+     */
+    public Direction opposite() {
+        return values()[(ordinal() + 2) % 4];
+    }
+
+    /**
+     * Checks if this direction moves along the meridians, i.e. changes the latitude.
+     *
+     * @return true for {@link #NORTH} and {@link #SOUTH}, false otherwise
+     */
+    public boolean isMeridional() {
+        return rowStep != 0;
+    }
+
+    /**
+     * Returns the index of the character adjacent to the given one in this direction.
+     *
+     * @param index the index of the character in the geohash alphabet
+     * @param position the position of the character in the geohash code
+     * @return the index of the adjacent character, wrapped around if the border of the parent is crossed
+     */
+    int neighborIndex(final int index, final int position) {
+        return neighborIndex[position & 1][index];
+    }
+
+    /**
+     * Checks if moving the given character in this direction crosses the border of its parent geohash.
+     *
+     * @param index the index of the character in the geohash alphabet
+     * @param position the position of the character in the geohash code
+     * @return true if the parent geohash has to be moved in this direction as well
+     */
+    boolean isBorder(final int index, final int position) {
+        return border[position & 1][index];
+    }
+
+    /*
+     * The bits of a character are interleaved starting with a longitude bit at even positions and with a latitude
+     * bit at odd positions; the most significant bit comes first.
+     */
+    private static int row(final int index, final int parity) {
+        return parity == EVEN ? bits(index, 3, 1) : bits(index, 4, 2, 0);
+    }
+
+    private static int column(final int index, final int parity) {
+        return parity == EVEN ? bits(index, 4, 2, 0) : bits(index, 3, 1);
+    }
+
+    private static int index(final int row, final int column, final int parity) {
+        return parity == EVEN ? spread(column, 4, 2, 0) | spread(row, 3, 1)
+                : spread(row, 4, 2, 0) | spread(column, 3, 1);
+    }
+
+    private static int bits(final int index, final int... positions) {
+        int value = 0;
+        for (final int position : positions) {
+            value = value << 1 | index >> position & 1;
+        }
+        return value;
+    }
+
+    private static int spread(final int value, final int... positions) {
+        int index = 0;
+        for (int i = 0; i < positions.length; i++) {
+            index |= (value >> positions.length - 1 - i & 1) << positions[i];
+        }
+        return index;
+    }
+}
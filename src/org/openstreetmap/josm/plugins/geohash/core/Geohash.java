@@ -6,8 +6,9 @@
  */
 package org.openstreetmap.josm.plugins.geohash.core;
 
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import net.exfidefortis.map.BoundingBox;
 import net.exfidefortis.map.Point;
@@ -21,6 +22,8 @@ public class Geohash {
     public static final String ROOT_CODE = "";
     public static final Geohash WORLD = new Geohash(ROOT_CODE);
 
+    private static final int CHILD_COUNT = 32;
+
     private final String code;
     private transient BoundingBox bounds;
 
@@ -34,14 +37,40 @@ public class Geohash {
         this.code = code;
     }
 
+    /*
+     * Builds a geohash from a code known to be valid, e.g. derived from the code of another geohash.
+     */
+    private Geohash(final char[] code) {
+        this.code = new String(code);
+    }
+
     public Geohash(final Point point, final int resolution) {
         this(new Codec().encode(point, resolution));
     }
 
+    /**
+     * Builds a geohash from its packed representation.
+     *
+     * @param geohash a geohash packed as defined by {@link LongCodec}
+     */
+    public Geohash(final long geohash) {
+        this(LongCodec.toString(geohash));
+    }
+
     public String code() {
         return code;
     }
 
+    /**
+     * Returns this geohash packed into a long value, as defined by {@link LongCodec}.
+     *
+     * @return the packed geohash
+     * @throws IllegalArgumentException if the code is longer than {@link LongCodec#MAX_PRECISION} characters
+     */
+    public long toLong() {
+        return LongCodec.fromString(code);
+    }
+
     public BoundingBox bounds() {
         if (bounds == null) {
             bounds = new Codec().decode(code);
@@ -53,14 +82,83 @@ public class Geohash {
         return this == WORLD ? null : new Geohash(code.substring(0, code.length() - 1));
     }
 
-    public Collection<Geohash> children() {
-        final Collection<Geohash> children = new HashSet<>();
-        for (final char character : Alphabet.INSTANCE.characters()) {
-            children.add(new Geohash(code + character));
+    /**
+     * Returns the 32 children of this geohash, in the order of their codes (which is the Z-order of their areas).
+     *
+     * @return the list of children
+     */
+    public List<Geohash> children() {
+        final char[] childCode = Arrays.copyOf(code.toCharArray(), code.length() + 1);
+        final List<Geohash> children = new ArrayList<>(CHILD_COUNT);
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            childCode[code.length()] = Alphabet.INSTANCE.get(i);
+            children.add(new Geohash(childCode));
         }
         return children;
     }
 
+    /**
+     * Returns the geohash of the same length adjacent to this one in the given direction. Moving east or west wraps
+     * around the antimeridian; moving north from the northernmost geohashes or south from the southernmost ones is not
+     * possible.
+     *
+     * @param direction the direction in which to move
+     * @return the adjacent geohash, or null if there is none
+     */
+    public Geohash neighbor(final Direction direction) {
+        final char[] neighborCode = code.toCharArray();
+        return move(neighborCode, direction) ? new Geohash(neighborCode) : null;
+    }
+
+    /**
+     * Returns the geohashes of the same length surrounding this one, clockwise starting from the north. The neighbors
+     * beyond the poles are missing, so there are fewer than 8 neighbors for the northernmost and southernmost
+     * geohashes. The world geohash has no neighbors.
+     *
+     * @return the list of neighbors
+     */
+    public List<Geohash> neighbors() {
+        final List<Geohash> neighbors = new ArrayList<>(8);
+        final Geohash east = neighbor(Direction.EAST);
+        if (east != null) {
+            final Geohash north = neighbor(Direction.NORTH);
+            final Geohash south = neighbor(Direction.SOUTH);
+            if (north != null) {
+                neighbors.add(north);
+                neighbors.add(north.neighbor(Direction.EAST));
+            }
+            neighbors.add(east);
+            if (south != null) {
+                neighbors.add(south.neighbor(Direction.EAST));
+                neighbors.add(south);
+                neighbors.add(south.neighbor(Direction.WEST));
+            }
+            neighbors.add(neighbor(Direction.WEST));
+            if (north != null) {
+                neighbors.add(north.neighbor(Direction.WEST));
+            }
+        }
+        return neighbors;
+    }
+
+    /*
+     * Moves the given code in place to the adjacent geohash in the given direction, starting from the last character
+     * and carrying the move over to the previous characters as long as the border of the parent is crossed. Returns
+     * false if the move would cross a pole.
+     */
+    private static boolean move(final char[] code, final Direction direction) {
+        if (code.length == 0) {
+            return false;
+        }
+        boolean border = true;
+        for (int position = code.length - 1; border && position >= 0; position--) {
+            final int index = Alphabet.INSTANCE.indexOf(code[position]);
+            code[position] = Alphabet.INSTANCE.get(direction.neighborIndex(index, position));
+            border = direction.isBorder(index, position);
+        }
+        return !border || !direction.isMeridional();
+    }
+
     @Override
     public boolean equals(final Object obj) {
         if (this == obj) {
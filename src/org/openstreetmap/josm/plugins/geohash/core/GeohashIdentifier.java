@@ -6,9 +6,15 @@
  */
 package org.openstreetmap.josm.plugins.geohash.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.stream.Collectors;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
 import net.exfidefortis.map.BoundingBox;
 
 
@@ -32,6 +38,13 @@ import net.exfidefortis.map.BoundingBox;
  * Let's say that G'/A is 0.28 (28%). Since 0.28 < 0.3 the algorithm stops looking and returns the geohashes with side
  * lengths G'.
  *
+ * Since the side length of a geohash only depends on its length, the geohash length satisfying the ratio is computed
+ * directly and the geohashes of that length are then enumerated row by row, so the cost is proportional to the number
+ * of returned geohashes.
+ *
+ * The cover computation methods may be called from background threads; the side ratio is changed by the user
+ * interface only.
+ *
  * @author Mihai Chintoanu
  */
 public final class GeohashIdentifier {
@@ -43,6 +56,9 @@ public final class GeohashIdentifier {
      */
     public static final int CUTOFF_DEPTH = 10;
 
+    /** The default maximum number of geohashes in a cover */
+    public static final int DEFAULT_MAX_CELL_COUNT = 1024;
+
     /*
      * "Side ratio" refers to the ratio between the geohash side length in degrees and the target area side length in
      * degrees.
@@ -62,13 +78,66 @@ public final class GeohashIdentifier {
     private static final Percent SIDE_RATIO_STEP = new Percent(30);
     private static final Percent SIDE_RATIO_LEEWAY = new Percent(10);
 
+    /** The maximum number of covers remembered by the cache */
+    private static final int CACHE_SIZE = 32;
+
+    /** Bounds are compared with a precision of 1e-9 degrees, far below the size of a geohash at the cut-off depth */
+    private static final double CACHE_KEY_SCALE = 1e9;
+
     private boolean isZoomFrozen = false;
 
+    /** Covers computed for recently seen bounds, kept in least recently used order */
+    private final Map<CacheKey, Collection<Geohash>> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+
+        private static final long serialVersionUID = 6129740522137592431L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<CacheKey, Collection<Geohash>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private long cacheHits;
+    private long cacheMisses;
+
     private Collection<Geohash> geohashesBeforeFreeze;
 
 
-    /** The ratio between the geohash side length and the area side length which must not be exceeded */
-    private Percent sideRatio = DEFAULT_SIDE_RATIO;
+    /**
+     * The ratio between the geohash side length and the area side length which must not be exceeded. It is changed on
+     * the event dispatch thread but may be read by background cover computations.
+     */
+    private volatile Percent sideRatio = DEFAULT_SIDE_RATIO;
+
+    /**
+     * The maximum number of geohashes in a cover, which bounds the painting work whatever the side ratio and the shape
+     * of the area. It is changed on the event dispatch thread but may be read by background cover computations.
+     */
+    private volatile int maxCellCount = DEFAULT_MAX_CELL_COUNT;
+
+    /**
+     * Returns the maximum number of geohashes in a cover.
+     * @return the maximum number of geohashes
+     */
+    public int getMaxCellCount() {
+        return maxCellCount;
+    }
+
+    /**
+     * Sets the maximum number of geohashes in a cover. A cover which would hold more geohashes is made of shorter
+     * geohashes instead.
+     * @param maxCellCount the maximum number of geohashes, at least 32 so that the world can be covered
+     */
+    public void setMaxCellCount(final int maxCellCount) {
+        if (maxCellCount < Geohash.WORLD.children().size()) {
+            throw new IllegalArgumentException(
+                    "The maximum cell count must be at least " + Geohash.WORLD.children().size() + ": " + maxCellCount);
+        }
+        if (maxCellCount != this.maxCellCount) {
+            this.maxCellCount = maxCellCount;
+            clearCache();
+        }
+    }
 
     /**
      * Checks if the side ratio can be increased.
@@ -85,9 +154,8 @@ public final class GeohashIdentifier {
      * @return true if the side ratio increase would produce different geohashes for the given area
      */
     public boolean wouldNoticeSideRatioIncrease(final BoundingBox bounds) {
-        final Collection<Geohash> geohashes = get(bounds);
-        final Collection<Geohash> increasedGeohashes = get(bounds, sideRatio.add(SIDE_RATIO_STEP));
-        return !geohashes.equals(increasedGeohashes);
+        // the geohashes covering the same bounds differ if and only if their lengths differ
+        return precision(bounds, sideRatio) != precision(bounds, sideRatio.add(SIDE_RATIO_STEP));
     }
 
     /**
@@ -96,6 +164,7 @@ public final class GeohashIdentifier {
     public void increaseSideRatio() {
         if (canIncreaseSideRatio()) {
             sideRatio = sideRatio.add(SIDE_RATIO_STEP);
+            clearCache();
         }
     }
 
@@ -114,9 +183,7 @@ public final class GeohashIdentifier {
      * @return true if the side ratio decrease would produce different geohashes for the given area
      */
     public boolean wouldNoticeSideRatioDecrease(final BoundingBox bounds) {
-        final Collection<Geohash> geohashes = get(bounds);
-        final Collection<Geohash> decreasedGeohashes = get(bounds, sideRatio.subtract(SIDE_RATIO_STEP));
-        return !geohashes.equals(decreasedGeohashes);
+        return precision(bounds, sideRatio) != precision(bounds, sideRatio.subtract(SIDE_RATIO_STEP));
     }
 
     /**
@@ -125,6 +192,7 @@ public final class GeohashIdentifier {
     public void decreaseSideRatio() {
         if (canDecreaseSideRatio()) {
             sideRatio = sideRatio.subtract(SIDE_RATIO_STEP);
+            clearCache();
         }
     }
 
@@ -145,56 +213,208 @@ public final class GeohashIdentifier {
     }
 
     /**
-     * Returns the geohashes that cover the given area given the current side ratio setting.
+     * Returns the geohashes that cover the given area given the current side ratio setting. Covers of recently seen
+     * areas are cached, so repeated calls for the same area (e.g. repaints of an unchanged map view) are answered
+     * without computation.
      * @param bounds a bounding box for which to return geohashes
-     * @return a collection of geohashes
+     * @return an unmodifiable collection of geohashes
      */
     public Collection<Geohash> get(final BoundingBox bounds) {
-        return get(bounds, sideRatio);
+        final long start = Instrumentation.start();
+        final CoverEvent event = new CoverEvent();
+        event.begin();
+        try {
+            final Percent currentSideRatio = sideRatio;
+            final Collection<Geohash> geohashes = get(bounds, currentSideRatio, null);
+            event.commit(bounds, currentSideRatio, geohashes, false);
+            return geohashes;
+        } finally {
+            Instrumentation.stop(Instrumentation.IDENTIFIER_GET, start);
+        }
+    }
+
+    /**
+     * Returns the geohashes that cover the given new area, knowing the geohashes that cover the previous area. When
+     * both areas are covered by geohashes of the same length (e.g. when the map view is panned), only the strips which
+     * entered or left the area are computed and the geohashes of the previous cover are reused.
+     * @param previousBounds the previous area
+     * @param previousGeohashes the geohashes returned for the previous area
+     * @param bounds the new area
+     * @return the geohashes covering the new area, together with the added and removed geohashes
+     */
+    public CoverUpdate update(final BoundingBox previousBounds, final Collection<Geohash> previousGeohashes,
+            final BoundingBox bounds) {
+        final long start = Instrumentation.start();
+        final CoverEvent event = new CoverEvent();
+        event.begin();
+        try {
+            final Percent currentSideRatio = sideRatio;
+            final CoverUpdate update = update(previousBounds, previousGeohashes, bounds, currentSideRatio);
+            event.commit(bounds, currentSideRatio, update.geohashes(), update.incremental());
+            return update;
+        } finally {
+            Instrumentation.stop(Instrumentation.IDENTIFIER_GET, start);
+        }
     }
 
-    private Collection<Geohash> get(final BoundingBox bounds, final Percent customSideRatio) {
-        Collection<Geohash> geohashes = Collections.singleton(Geohash.WORLD);
-        while (!acceptableSideRatio(geohashes, bounds, customSideRatio)) {
-            geohashes = relevantChildren(geohashes, bounds);
+    private CoverUpdate update(final BoundingBox previousBounds, final Collection<Geohash> previousGeohashes,
+            final BoundingBox bounds, final Percent currentSideRatio) {
+        final int precision = precision(bounds, currentSideRatio);
+        final CellRange range = CellRange.covering(bounds, precision);
+        final CellRange previousRange = CellRange.covering(previousBounds, precision);
+        if (previousGeohashes.isEmpty() || previousRange.size() != previousGeohashes.size()
+                || previousGeohashes.iterator().next().code().length() != precision) {
+            final Collection<Geohash> geohashes = get(bounds, currentSideRatio, null);
+            return new CoverUpdate(geohashes, geohashes, previousGeohashes, false);
+        }
+        final Collection<Geohash> added = new ArrayList<>();
+        range.forEachNotIn(previousRange, geohash -> added.add(new Geohash(geohash)));
+        final Collection<Geohash> removed = new ArrayList<>();
+        previousRange.forEachNotIn(range, geohash -> removed.add(new Geohash(geohash)));
+        final Collection<Geohash> geohashes = get(bounds, currentSideRatio, () -> {
+            final Set<Geohash> updatedGeohashes = new HashSet<>(previousGeohashes);
+            removed.forEach(updatedGeohashes::remove);
+            updatedGeohashes.addAll(added);
+            return updatedGeohashes;
+        });
+        return new CoverUpdate(geohashes, added, removed, true);
+    }
+
+    /*
+     * Returns the cached cover of the given bounds, or computes and caches it. The cover is computed outside the lock,
+     * either from scratch or by the given supplier.
+     */
+    private Collection<Geohash> get(final BoundingBox bounds, final Percent customSideRatio,
+            final Supplier<Set<Geohash>> computation) {
+        final CacheKey key = new CacheKey(bounds, customSideRatio, maxCellCount);
+        Collection<Geohash> geohashes;
+        synchronized (cache) {
+            geohashes = cache.get(key);
+            if (geohashes != null) {
+                cacheHits++;
+                Instrumentation.COVER_CACHE_HITS.increment();
+                return geohashes;
+            }
+            cacheMisses++;
+            Instrumentation.COVER_CACHE_MISSES.increment();
+        }
+        geohashes = Collections.unmodifiableSet(computation != null ? computation.get() : get(bounds, customSideRatio));
+        synchronized (cache) {
+            cache.put(key, geohashes);
         }
         return geohashes;
     }
 
-    private boolean acceptableSideRatio(final Collection<Geohash> geohashes, final BoundingBox bounds,
-            final Percent customSideRatio) {
+    private Set<Geohash> get(final BoundingBox bounds, final Percent customSideRatio) {
+        return CellRange.covering(bounds, precision(bounds, customSideRatio)).geohashes();
+    }
+
+    /**
+     * Discards all the cached covers.
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of {@link #get(BoundingBox)} calls answered from the cache.
+     * @return the number of cache hits
+     */
+    public long cacheHits() {
+        synchronized (cache) {
+            return cacheHits;
+        }
+    }
+
+    /**
+     * Returns the number of {@link #get(BoundingBox)} calls which had to compute the cover.
+     * @return the number of cache misses
+     */
+    public long cacheMisses() {
+        synchronized (cache) {
+            return cacheMisses;
+        }
+    }
+
+    /*
+     * Computes the geohash length directly instead of descending the geohash tree level by level: the geohash side
+     * length only depends on the geohash length, and the number of geohashes sharing area with the bounds is given by
+     * the covering cell range. If the cover would exceed the cell budget (e.g. a tall area, whose side ratio only
+     * accounts for its width), the longest geohashes keeping the cover within the budget are used instead.
+     */
+    private int precision(final BoundingBox bounds, final Percent customSideRatio) {
+        final Percent upperLimit = customSideRatio.add(SIDE_RATIO_LEEWAY);
+        int precision = 0;
+        while (precision < CUTOFF_DEPTH && !acceptableSideRatio(precision, bounds, upperLimit)) {
+            precision++;
+        }
+        final int maximum = maxCellCount;
+        while (precision > 1 && CellRange.covering(bounds, precision).size() > maximum) {
+            precision--;
+        }
+        return precision;
+    }
+
+    private boolean acceptableSideRatio(final int precision, final BoundingBox bounds, final Percent upperLimit) {
         final boolean acceptableSideRatio;
-        if (atCutOffDepth(geohashes)) {
-            acceptableSideRatio = true;
-        } else if (geohashes.isEmpty() || singleEncompassingGeohash(geohashes, bounds)) {
+        if (CellRange.covering(bounds, precision).size() <= 1) {
+            // no geohash or a single encompassing geohash
             acceptableSideRatio = false;
         } else {
-            final Percent upperLimit = customSideRatio.add(SIDE_RATIO_LEEWAY);
-            acceptableSideRatio = computeSideRatio(geohashes, bounds).isLessThanOrEqualTo(upperLimit);
+            acceptableSideRatio = computeSideRatio(precision, bounds).isLessThanOrEqualTo(upperLimit);
         }
         return acceptableSideRatio;
     }
 
-    private boolean atCutOffDepth(final Collection<Geohash> geohashes) {
-        return geohashes.stream().anyMatch(geohash -> geohash.code().length() == CUTOFF_DEPTH);
+    private Percent computeSideRatio(final int precision, final BoundingBox bounds) {
+        final double geohashSide = Math.max(LongCodec.width(precision), LongCodec.height(precision));
+        final double boundsSide = bounds.widthInDegrees();
+        return Percent.fromRatio(geohashSide, boundsSide);
     }
 
-    private boolean singleEncompassingGeohash(final Collection<Geohash> geohashes, final BoundingBox bounds) {
-        return geohashes.size() == 1 && geohashes.stream().findAny().get().bounds().contains(bounds);
-    }
+    /**
+     * Cache key made of the quantized bounds, the side ratio and the cell budget used for computing a cover.
+     */
+    private static final class CacheKey {
 
-    private Percent computeSideRatio(final Collection<Geohash> geohashes, final BoundingBox bounds) {
-        final BoundingBox geohashBounds = geohashes.stream().findAny().get().bounds();
-        final double geohashWidth = geohashBounds.east().subtract(geohashBounds.west()).asDegrees();
-        final double geohashHeight = geohashBounds.north().subtract(geohashBounds.south()).asDegrees();
-        final double geohashSide = Math.max(geohashWidth, geohashHeight);
-        final double boundsSide = bounds.east().subtract(bounds.west()).asDegrees();
-        return Percent.fromRatio(geohashSide, boundsSide);
-    }
+        private final long south;
+        private final long west;
+        private final long north;
+        private final long east;
+        private final Percent sideRatio;
+        private final int maxCellCount;
 
-    private Collection<Geohash> relevantChildren(final Collection<Geohash> geohashes, final BoundingBox bounds) {
-        return geohashes.stream().flatMap(geohash -> geohash.children().stream())
-                .filter(geohash -> geohash.bounds().sharesAreaWith(bounds))
-                .collect(Collectors.toSet());
+        private CacheKey(final BoundingBox bounds, final Percent sideRatio, final int maxCellCount) {
+            south = quantize(bounds.south().asDegrees());
+            west = quantize(bounds.west().asDegrees());
+            north = quantize(bounds.north().asDegrees());
+            east = quantize(bounds.east().asDegrees());
+            this.sideRatio = sideRatio;
+            this.maxCellCount = maxCellCount;
+        }
+
+        private static long quantize(final double degrees) {
+            return Math.round(degrees * CACHE_KEY_SCALE);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return south == other.south && west == other.west && north == other.north && east == other.east
+                    && sideRatio.equals(other.sideRatio) && maxCellCount == other.maxCellCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(south, west, north, east, sideRatio, maxCellCount);
+        }
     }
-}
\ No newline at end of file
+}
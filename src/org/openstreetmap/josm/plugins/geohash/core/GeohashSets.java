@@ -0,0 +1,350 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import net.exfidefortis.map.BoundingBox;
+
+
+/**
+ * Operations on sets of geohashes packed as defined by {@link LongCodec} and sorted in the order of
+ * {@link LongCodec#compare(long, long)}. In this order a geohash comes right before its descendants, and the children
+ * of a geohash are adjacent, so the operations need a single pass over the keys.
+ *
+ * A set of geohashes may mix precisions: compacting replaces each complete group of 32 siblings by their parent, which
+ * covers the same area with far fewer geohashes, and expanding replaces each geohash by its descendants with a given
+ * precision.
+ *
+ * @author agent
+ */
+public final class GeohashSets {
+
+    private static final int CHILD_COUNT = 1 << LongCodec.BITS_PER_CHARACTER;
+
+    /** The largest number of coarse geohashes under which the geohashes sharing area with some bounds are searched */
+    private static final int MAX_PROBE_COUNT = 1024;
+
+    private GeohashSets() {}
+
+
+    /**
+     * Compacts the given geohashes: geohashes covered by another geohash of the collection are dropped, and the
+     * complete groups of 32 siblings are replaced by their parent, recursively.
+     *
+     * @param geohashes geohashes, possibly of different precisions
+     * @return the compacted geohashes, in the order of their codes
+     */
+    public static List<Geohash> compact(final Collection<Geohash> geohashes) {
+        return toGeohashes(compact(toLongs(geohashes)));
+    }
+
+    /**
+     * Compacts the given packed geohashes, as {@link #compact(Collection)} does.
+     *
+     * @param geohashes packed geohashes, possibly of different precisions; the array is not modified
+     * @return the compacted geohashes, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public static long[] compact(final long[] geohashes) {
+        final long[] sorted = geohashes.clone();
+        LongCodec.sort(sorted);
+        return compactSorted(sorted, sorted.length);
+    }
+
+    /**
+     * Expands the given geohashes to the given precision: each shorter geohash is replaced by all its descendants with
+     * that precision, and each longer geohash by its ancestor with that precision.
+     *
+     * @param geohashes geohashes, possibly of different precisions
+     * @param precision the precision of the expanded geohashes
+     * @return the expanded geohashes, without duplicates, in the order of their codes
+     */
+    public static List<Geohash> expand(final Collection<Geohash> geohashes, final int precision) {
+        return toGeohashes(expand(toLongs(geohashes), precision));
+    }
+
+    /**
+     * Expands the given packed geohashes to the given precision, as {@link #expand(Collection, int)} does.
+     *
+     * @param geohashes packed geohashes, possibly of different precisions; the array is not modified
+     * @param precision the precision of the expanded geohashes
+     * @return the expanded geohashes, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public static long[] expand(final long[] geohashes, final int precision) {
+        if (precision < 0 || precision > LongCodec.MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "The precision must be in the interval [0, " + LongCodec.MAX_PRECISION + "]: " + precision);
+        }
+        final long[] sorted = geohashes.clone();
+        LongCodec.sort(sorted);
+        final long[] compacted = compactSorted(sorted, sorted.length);
+        // once compacted, the geohashes do not overlap, so their descendants are distinct and come out sorted
+        long count = 0;
+        for (final long geohash : compacted) {
+            count += descendantCount(geohash, precision);
+        }
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The expansion would hold " + count + " geohashes");
+        }
+        final long[] expanded = new long[(int) count];
+        final int shift = precision == 0 ? 0 : LongCodec.shiftFor(precision - 1);
+        int size = 0;
+        for (final long geohash : compacted) {
+            final long first = (geohash & LongCodec.hashMask(Math.min(precision, LongCodec.precision(geohash))))
+                    | precision;
+            final long descendantCount = descendantCount(geohash, precision);
+            if (size == 0 || expanded[size - 1] != first) {
+                for (long i = 0; i < descendantCount; i++) {
+                    expanded[size++] = first + (i << shift);
+                }
+            }
+        }
+        return Arrays.copyOf(expanded, size);
+    }
+
+    /*
+     * The number of descendants of the given geohash with the given precision, or 1 for the ancestor with that
+     * precision if the geohash is longer.
+     */
+    private static long descendantCount(final long geohash, final int precision) {
+        return 1L << (LongCodec.BITS_PER_CHARACTER * Math.max(0, precision - LongCodec.precision(geohash)));
+    }
+
+    private static long[] toLongs(final Collection<Geohash> geohashes) {
+        final long[] packed = new long[geohashes.size()];
+        int index = 0;
+        for (final Geohash geohash : geohashes) {
+            packed[index++] = geohash.toLong();
+        }
+        return packed;
+    }
+
+    private static List<Geohash> toGeohashes(final long[] packed) {
+        final List<Geohash> geohashes = new ArrayList<>(packed.length);
+        for (final long geohash : packed) {
+            geohashes.add(new Geohash(geohash));
+        }
+        return geohashes;
+    }
+
+    /**
+     * Compacts the given sorted geohashes: geohashes covered by another geohash of the set are dropped, and the
+     * complete groups of 32 siblings are replaced by their parent, recursively.
+     *
+     * @param geohashes sorted packed geohashes, possibly of different precisions
+     * @param length the number of geohashes to consider, from the beginning of the array
+     * @return the compacted geohashes, sorted
+     */
+    static long[] compactSorted(final long[] geohashes, final int length) {
+        final Compactor compactor = new Compactor(length);
+        for (int i = 0; i < length; i++) {
+            compactor.accept(geohashes[i]);
+        }
+        return compactor.toArray();
+    }
+
+    /**
+     * Returns the largest precision whose geohashes sharing area with the given bounds are at most the given number.
+     *
+     * @param bounds a bounding box
+     * @param maxCount the largest number of geohashes
+     * @return the precision, between 0 (the world geohash alone) and {@link LongCodec#MAX_PRECISION}
+     */
+    public static int precisionFor(final BoundingBox bounds, final long maxCount) {
+        int precision = 0;
+        while (precision < LongCodec.MAX_PRECISION
+                && CellRange.covering(bounds, precision + 1).size() <= maxCount) {
+            precision++;
+        }
+        return precision;
+    }
+
+    /**
+     * Returns the geohashes of the given set which share area with the given bounds. Only the parts of the set lying
+     * under a few coarse geohashes covering the bounds are searched, so the cost does not depend on the size of the
+     * set.
+     *
+     * @param geohashes sorted packed geohashes, none covering another (e.g. compacted)
+     * @param bounds a bounding box
+     * @return the geohashes sharing area with the bounds, sorted
+     */
+    public static long[] intersecting(final long[] geohashes, final BoundingBox bounds) {
+        // indexed as the decoded geohash bounds are
+        final double[] area = new double[4];
+        area[LongCodec.SOUTH] = bounds.south().asDegrees();
+        area[LongCodec.WEST] = bounds.west().asDegrees();
+        area[LongCodec.NORTH] = bounds.north().asDegrees();
+        area[LongCodec.EAST] = bounds.east().asDegrees();
+        final double[] geohashBounds = new double[4];
+        final LongStream.Builder found = LongStream.builder();
+        CellRange.covering(bounds, precisionFor(bounds, MAX_PROBE_COUNT)).forEach(probe -> {
+            final int from = lowerBound(geohashes, probe);
+            if (from > 0 && covers(geohashes[from - 1], probe)) {
+                // the probe lies in a larger geohash, which shares area with the bounds as the probe does
+                found.add(geohashes[from - 1]);
+            }
+            for (int i = from; i < geohashes.length && covers(probe, geohashes[i]); i++) {
+                LongCodec.decode(geohashes[i], geohashBounds);
+                if (sharesArea(geohashBounds, area)) {
+                    found.add(geohashes[i]);
+                }
+            }
+        });
+        return sortedUnique(found.build().toArray());
+    }
+
+    /**
+     * Returns the geohashes with the given precision which share area with the given bounds and lie in the area of
+     * the given set: the shorter geohashes of the set are replaced by their descendants with that precision, and the
+     * longer ones by their ancestor with that precision. Each geohash with the given precision covering the bounds is
+     * looked up in the set, so the precision has to be chosen for the bounds, e.g. with
+     * {@link #precisionFor(BoundingBox, long)}.
+     *
+     * @param geohashes sorted packed geohashes, none covering another (e.g. compacted)
+     * @param precision the precision of the returned geohashes
+     * @param bounds a bounding box
+     * @return the geohashes with the given precision, sorted
+     */
+    public static long[] resample(final long[] geohashes, final int precision, final BoundingBox bounds) {
+        final CellRange range = CellRange.covering(bounds, precision);
+        if (range.size() > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The bounds hold " + range.size() + " geohashes");
+        }
+        final LongStream.Builder found = LongStream.builder();
+        range.forEach(cell -> {
+            final int from = lowerBound(geohashes, cell);
+            if ((from > 0 && covers(geohashes[from - 1], cell))
+                    || (from < geohashes.length && covers(cell, geohashes[from]))) {
+                found.add(cell);
+            }
+        });
+        final long[] cells = found.build().toArray();
+        LongCodec.sort(cells);
+        return cells;
+    }
+
+    private static boolean sharesArea(final double[] geohashBounds, final double[] area) {
+        return geohashBounds[LongCodec.SOUTH] < area[LongCodec.NORTH]
+                && geohashBounds[LongCodec.NORTH] > area[LongCodec.SOUTH]
+                && geohashBounds[LongCodec.WEST] < area[LongCodec.EAST]
+                && geohashBounds[LongCodec.EAST] > area[LongCodec.WEST];
+    }
+
+    private static long[] sortedUnique(final long[] geohashes) {
+        LongCodec.sort(geohashes);
+        int count = 0;
+        for (int i = 0; i < geohashes.length; i++) {
+            if (i == 0 || geohashes[i] != geohashes[i - 1]) {
+                geohashes[count++] = geohashes[i];
+            }
+        }
+        return Arrays.copyOf(geohashes, count);
+    }
+
+    /*
+     * Returns the index of the first sorted geohash not less than the given key.
+     */
+    private static int lowerBound(final long[] geohashes, final long key) {
+        int low = 0;
+        int high = geohashes.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (LongCodec.compare(geohashes[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks if the first geohash equals the second one or is one of its ancestors.
+     */
+    static boolean covers(final long ancestor, final long geohash) {
+        final int precision = LongCodec.precision(ancestor);
+        final long mask = LongCodec.hashMask(precision);
+        return LongCodec.precision(geohash) >= precision && (geohash & mask) == (ancestor & mask);
+    }
+
+    /**
+     * Returns the parent of the given packed geohash, which may not be the world geohash.
+     */
+    static long parent(final long geohash) {
+        final int precision = LongCodec.precision(geohash) - 1;
+        return (geohash & LongCodec.hashMask(precision)) | precision;
+    }
+
+    private static boolean isLastChild(final long geohash) {
+        final int precision = LongCodec.precision(geohash);
+        return precision > 0 && LongCodec.characterIndex(geohash, precision - 1) == CHILD_COUNT - 1;
+    }
+
+    /*
+     * The geohashes are unique, sorted and none covers another, so 32 geohashes of the same precision sharing the same
+     * parent are all the children of that parent.
+     */
+    private static boolean isSiblingGroup(final long[] geohashes, final int from, final int to) {
+        final long last = geohashes[to - 1];
+        final int precision = LongCodec.precision(last);
+        final long parentMask = LongCodec.hashMask(precision - 1);
+        boolean siblings = true;
+        for (int i = from; siblings && i < to - 1; i++) {
+            siblings = LongCodec.precision(geohashes[i]) == precision
+                    && (geohashes[i] & parentMask) == (last & parentMask);
+        }
+        return siblings;
+    }
+
+
+    /**
+     * Compacts geohashes as they are produced, in sorted order, as {@link GeohashSets#compactSorted(long[], int)} does,
+     * so that they never need to be held uncompacted. The compacted geohashes are kept on a stack: each complete group
+     * of siblings is replaced by its parent as soon as its last child arrives.
+     */
+    static final class Compactor implements LongConsumer {
+
+        private long[] stack;
+        private int size;
+
+        Compactor(final int expectedSize) {
+            stack = new long[Math.max(expectedSize, CHILD_COUNT)];
+        }
+
+        /**
+         * Adds a geohash, which may not come before the previously added ones.
+         */
+        @Override
+        public void accept(final long geohash) {
+            if (size > 0 && covers(stack[size - 1], geohash)) {
+                return;
+            }
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[size++] = geohash;
+            // while the top of the stack holds the complete children of a parent, replaces them with the parent
+            while (size >= CHILD_COUNT && isLastChild(stack[size - 1])
+                    && isSiblingGroup(stack, size - CHILD_COUNT, size)) {
+                final long parent = parent(stack[size - 1]);
+                size -= CHILD_COUNT;
+                stack[size++] = parent;
+            }
+        }
+
+        /**
+         * Returns the compacted geohashes, sorted.
+         */
+        long[] toArray() {
+            return Arrays.copyOf(stack, size);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Read-only store of fixed-width values keyed by packed geohashes, kept in a file and memory mapped, so that tens of
+ * millions of entries can be looked up without being loaded onto the heap.
+ *
+ * The file holds a header followed by the entries, sorted by key in the order of {@link LongCodec#compare(long, long)}:
+ *
+ * <pre>
+ * header: magic (int), version (int), value width in bytes (int), reserved (int), entry count (long)
+ * entry:  packed geohash (long), value (value width bytes)
+ * </pre>
+ *
+ * All the numbers are big-endian. In this order the descendants of a geohash are adjacent, so both the lookup of a key
+ * and of all the keys with a given prefix are binary searches. Files are written with a {@link Builder}.
+ *
+ * The store may be read from several threads.
+ *
+ * @author agent
+ */
+public final class GeohashStore implements Closeable {
+
+    private static final int MAGIC = 0x47485354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int KEY_SIZE = Long.BYTES;
+
+    /** The largest size of a mapped segment; a buffer may not exceed 2GB */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final int valueWidth;
+    private final int entrySize;
+    private final long size;
+    private final int entriesPerSegment;
+    private final ByteBuffer[] segments;
+
+
+    private GeohashStore(final FileChannel channel, final int valueWidth, final long size) throws IOException {
+        this.channel = channel;
+        this.valueWidth = valueWidth;
+        this.entrySize = KEY_SIZE + valueWidth;
+        this.size = size;
+        entriesPerSegment = (int) (MAX_SEGMENT_SIZE / entrySize);
+        segments = new ByteBuffer[(int) ((size + entriesPerSegment - 1) / entriesPerSegment)];
+        for (int segment = 0; segment < segments.length; segment++) {
+            final long first = (long) segment * entriesPerSegment;
+            final long count = Math.min(entriesPerSegment, size - first);
+            segments[segment] =
+                    channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * entrySize, count * entrySize);
+        }
+    }
+
+    /**
+     * Opens the given store file.
+     *
+     * @param path the store file
+     * @return the opened store, which has to be closed
+     * @throws IOException if the file cannot be read or is not a store
+     */
+    public static GeohashStore open(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // reads the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a geohash store: " + path);
+            }
+            final int valueWidth = header.getInt();
+            header.getInt();
+            final long size = header.getLong();
+            if (valueWidth < 0 || size < 0 || HEADER_SIZE + size * (KEY_SIZE + valueWidth) > channel.size()) {
+                throw new IOException("Truncated or corrupted geohash store: " + path);
+            }
+            return new GeohashStore(channel, valueWidth, size);
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the width of the values.
+     *
+     * @return the number of bytes of each value
+     */
+    public int valueWidth() {
+        return valueWidth;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the key of the given entry.
+     *
+     * @param index the index of the entry, in key order
+     * @return the packed geohash
+     */
+    public long key(final long index) {
+        return segment(index).getLong(offset(index));
+    }
+
+    /**
+     * Returns the index of the entry with the given key.
+     *
+     * @param geohash a packed geohash
+     * @return the index of its entry, or -1 if there is none
+     */
+    public long get(final long geohash) {
+        final long index = lowerBound(geohash);
+        return index < size && key(index) == geohash ? index : -1;
+    }
+
+    /**
+     * Returns the range of the entries whose keys are the given geohash or its descendants.
+     *
+     * @param geohash a packed geohash
+     * @return the range of entry indices, possibly empty
+     */
+    public Range prefixRange(final long geohash) {
+        final int precision = LongCodec.precision(geohash);
+        final long prefix = geohash & LongCodec.hashMask(precision);
+        // the geohash itself is the smallest key with its prefix, and its ancestors come before it
+        final long from = lowerBound(prefix | precision);
+        final long lastDescendant = prefix | ~LongCodec.hashMask(precision);
+        final long to = lastDescendant == -1L ? size : lowerBound(lastDescendant + 1);
+        return new Range(from, Math.max(from, to));
+    }
+
+    /**
+     * Copies the value of the given entry.
+     *
+     * @param index the index of the entry, in key order
+     * @param destination the array receiving the value, at least {@link #valueWidth()} long
+     */
+    public void value(final long index, final byte[] destination) {
+        final ByteBuffer segment = segment(index);
+        final int offset = offset(index) + KEY_SIZE;
+        for (int i = 0; i < valueWidth; i++) {
+            destination[i] = segment.get(offset + i);
+        }
+    }
+
+    /**
+     * Reads an int from the value of the given entry.
+     *
+     * @param index the index of the entry, in key order
+     * @param valueOffset the offset of the int within the value
+     * @return the int
+     */
+    public int getInt(final long index, final int valueOffset) {
+        checkValueOffset(valueOffset, Integer.BYTES);
+        return segment(index).getInt(offset(index) + KEY_SIZE + valueOffset);
+    }
+
+    /**
+     * Reads a long from the value of the given entry.
+     *
+     * @param index the index of the entry, in key order
+     * @param valueOffset the offset of the long within the value
+     * @return the long
+     */
+    public long getLong(final long index, final int valueOffset) {
+        checkValueOffset(valueOffset, Long.BYTES);
+        return segment(index).getLong(offset(index) + KEY_SIZE + valueOffset);
+    }
+
+    /**
+     * Reads a double from the value of the given entry.
+     *
+     * @param index the index of the entry, in key order
+     * @param valueOffset the offset of the double within the value
+     * @return the double
+     */
+    public double getDouble(final long index, final int valueOffset) {
+        checkValueOffset(valueOffset, Double.BYTES);
+        return segment(index).getDouble(offset(index) + KEY_SIZE + valueOffset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /*
+     * Returns the index of the first entry whose key is not less than the given one.
+     */
+    private long lowerBound(final long geohash) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            if (LongCodec.compare(key(middle), geohash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private ByteBuffer segment(final long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Entry " + index + " of " + size);
+        }
+        return segments[(int) (index / entriesPerSegment)];
+    }
+
+    private int offset(final long index) {
+        return (int) (index % entriesPerSegment) * entrySize;
+    }
+
+    private void checkValueOffset(final int valueOffset, final int length) {
+        if (valueOffset < 0 || valueOffset + length > valueWidth) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot read " + length + " bytes at " + valueOffset + " from a " + valueWidth + " bytes value");
+        }
+    }
+
+
+    /**
+     * A range of entries, given by the index of its first entry (inclusive) and of its last entry (exclusive).
+     */
+    public static final class Range {
+
+        private final long from;
+        private final long to;
+
+        private Range(final long from, final long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public long from() {
+            return from;
+        }
+
+        public long to() {
+            return to;
+        }
+
+        public long size() {
+            return to - from;
+        }
+    }
+
+
+    /**
+     * Writes a store file entry by entry, so that the entries need not be held in memory. The entries have to be added
+     * in the order of their keys.
+     */
+    public static final class Builder implements Closeable {
+
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private final int valueWidth;
+        private final ByteBuffer buffer;
+        private long size;
+        private long lastKey;
+
+        /**
+         * Creates the given store file, replacing any existing file.
+         *
+         * @param path the store file
+         * @param valueWidth the number of bytes of each value
+         * @throws IOException if the file cannot be created
+         */
+        public Builder(final Path path, final int valueWidth) throws IOException {
+            if (valueWidth < 0 || valueWidth > BUFFER_SIZE - KEY_SIZE) {
+                throw new IllegalArgumentException("Invalid value width: " + valueWidth);
+            }
+            this.valueWidth = valueWidth;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            // the header is written once the entry count is known
+            buffer.position(HEADER_SIZE);
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param geohash the packed geohash, greater than the previous one
+         * @param value the value, {@link GeohashStore#valueWidth()} bytes long
+         * @throws IOException if writing fails
+         */
+        public void add(final long geohash, final byte[] value) throws IOException {
+            if (value.length != valueWidth) {
+                throw new IllegalArgumentException("The value must have " + valueWidth + " bytes: " + value.length);
+            }
+            beginEntry(geohash).put(value);
+        }
+
+        /**
+         * Adds an entry whose value is the given long, for stores with values of 8 bytes.
+         *
+         * @param geohash the packed geohash, greater than the previous one
+         * @param value the value
+         * @throws IOException if writing fails
+         */
+        public void add(final long geohash, final long value) throws IOException {
+            if (valueWidth != Long.BYTES) {
+                throw new IllegalArgumentException("The value must have " + valueWidth + " bytes");
+            }
+            beginEntry(geohash).putLong(value);
+        }
+
+        private ByteBuffer beginEntry(final long geohash) throws IOException {
+            if (size > 0 && LongCodec.compare(lastKey, geohash) >= 0) {
+                throw new IllegalArgumentException("The geohashes must be added in increasing order: "
+                        + LongCodec.toString(geohash) + " after " + LongCodec.toString(lastKey));
+            }
+            if (buffer.remaining() < KEY_SIZE + valueWidth) {
+                flush();
+            }
+            lastKey = geohash;
+            size++;
+            return buffer.putLong(geohash);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Writes the remaining entries and the header, and closes the file.
+         *
+         * @throws IOException if writing fails
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(valueWidth).putInt(0).putLong(size).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, HEADER_SIZE - header.remaining());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters and latency histograms of the hot paths of the plug-in: computing geohash covers, encoding and decoding
+ * geohashes and painting. Recording does not allocate, so it stays on in production; it can be turned off, in which
+ * case timing costs a volatile read.
+ *
+ * A duration is recorded as follows:
+ * <pre>
+ * final long start = Instrumentation.start();
+ * ...
+ * Instrumentation.stop(Instrumentation.CODEC_ENCODE, start);
+ * </pre>
+ *
+ * @author agent
+ */
+public final class Instrumentation {
+
+    /** The durations, in nanoseconds, of computing or updating a cover with the {@link GeohashIdentifier} */
+    public static final Histogram IDENTIFIER_GET = new Histogram("identifier.get");
+
+    /** The durations, in nanoseconds, of the string geohash encoding */
+    public static final Histogram CODEC_ENCODE = new Histogram("codec.encode");
+
+    /** The durations, in nanoseconds, of the string geohash decoding */
+    public static final Histogram CODEC_DECODE = new Histogram("codec.decode");
+
+    /** The durations, in nanoseconds, of rendering a grid tile, outline and labels, in the background */
+    public static final Histogram RENDER_TILE = new Histogram("paint.tile");
+
+    /** The durations, in nanoseconds, of drawing the geohash grid */
+    public static final Histogram DRAW_GRID = new Histogram("paint.grid");
+
+    /** The durations, in nanoseconds, of painting the whole layer */
+    public static final Histogram LAYER_PAINT = new Histogram("paint.layer");
+
+    /** The number of geohashes painted per frame */
+    public static final Histogram CELLS_PER_FRAME = new Histogram("paint.cells");
+
+    /** The geohash covers found in, respectively missing from, the cache of the geohash identifier */
+    public static final LongAdder COVER_CACHE_HITS = new LongAdder();
+    public static final LongAdder COVER_CACHE_MISSES = new LongAdder();
+
+    /** The grid tiles found in, respectively missing from, the grid tile cache */
+    public static final LongAdder TILE_CACHE_HITS = new LongAdder();
+    public static final LongAdder TILE_CACHE_MISSES = new LongAdder();
+
+    /** The geohash screen geometries found in, respectively missing from, the geometry cache */
+    public static final LongAdder GEOMETRY_CACHE_HITS = new LongAdder();
+    public static final LongAdder GEOMETRY_CACHE_MISSES = new LongAdder();
+
+    /** The histograms of durations */
+    public static final List<Histogram> LATENCIES =
+            List.of(IDENTIFIER_GET, CODEC_ENCODE, CODEC_DECODE, RENDER_TILE, DRAW_GRID, LAYER_PAINT);
+
+    private static volatile boolean enabled = true;
+
+
+    private Instrumentation() {}
+
+    /**
+     * Returns whether the durations are recorded.
+     *
+     * @return true if the durations are recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns the recording of the durations on or off. The counters are always recorded.
+     *
+     * @param enabled true for recording the durations
+     */
+    public static void setEnabled(final boolean enabled) {
+        Instrumentation.enabled = enabled;
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the start time, to be passed to {@link #stop(Histogram, long)}, or 0 if the durations are not recorded
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of an operation started with {@link #start()}.
+     *
+     * @param histogram the histogram of durations of the operation
+     * @param start the value returned by {@link #start()}
+     */
+    public static void stop(final Histogram histogram, final long start) {
+        if (start != 0) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the ratio of hits to lookups.
+     *
+     * @param hits the number of hits
+     * @param misses the number of misses
+     * @return the hit ratio, or 0 if there was no lookup
+     */
+    public static double hitRatio(final LongAdder hits, final LongAdder misses) {
+        final long hitCount = hits.sum();
+        final long lookupCount = hitCount + misses.sum();
+        return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+    }
+
+    /**
+     * Returns the current statistics by name: for each histogram of durations the count, the mean, the median, the
+     * 99th percentile and the maximum, in microseconds; the same for the cells per frame; and the cache hit ratios.
+     *
+     * @return the statistics, in a stable order
+     */
+    public static Map<String, Number> snapshot() {
+        final Map<String, Number> snapshot = new LinkedHashMap<>();
+        final double microsecond = TimeUnit.MICROSECONDS.toNanos(1);
+        for (final Histogram histogram : LATENCIES) {
+            snapshot.put(histogram.name() + ".count", histogram.count());
+            snapshot.put(histogram.name() + ".meanMicros", histogram.mean() / microsecond);
+            snapshot.put(histogram.name() + ".p50Micros", histogram.percentile(50) / microsecond);
+            snapshot.put(histogram.name() + ".p99Micros", histogram.percentile(99) / microsecond);
+            snapshot.put(histogram.name() + ".maxMicros", histogram.maximum() / microsecond);
+        }
+        snapshot.put(CELLS_PER_FRAME.name() + ".mean", CELLS_PER_FRAME.mean());
+        snapshot.put(CELLS_PER_FRAME.name() + ".p99", CELLS_PER_FRAME.percentile(99));
+        snapshot.put(CELLS_PER_FRAME.name() + ".max", CELLS_PER_FRAME.maximum());
+        snapshot.put("cache.cover.hitRatio", hitRatio(COVER_CACHE_HITS, COVER_CACHE_MISSES));
+        snapshot.put("cache.tile.hitRatio", hitRatio(TILE_CACHE_HITS, TILE_CACHE_MISSES));
+        snapshot.put("cache.geometry.hitRatio", hitRatio(GEOMETRY_CACHE_HITS, GEOMETRY_CACHE_MISSES));
+        return snapshot;
+    }
+
+    /**
+     * Forgets all the recorded durations and counts.
+     */
+    public static void reset() {
+        for (final Histogram histogram : LATENCIES) {
+            histogram.reset();
+        }
+        CELLS_PER_FRAME.reset();
+        for (final LongAdder counter : List.of(COVER_CACHE_HITS, COVER_CACHE_MISSES, TILE_CACHE_HITS,
+                TILE_CACHE_MISSES, GEOMETRY_CACHE_HITS, GEOMETRY_CACHE_MISSES)) {
+            counter.reset();
+        }
+    }
+}
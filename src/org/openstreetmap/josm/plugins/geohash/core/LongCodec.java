@@ -0,0 +1,480 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Allocation-free geohash codec working on primitive values.
+ *
+ * A geohash of up to {@link #MAX_PRECISION} characters is packed into a single {@code long}: the interleaved
+ * longitude/latitude bits are stored left-aligned in bits 63..4 (the first character occupies the highest five bits)
+ * and the precision (i.e. the code length) is stored in bits 3..0. With this layout the unsigned order of two packed
+ * values is the lexicographic order of their codes, and all the descendants of a geohash form a contiguous unsigned
+ * range right after it.
+ *
+ * The encoding produces exactly the same codes as the bisection algorithm of {@link Codec}, and decoding produces
+ * exactly the same bounds, since all the cell boundaries are dyadic fractions of the coordinate ranges and are
+ * therefore represented exactly as doubles.
+ *
+ * @author agent
+ */
+public final class LongCodec {
+
+    /** The maximum number of characters that fit into a packed geohash */
+    public static final int MAX_PRECISION = 12;
+
+    /** Index of the south latitude in a decoded bounds array */
+    public static final int SOUTH = 0;
+
+    /** Index of the west longitude in a decoded bounds array */
+    public static final int WEST = 1;
+
+    /** Index of the north latitude in a decoded bounds array */
+    public static final int NORTH = 2;
+
+    /** Index of the east longitude in a decoded bounds array */
+    public static final int EAST = 3;
+
+    /** The packed value of the root geohash (empty code) */
+    public static final long WORLD = 0L;
+
+    static final int BITS_PER_CHARACTER = 5;
+    static final int PRECISION_BITS = 4;
+    static final long PRECISION_MASK = (1L << PRECISION_BITS) - 1;
+    static final int COORDINATE_BITS = MAX_PRECISION * BITS_PER_CHARACTER / 2;
+
+    private static final double MIN_LATITUDE = -90;
+    private static final double MAX_LATITUDE = 90;
+    private static final double MIN_LONGITUDE = -180;
+    private static final double MAX_LONGITUDE = 180;
+    private static final long MAX_QUANTUM = (1L << COORDINATE_BITS) - 1;
+    private static final double LATITUDE_QUANTUM = (MAX_LATITUDE - MIN_LATITUDE) / (1L << COORDINATE_BITS);
+    private static final double LONGITUDE_QUANTUM = (MAX_LONGITUDE - MIN_LONGITUDE) / (1L << COORDINATE_BITS);
+
+    /** Cell sizes indexed by precision; the last entries cover the invalid precisions a packed value may hold */
+    private static final double[] HEIGHTS = new double[1 << PRECISION_BITS];
+    private static final double[] WIDTHS = new double[1 << PRECISION_BITS];
+
+    static {
+        for (int precision = 0; precision < HEIGHTS.length; precision++) {
+            HEIGHTS[precision] = height(precision);
+            WIDTHS[precision] = width(precision);
+        }
+    }
+
+    private LongCodec() {}
+
+
+    /**
+     * Encodes the given location into a packed geohash with the given precision.
+     *
+     * @param latitude the latitude in decimal degrees, in the interval [-90, 90]
+     * @param longitude the longitude in decimal degrees, in the interval [-180, 180]
+     * @param precision the number of characters of the geohash, in the interval [0, {@link #MAX_PRECISION}]
+     * @return the packed geohash
+     */
+    public static long encode(final double latitude, final double longitude, final int precision) {
+        checkPrecision(precision);
+        if (!(latitude >= MIN_LATITUDE && latitude <= MAX_LATITUDE)) {
+            throw new IllegalArgumentException("Latitude out of range: " + latitude);
+        }
+        if (!(longitude >= MIN_LONGITUDE && longitude <= MAX_LONGITUDE)) {
+            throw new IllegalArgumentException("Longitude out of range: " + longitude);
+        }
+        return encodeUnchecked(latitude, longitude, precision);
+    }
+
+    /**
+     * Same as {@link #encode(double, double, int)} but without any argument validation. The result is undefined for
+     * out of range arguments.
+     */
+    static long encodeUnchecked(final double latitude, final double longitude, final int precision) {
+        final long latitudeBits = quantize(latitude, MIN_LATITUDE, LATITUDE_QUANTUM);
+        final long longitudeBits = quantize(longitude, MIN_LONGITUDE, LONGITUDE_QUANTUM);
+        final long interleaved = (spread(longitudeBits) << 1) | spread(latitudeBits);
+        return ((interleaved << PRECISION_BITS) & hashMask(precision)) | precision;
+    }
+
+    /*
+     * Returns the index of the cell containing the given coordinate when the coordinate range is split into
+     * 2^COORDINATE_BITS equal cells. This is the same value the bisection algorithm would produce: the first estimate
+     * is corrected against the exact cell boundaries, which are dyadic and therefore exactly representable.
+     */
+    private static long quantize(final double coordinate, final double minimum, final double quantum) {
+        // written without branches (the conditional expressions compile to conditional moves) for the bulk encoding
+        final long estimate = (long) ((coordinate - minimum) / quantum);
+        final long index = estimate + (minimum + (estimate + 1) * quantum <= coordinate ? 1 : 0)
+                - (minimum + estimate * quantum > coordinate ? 1 : 0);
+        return Math.max(0, Math.min(MAX_QUANTUM, index));
+    }
+
+    /**
+     * Encodes the given locations into packed geohashes with the given precision. This is the bulk form of
+     * {@link #encode(double, double, int)}, meant for large batches of locations: the arguments are validated once
+     * and the loop body has no branches and no allocations.
+     *
+     * @param latitudes the latitudes in decimal degrees, in the interval [-90, 90]
+     * @param longitudes the longitudes in decimal degrees, in the interval [-180, 180]; as many as the latitudes
+     * @param precision the number of characters of the geohashes, in the interval [0, {@link #MAX_PRECISION}]
+     * @param geohashes the array receiving the packed geohashes; at least as long as the latitudes
+     */
+    public static void encode(final double[] latitudes, final double[] longitudes, final int precision,
+            final long[] geohashes) {
+        checkPrecision(precision);
+        final int length = latitudes.length;
+        if (longitudes.length != length) {
+            throw new IllegalArgumentException(
+                    "The latitude and longitude counts differ: " + length + " != " + longitudes.length);
+        }
+        if (geohashes.length < length) {
+            throw new IllegalArgumentException("The output array is too short: " + geohashes.length + " < " + length);
+        }
+        final long mask = hashMask(precision);
+        boolean valid = true;
+        for (int i = 0; i < length; i++) {
+            final double latitude = latitudes[i];
+            final double longitude = longitudes[i];
+            // non short-circuit operators, so that the validation adds no branches either
+            valid &= latitude >= MIN_LATITUDE & latitude <= MAX_LATITUDE & longitude >= MIN_LONGITUDE
+                    & longitude <= MAX_LONGITUDE;
+            final long latitudeBits = quantize(latitude, MIN_LATITUDE, LATITUDE_QUANTUM);
+            final long longitudeBits = quantize(longitude, MIN_LONGITUDE, LONGITUDE_QUANTUM);
+            final long interleaved = (spread(longitudeBits) << 1) | spread(latitudeBits);
+            geohashes[i] = ((interleaved << PRECISION_BITS) & mask) | precision;
+        }
+        if (!valid) {
+            for (int i = 0; i < length; i++) {
+                // throws for the first invalid location
+                encode(latitudes[i], longitudes[i], precision);
+            }
+        }
+    }
+
+    /**
+     * Decodes the given packed geohash into the given bounds array. The array is indexed by {@link #SOUTH},
+     * {@link #WEST}, {@link #NORTH} and {@link #EAST} and may be reused between calls.
+     *
+     * @param geohash a packed geohash
+     * @param bounds an array of at least four elements receiving the geohash bounds in decimal degrees
+     */
+    public static void decode(final long geohash, final double[] bounds) {
+        decode(geohash, bounds, 0);
+    }
+
+    /**
+     * Decodes the given packed geohash into four consecutive elements of the given array, starting at the given offset.
+     *
+     * @param geohash a packed geohash
+     * @param bounds the array receiving the bounds in the order south, west, north, east
+     * @param offset the index of the first element to write
+     */
+    public static void decode(final long geohash, final double[] bounds, final int offset) {
+        final int precision = precision(geohash);
+        final int latitudeBitCount = latitudeBits(precision);
+        final int longitudeBitCount = longitudeBits(precision);
+        final long interleaved = geohash >>> PRECISION_BITS;
+        final long latitudeBits = compact(interleaved) >>> (COORDINATE_BITS - latitudeBitCount);
+        final long longitudeBits = compact(interleaved >>> 1) >>> (COORDINATE_BITS - longitudeBitCount);
+        final double latitudeHeight = height(precision);
+        final double longitudeWidth = width(precision);
+        final double south = MIN_LATITUDE + latitudeBits * latitudeHeight;
+        final double west = MIN_LONGITUDE + longitudeBits * longitudeWidth;
+        bounds[offset + SOUTH] = south;
+        bounds[offset + WEST] = west;
+        bounds[offset + NORTH] = south + latitudeHeight;
+        bounds[offset + EAST] = west + longitudeWidth;
+    }
+
+    /**
+     * Decodes the given packed geohashes. This is the bulk form of {@link #decode(long, double[], int)}: the bounds of
+     * each geohash are written into four consecutive elements of the bounds array, in the order south, west, north,
+     * east. The loop body has no branches and no allocations.
+     *
+     * @param geohashes the packed geohashes, possibly of different precisions
+     * @param bounds the array receiving the bounds; at least four times as long as the geohashes
+     */
+    public static void decode(final long[] geohashes, final double[] bounds) {
+        if (bounds.length < geohashes.length * 4L) {
+            throw new IllegalArgumentException(
+                    "The bounds array is too short: " + bounds.length + " < 4 * " + geohashes.length);
+        }
+        for (int i = 0; i < geohashes.length; i++) {
+            final long geohash = geohashes[i];
+            final int precision = precision(geohash);
+            final long interleaved = geohash >>> PRECISION_BITS;
+            final long latitudeBits = compact(interleaved) >>> (COORDINATE_BITS - latitudeBits(precision));
+            final long longitudeBits = compact(interleaved >>> 1) >>> (COORDINATE_BITS - longitudeBits(precision));
+            final double latitudeHeight = HEIGHTS[precision];
+            final double longitudeWidth = WIDTHS[precision];
+            final double south = MIN_LATITUDE + latitudeBits * latitudeHeight;
+            final double west = MIN_LONGITUDE + longitudeBits * longitudeWidth;
+            final int offset = i * 4;
+            bounds[offset + SOUTH] = south;
+            bounds[offset + WEST] = west;
+            bounds[offset + NORTH] = south + latitudeHeight;
+            bounds[offset + EAST] = west + longitudeWidth;
+        }
+    }
+
+    /**
+     * Returns the precision (i.e. the number of characters) of the given packed geohash.
+     *
+     * @param geohash a packed geohash
+     * @return the precision of the geohash
+     */
+    public static int precision(final long geohash) {
+        return (int) (geohash & PRECISION_MASK);
+    }
+
+    /**
+     * Returns the height in degrees of any geohash with the given precision.
+     *
+     * @param precision a geohash precision
+     * @return the latitude span of the geohash cells with the given precision
+     */
+    public static double height(final int precision) {
+        return (MAX_LATITUDE - MIN_LATITUDE) / (1L << latitudeBits(precision));
+    }
+
+    /**
+     * Returns the width in degrees of any geohash with the given precision.
+     *
+     * @param precision a geohash precision
+     * @return the longitude span of the geohash cells with the given precision
+     */
+    public static double width(final int precision) {
+        return (MAX_LONGITUDE - MIN_LONGITUDE) / (1L << longitudeBits(precision));
+    }
+
+    /**
+     * Returns the number of latitude bits of a geohash with the given precision.
+     */
+    static int latitudeBits(final int precision) {
+        return precision * BITS_PER_CHARACTER / 2;
+    }
+
+    /**
+     * Returns the number of longitude bits of a geohash with the given precision.
+     */
+    static int longitudeBits(final int precision) {
+        final int bitCount = precision * BITS_PER_CHARACTER;
+        return bitCount - bitCount / 2;
+    }
+
+    /**
+     * Returns the row (i.e. latitude index, counted from the south) of the geohash with the given precision that
+     * contains the given latitude.
+     */
+    static long latitudeIndex(final double latitude, final int precision) {
+        return quantize(latitude, MIN_LATITUDE, LATITUDE_QUANTUM) >>> (COORDINATE_BITS - latitudeBits(precision));
+    }
+
+    /**
+     * Returns the column (i.e. longitude index, counted from the west) of the geohash with the given precision that
+     * contains the given longitude.
+     */
+    static long longitudeIndex(final double longitude, final int precision) {
+        return quantize(longitude, MIN_LONGITUDE, LONGITUDE_QUANTUM) >>> (COORDINATE_BITS - longitudeBits(precision));
+    }
+
+    /**
+     * Returns the southern latitude of the geohashes with the given precision found in the given row.
+     */
+    static double south(final long latitudeIndex, final int precision) {
+        return MIN_LATITUDE + latitudeIndex * height(precision);
+    }
+
+    /**
+     * Returns the western longitude of the geohashes with the given precision found in the given column.
+     */
+    static double west(final long longitudeIndex, final int precision) {
+        return MIN_LONGITUDE + longitudeIndex * width(precision);
+    }
+
+    /**
+     * Packs the geohash with the given precision found at the given row and column.
+     */
+    static long fromIndices(final long latitudeIndex, final long longitudeIndex, final int precision) {
+        final long latitudeBits = latitudeIndex << (COORDINATE_BITS - latitudeBits(precision));
+        final long longitudeBits = longitudeIndex << (COORDINATE_BITS - longitudeBits(precision));
+        final long interleaved = (spread(longitudeBits) << 1) | spread(latitudeBits);
+        return ((interleaved << PRECISION_BITS) & hashMask(precision)) | precision;
+    }
+
+    /**
+     * Checks if the given text is a geohash code which can be packed: at most {@link #MAX_PRECISION} characters of the
+     * geohash alphabet.
+     *
+     * @param code a text, possibly null
+     * @return true if {@link #fromString(String)} accepts the text
+     */
+    public static boolean isValid(final String code) {
+        return code != null && code.length() <= MAX_PRECISION && Alphabet.INSTANCE.isValid(code);
+    }
+
+    /**
+     * Packs the given geohash code.
+     *
+     * @param code a geohash code of at most {@link #MAX_PRECISION} characters
+     * @return the packed geohash
+     */
+    public static long fromString(final String code) {
+        if (code == null) {
+            throw new IllegalArgumentException("The code may not be null");
+        }
+        checkLength(code.length(), code);
+        long geohash = code.length();
+        for (int i = 0; i < code.length(); i++) {
+            geohash |= characterBits(code.charAt(i), code, i);
+        }
+        return geohash;
+    }
+
+    /**
+     * Packs the geohash code found in the given character array range.
+     *
+     * @param characters the array holding the code
+     * @param offset the index of the first code character
+     * @param length the number of code characters
+     * @return the packed geohash
+     */
+    public static long fromChars(final char[] characters, final int offset, final int length) {
+        checkLength(length, null);
+        long geohash = length;
+        for (int i = 0; i < length; i++) {
+            geohash |= characterBits(characters[offset + i], null, i);
+        }
+        return geohash;
+    }
+
+    private static long characterBits(final char character, final String code, final int position) {
+        final int index = Alphabet.INSTANCE.indexOf(character);
+        if (index < 0) {
+            throw new IllegalArgumentException(
+                    "The code " + (code != null ? code : "") + " is invalid: '" + character + "' at " + position);
+        }
+        return (long) index << shiftFor(position);
+    }
+
+    /**
+     * Returns the code of the given packed geohash.
+     *
+     * @param geohash a packed geohash
+     * @return the geohash code
+     */
+    public static String toString(final long geohash) {
+        final char[] characters = new char[precision(geohash)];
+        toChars(geohash, characters, 0);
+        return new String(characters);
+    }
+
+    /**
+     * Writes the code of the given packed geohash into the given array.
+     *
+     * @param geohash a packed geohash
+     * @param characters the array receiving the code
+     * @param offset the index at which the first character is written
+     * @return the number of characters written (i.e. the precision of the geohash)
+     */
+    public static int toChars(final long geohash, final char[] characters, final int offset) {
+        final int precision = precision(geohash);
+        for (int i = 0; i < precision; i++) {
+            characters[offset + i] = Alphabet.INSTANCE.get(characterIndex(geohash, i));
+        }
+        return precision;
+    }
+
+    /**
+     * Returns the alphabet index of the character found at the given position of the given packed geohash.
+     */
+    static int characterIndex(final long geohash, final int position) {
+        return (int) (geohash >>> shiftFor(position)) & ((1 << BITS_PER_CHARACTER) - 1);
+    }
+
+    /**
+     * Compares two packed geohashes. The result is consistent with the lexicographic order of their codes.
+     *
+     * @param first a packed geohash
+     * @param second another packed geohash
+     * @return a negative value, zero or a positive value if the first geohash is less than, equal to or greater than
+     * the second one
+     */
+    public static int compare(final long first, final long second) {
+        return Long.compareUnsigned(first, second);
+    }
+
+    /**
+     * Sorts the given packed geohashes in the order defined by {@link #compare(long, long)}.
+     *
+     * @param geohashes the packed geohashes to sort
+     */
+    public static void sort(final long[] geohashes) {
+        sort(geohashes, 0, geohashes.length);
+    }
+
+    /**
+     * Sorts the given range of packed geohashes in the order defined by {@link #compare(long, long)}.
+     *
+     * @param geohashes the array holding the packed geohashes
+     * @param from the index of the first element to sort, inclusive
+     * @param to the index of the last element to sort, exclusive
+     */
+    public static void sort(final long[] geohashes, final int from, final int to) {
+        // flipping the sign bit maps the unsigned order onto the signed order used by Arrays.sort
+        for (int i = from; i < to; i++) {
+            geohashes[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(geohashes, from, to);
+        for (int i = from; i < to; i++) {
+            geohashes[i] ^= Long.MIN_VALUE;
+        }
+    }
+
+    static int shiftFor(final int position) {
+        return Long.SIZE - BITS_PER_CHARACTER * (position + 1);
+    }
+
+    static long hashMask(final int precision) {
+        return precision == 0 ? 0L : -1L << (Long.SIZE - BITS_PER_CHARACTER * precision);
+    }
+
+    private static void checkPrecision(final int precision) {
+        if (precision < 0 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "The precision must be in the interval [0, " + MAX_PRECISION + "]: " + precision);
+        }
+    }
+
+    private static void checkLength(final int length, final String code) {
+        if (length > MAX_PRECISION) {
+            throw new IllegalArgumentException("The code " + (code != null ? code + " " : "") + "is longer than "
+                    + MAX_PRECISION + " characters");
+        }
+    }
+
+    /* Spreads the lower 32 bits of the given value over the even bit positions. */
+    private static long spread(final long value) {
+        long x = value & 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        return (x | (x << 1)) & 0x5555555555555555L;
+    }
+
+    /* Gathers the even bits of the given value into the lower 32 bits; the inverse of spread. */
+    private static long compact(final long value) {
+        long x = value & 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        return (x | (x >>> 16)) & 0xFFFFFFFFL;
+    }
+}
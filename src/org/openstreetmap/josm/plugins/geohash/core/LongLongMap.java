@@ -0,0 +1,243 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.function.LongBinaryOperator;
+
+
+/**
+ * Hash map from long keys to long values, storing both in primitive arrays (open addressing with linear probing), so
+ * that millions of entries need neither boxing nor one object per entry. {@link Long#MIN_VALUE} may not be used as a
+ * key. Not thread-safe.
+ *
+ * @author agent
+ */
+final class LongLongMap {
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+
+    LongLongMap() {
+        this(MINIMUM_CAPACITY);
+    }
+
+    LongLongMap(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     *
+     * @param key a key
+     * @param absentValue the value returned when the key is missing
+     * @return the value of the key, or the absent value
+     */
+    long get(final long key, final long absentValue) {
+        final int slot = slotOf(key);
+        return keys[slot] == key ? values[slot] : absentValue;
+    }
+
+    boolean containsKey(final long key) {
+        return keys[slotOf(key)] == key;
+    }
+
+    /**
+     * Associates the given value with the given key.
+     *
+     * @return the previous value of the key, or the absent value if the key was missing
+     */
+    long put(final long key, final long value, final long absentValue) {
+        checkKey(key);
+        final int slot = slotOf(key);
+        final long previous;
+        if (keys[slot] == key) {
+            previous = values[slot];
+            values[slot] = value;
+        } else {
+            previous = absentValue;
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            growIfNeeded();
+        }
+        return previous;
+    }
+
+    /**
+     * Adds the given delta to the value of the given key, a missing key having the value 0. The key is removed if its
+     * value becomes 0.
+     *
+     * @return the new value of the key
+     */
+    long add(final long key, final long delta) {
+        checkKey(key);
+        final int slot = slotOf(key);
+        final long value;
+        if (keys[slot] == key) {
+            value = values[slot] + delta;
+            if (value == 0) {
+                removeSlot(slot);
+            } else {
+                values[slot] = value;
+            }
+        } else {
+            value = delta;
+            if (value != 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                growIfNeeded();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @return the value of the removed key, or the absent value if the key was missing
+     */
+    long remove(final long key, final long absentValue) {
+        final int slot = slotOf(key);
+        final long previous;
+        if (keys[slot] == key) {
+            previous = values[slot];
+            removeSlot(slot);
+        } else {
+            previous = absentValue;
+        }
+        return previous;
+    }
+
+    /**
+     * Calls the given action for each entry; the action may not modify this map.
+     */
+    void forEach(final LongBinaryConsumer action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Merges all the entries of the given map into this one, combining the values of the common keys with the given
+     * function.
+     */
+    void merge(final LongLongMap other, final LongBinaryOperator function) {
+        other.forEach((key, value) -> {
+            final int slot = slotOf(key);
+            if (keys[slot] == key) {
+                values[slot] = function.applyAsLong(values[slot], value);
+            } else {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                growIfNeeded();
+            }
+        });
+    }
+
+    void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /*
+     * Returns the slot holding the given key or, if the key is missing, the free slot where it would be inserted.
+     */
+    private int slotOf(final long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /*
+     * Removes the entry of the given slot, moving back the entries that follow it in the same probe sequence, so that
+     * no tombstones are needed.
+     */
+    private void removeSlot(final int removedSlot) {
+        final int mask = keys.length - 1;
+        int free = removedSlot;
+        int slot = (free + 1) & mask;
+        while (keys[slot] != FREE) {
+            final int home = hash(keys[slot]) & mask;
+            // the entry may move to the free slot only if the free slot lies between its home slot and its slot
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                keys[free] = keys[slot];
+                values[free] = values[slot];
+                free = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[free] = FREE;
+        size--;
+    }
+
+    private void growIfNeeded() {
+        if (size > keys.length * MAX_LOAD) {
+            final long[] oldKeys = keys;
+            final long[] oldValues = values;
+            allocate(keys.length * 2);
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != FREE) {
+                    final int newSlot = slotOf(oldKeys[slot]);
+                    keys[newSlot] = oldKeys[slot];
+                    values[newSlot] = oldValues[slot];
+                }
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        final int minimum = (int) Math.min(1 << 30, Math.max(MINIMUM_CAPACITY, (long) (expectedSize / MAX_LOAD) + 1));
+        return Integer.highestOneBit(minimum - 1) << 1;
+    }
+
+    private static int hash(final long key) {
+        // the murmur3 finalizer spreads the low entropy of sequential ids and packed geohashes over all the bits
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static void checkKey(final long key) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Long.MIN_VALUE may not be used as a key");
+        }
+    }
+
+    /**
+     * Action receiving the entries of a map.
+     */
+    @FunctionalInterface
+    interface LongBinaryConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -28,6 +28,10 @@ class Percent {
         this.value = value;
     }
 
+    int value() {
+        return value;
+    }
+
     public Percent add(final Percent other) {
         return new Percent(value + other.value);
     }
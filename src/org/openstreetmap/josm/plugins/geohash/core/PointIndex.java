@@ -0,0 +1,514 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Immutable index of points (e.g. OSM nodes) answering k-nearest-neighbor queries.
+ *
+ * The points are grouped by the geohash of a fixed precision containing them, chosen so that a geohash holds a few
+ * points on average. A query scans the geohash of the query point, then the rings of geohashes around it, outwards, and
+ * stops as soon as the k-th nearest point found so far is closer than the border of the scanned area: no point beyond
+ * that border can be nearer, so the result is exact, whatever the geohash edges the points lie on.
+ *
+ * The rings grow quickly when the query point is far from the points, so after a bounded number of geohashes the query
+ * falls back to a best-first descent of the geohash tree: the points are stored in geohash order, so the points of any
+ * geohash, whatever its length, are contiguous, and the geohashes are visited from the nearest to the farthest one.
+ *
+ * Distances are great-circle distances on a sphere of the mean Earth radius. The index may be queried from several
+ * threads.
+ *
+ * @author agent
+ */
+public final class PointIndex {
+
+    /** The mean Earth radius, in meters */
+    public static final double EARTH_RADIUS = 6_371_008.8;
+
+    /** The average number of points per geohash aimed for when choosing the precision */
+    private static final int POINTS_PER_GEOHASH = 8;
+
+    /** The number of geohashes scanned in rings, beyond which a query descends the geohash tree instead */
+    private static final int MAX_RING_GEOHASHES = 256;
+
+    private static final int CHILD_COUNT = 1 << LongCodec.BITS_PER_CHARACTER;
+    private static final long ABSENT = -1;
+
+    private final int precision;
+    private final long lastRow;
+    private final long columnCount;
+
+    /** The points, sorted by geohash */
+    private final long[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    /** The non-empty geohashes, sorted, and the index of the first point of each of them (plus the point count) */
+    private final long[] geohashes;
+    private final int[] firstPoints;
+
+    /** Packed geohash to its index in the sorted geohashes */
+    private final LongLongMap geohashIndices;
+
+
+    private PointIndex(final int precision, final long[] ids, final double[] latitudes, final double[] longitudes,
+            final long[] geohashes, final int[] firstPoints, final LongLongMap geohashIndices) {
+        this.precision = precision;
+        lastRow = (1L << LongCodec.latitudeBits(precision)) - 1;
+        columnCount = 1L << LongCodec.longitudeBits(precision);
+        this.ids = ids;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.geohashes = geohashes;
+        this.firstPoints = firstPoints;
+        this.geohashIndices = geohashIndices;
+    }
+
+    /**
+     * Builds the index of the given points, with a precision suited to their number and extent.
+     *
+     * @param ids the ids of the points
+     * @param latitudes the latitudes of the points, in decimal degrees
+     * @param longitudes the longitudes of the points, in decimal degrees
+     * @return the new index
+     */
+    public static PointIndex build(final long[] ids, final double[] latitudes, final double[] longitudes) {
+        double south = 90;
+        double north = -90;
+        double west = 180;
+        double east = -180;
+        for (int i = 0; i < latitudes.length; i++) {
+            south = Math.min(south, latitudes[i]);
+            north = Math.max(north, latitudes[i]);
+            west = Math.min(west, longitudes[i]);
+            east = Math.max(east, longitudes[i]);
+        }
+        int precision = 1;
+        while (precision < LongCodec.MAX_PRECISION
+                && ((north - south) / LongCodec.height(precision + 1) + 1)
+                        * ((east - west) / LongCodec.width(precision + 1) + 1) * POINTS_PER_GEOHASH <= ids.length) {
+            precision++;
+        }
+        return build(ids, latitudes, longitudes, precision);
+    }
+
+    /**
+     * Builds the index of the given points, grouping them by geohashes of the given precision.
+     *
+     * @param ids the ids of the points
+     * @param latitudes the latitudes of the points, in decimal degrees
+     * @param longitudes the longitudes of the points, in decimal degrees
+     * @param precision the precision of the geohashes grouping the points, between 1 and
+     * {@link LongCodec#MAX_PRECISION}
+     * @return the new index
+     */
+    public static PointIndex build(final long[] ids, final double[] latitudes, final double[] longitudes,
+            final int precision) {
+        if (ids.length != latitudes.length || ids.length != longitudes.length) {
+            throw new IllegalArgumentException("The id, latitude and longitude counts differ");
+        }
+        if (precision < 1 || precision > LongCodec.MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "The precision must be in the interval [1, " + LongCodec.MAX_PRECISION + "]: " + precision);
+        }
+        final long[] pointGeohashes = new long[ids.length];
+        LongCodec.encode(latitudes, longitudes, precision, pointGeohashes);
+        // sorts the points by geohash with a counting sort: the non-empty geohashes are sorted, then the points of
+        // each geohash are placed after the points of the previous geohashes
+        final LongLongMap geohashIndices = new LongLongMap();
+        for (final long geohash : pointGeohashes) {
+            geohashIndices.add(geohash, 1);
+        }
+        final long[] geohashes = new long[geohashIndices.size()];
+        final int[] next = new int[1];
+        geohashIndices.forEach((geohash, count) -> geohashes[next[0]++] = geohash);
+        LongCodec.sort(geohashes);
+        final int[] firstPoints = new int[geohashes.length + 1];
+        for (int i = 0; i < geohashes.length; i++) {
+            firstPoints[i + 1] = firstPoints[i] + (int) geohashIndices.put(geohashes[i], i, ABSENT);
+        }
+        final int[] filled = Arrays.copyOf(firstPoints, geohashes.length);
+        final long[] sortedIds = new long[ids.length];
+        final double[] sortedLatitudes = new double[ids.length];
+        final double[] sortedLongitudes = new double[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            final int target = filled[(int) geohashIndices.get(pointGeohashes[i], ABSENT)]++;
+            sortedIds[target] = ids[i];
+            sortedLatitudes[target] = latitudes[i];
+            sortedLongitudes[target] = longitudes[i];
+        }
+        return new PointIndex(precision, sortedIds, sortedLatitudes, sortedLongitudes, geohashes, firstPoints,
+                geohashIndices);
+    }
+
+    /**
+     * Returns the precision of the geohashes grouping the points.
+     *
+     * @return the precision
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Returns the number of indexed points.
+     *
+     * @return the number of points
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the ids of the points nearest to the given location.
+     *
+     * @param latitude the latitude of the location, in decimal degrees
+     * @param longitude the longitude of the location, in decimal degrees
+     * @param count the number of points to return
+     * @return the ids of the nearest points, from the nearest to the farthest; fewer than requested if the index has
+     * fewer points
+     */
+    public long[] nearest(final double latitude, final double longitude, final int count) {
+        return nearest(latitude, longitude, count, null);
+    }
+
+    /**
+     * Returns the ids of the points nearest to the given location, and their distances.
+     *
+     * @param latitude the latitude of the location, in decimal degrees
+     * @param longitude the longitude of the location, in decimal degrees
+     * @param count the number of points to return
+     * @param distances if not null, receives the distances of the returned points, in meters
+     * @return the ids of the nearest points, from the nearest to the farthest; fewer than requested if the index has
+     * fewer points
+     */
+    public long[] nearest(final double latitude, final double longitude, final int count, final double[] distances) {
+        if (count < 1) {
+            throw new IllegalArgumentException("The count must be positive: " + count);
+        }
+        final Query query = new Query(latitude, longitude, Math.min(count, ids.length));
+        long scannedGeohashes = 0;
+        for (long radius = 0; query.capacity > 0; radius++) {
+            scannedGeohashes += scanRing(query, radius);
+            if (query.size == query.capacity && query.farthest() <= query.bound(radius)
+                    || radius >= lastRow && 2 * radius + 1 >= columnCount) {
+                // no point beyond the scanned area is nearer, or the whole world was scanned
+                break;
+            }
+            if (scannedGeohashes > MAX_RING_GEOHASHES) {
+                // the query point is far from the points
+                query.clear();
+                descend(query);
+                break;
+            }
+        }
+        return query.result(distances);
+    }
+
+    /*
+     * Scans the geohashes at the given Chebyshev distance (in rows and columns) from the given geohash. The longitudes
+     * wrap around, so on the narrow grids of the lower precisions each column is taken once, at its smallest offset.
+     */
+    private int scanRing(final Query query, final long radius) {
+        final long row = query.row;
+        final long column = query.column;
+        final long minOffset = Math.max(-radius, -((columnCount - 1) / 2));
+        final long maxOffset = Math.min(radius, columnCount / 2);
+        int scanned = 0;
+        for (long rowOffset = -radius; rowOffset <= radius; rowOffset++) {
+            final long ringRow = row + rowOffset;
+            if (ringRow < 0 || ringRow > lastRow) {
+                continue;
+            }
+            if (rowOffset == -radius || rowOffset == radius) {
+                for (long columnOffset = minOffset; columnOffset <= maxOffset; columnOffset++) {
+                    scanGeohash(query, ringRow, column + columnOffset);
+                    scanned++;
+                }
+            } else {
+                if (-radius >= minOffset) {
+                    scanGeohash(query, ringRow, column - radius);
+                    scanned++;
+                }
+                if (radius <= maxOffset && radius != 0) {
+                    scanGeohash(query, ringRow, column + radius);
+                    scanned++;
+                }
+            }
+        }
+        return scanned;
+    }
+
+    private void scanGeohash(final Query query, final long row, final long column) {
+        final long wrappedColumn = Math.floorMod(column, columnCount);
+        final int index = (int) geohashIndices.get(LongCodec.fromIndices(row, wrappedColumn, precision), ABSENT);
+        if (index != ABSENT) {
+            for (int point = firstPoints[index]; point < firstPoints[index + 1]; point++) {
+                query.offer(point);
+            }
+        }
+    }
+
+    /*
+     * Visits the geohash tree from the nearest geohash to the farthest one, until the nearest unvisited geohash is
+     * farther than the k-th nearest point found. A node of the tree is a geohash, given by its precision and the range
+     * of its non-empty descendants among the sorted geohashes.
+     */
+    private void descend(final Query query) {
+        final Nodes nodes = new Nodes();
+        final double[] bounds = new double[4];
+        nodes.push(0, 0, 0, geohashes.length);
+        while (nodes.size > 0 && (query.size < query.capacity || nodes.nearest() < query.farthest())) {
+            final int nodePrecision = nodes.precisions[0];
+            final int from = nodes.froms[0];
+            final int to = nodes.tos[0];
+            nodes.pop();
+            if (nodePrecision == precision) {
+                for (int point = firstPoints[from]; point < firstPoints[to]; point++) {
+                    query.offer(point);
+                }
+            } else {
+                // splits the range of descendants among the children, which are contiguous in the sorted geohashes
+                final int childPrecision = nodePrecision + 1;
+                final long childMask = LongCodec.hashMask(childPrecision);
+                for (int childFrom = from; childFrom < to;) {
+                    final long child = (geohashes[childFrom] & childMask) | childPrecision;
+                    int childTo = childFrom + 1;
+                    if (childPrecision < precision) {
+                        childTo = upperBound(childFrom + 1, to, (child & childMask) | ~childMask);
+                    }
+                    LongCodec.decode(child, bounds);
+                    nodes.push(query.bound(bounds), childPrecision, childFrom, childTo);
+                    childFrom = childTo;
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the index of the first geohash of the given range greater than the given key.
+     */
+    private int upperBound(final int from, final int to, final long key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (LongCodec.compare(geohashes[middle], key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * The state of a query: the nearest points found so far, in a bounded max-heap keyed by the haversine of their
+     * central angle to the query location, which grows with the distance.
+     */
+    private final class Query {
+
+        private final double latitude;
+        private final double longitude;
+        private final double cosLatitude;
+        private final long row;
+        private final long column;
+        private final int capacity;
+        private final double[] keys;
+        private final int[] points;
+        private int size;
+
+        private Query(final double latitude, final double longitude, final int capacity) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            cosLatitude = Math.cos(Math.toRadians(latitude));
+            row = LongCodec.latitudeIndex(latitude, precision);
+            column = LongCodec.longitudeIndex(longitude, precision);
+            this.capacity = capacity;
+            keys = new double[capacity];
+            points = new int[capacity];
+        }
+
+        private double farthest() {
+            return keys[0];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void offer(final int point) {
+            final double halfLatitudeDelta = Math.toRadians(latitudes[point] - latitude) / 2;
+            final double halfLongitudeDelta = Math.toRadians(longitudes[point] - longitude) / 2;
+            final double sinLatitude = Math.sin(halfLatitudeDelta);
+            final double sinLongitude = Math.sin(halfLongitudeDelta);
+            final double key = sinLatitude * sinLatitude
+                    + cosLatitude * Math.cos(Math.toRadians(latitudes[point])) * sinLongitude * sinLongitude;
+            if (size < capacity) {
+                keys[size] = key;
+                points[size] = point;
+                siftUp(size++);
+            } else if (key < keys[0]) {
+                keys[0] = key;
+                points[0] = point;
+                siftDown(0, size);
+            }
+        }
+
+        /*
+         * Returns the haversine of the smallest central angle between the query location and a point beyond the area
+         * scanned up to the given radius; such a point is beyond one of the parallels or meridians bordering the area.
+         */
+        private double bound(final long radius) {
+            double angle = Double.POSITIVE_INFINITY;
+            if (row - radius > 0) {
+                angle = Math.min(angle, Math.toRadians(latitude - LongCodec.south(row - radius, precision)));
+            }
+            if (row + radius < lastRow) {
+                angle = Math.min(angle, Math.toRadians(LongCodec.south(row + radius + 1, precision) - latitude));
+            }
+            if (2 * radius + 1 < columnCount) {
+                // the distance to the great circle of a meridian
+                final double west = Math.toRadians(longitude - LongCodec.west(column - radius, precision));
+                final double east = Math.toRadians(LongCodec.west(column + radius + 1, precision) - longitude);
+                angle = Math.min(angle, Math.asin(Math.min(1, Math.sin(Math.min(west, Math.PI / 2)) * cosLatitude)));
+                angle = Math.min(angle, Math.asin(Math.min(1, Math.sin(Math.min(east, Math.PI / 2)) * cosLatitude)));
+            }
+            if (angle == Double.POSITIVE_INFINITY) {
+                return angle;
+            }
+            final double sinHalfAngle = Math.sin(angle / 2);
+            return sinHalfAngle * sinHalfAngle;
+        }
+
+        /*
+         * Returns the haversine of the smallest central angle between the query location and the given bounds.
+         */
+        private double bound(final double[] bounds) {
+            return Proximity.haversine(latitude, longitude, cosLatitude, bounds[LongCodec.SOUTH],
+                    bounds[LongCodec.WEST], bounds[LongCodec.NORTH], bounds[LongCodec.EAST]);
+        }
+
+        private long[] result(final double[] distances) {
+            final long[] result = new long[size];
+            for (int end = size - 1; end >= 0; end--) {
+                result[end] = ids[points[0]];
+                if (distances != null) {
+                    distances[end] = 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(keys[0])));
+                }
+                keys[0] = keys[end];
+                points[0] = points[end];
+                siftDown(0, end);
+            }
+            return result;
+        }
+
+        private void siftUp(final int start) {
+            int child = start;
+            while (child > 0) {
+                final int parent = (child - 1) / 2;
+                if (keys[parent] >= keys[child]) {
+                    break;
+                }
+                swap(parent, child);
+                child = parent;
+            }
+        }
+
+        private void siftDown(final int start, final int end) {
+            int parent = start;
+            while (2 * parent + 1 < end) {
+                int child = 2 * parent + 1;
+                if (child + 1 < end && keys[child + 1] > keys[child]) {
+                    child++;
+                }
+                if (keys[parent] >= keys[child]) {
+                    break;
+                }
+                swap(parent, child);
+                parent = child;
+            }
+        }
+
+        private void swap(final int first, final int second) {
+            final double key = keys[first];
+            keys[first] = keys[second];
+            keys[second] = key;
+            final int point = points[first];
+            points[first] = points[second];
+            points[second] = point;
+        }
+    }
+
+
+    /**
+     * Min-heap of geohash tree nodes, keyed by the haversine of the smallest central angle between the query location
+     * and the node geohash.
+     */
+    private static final class Nodes {
+
+        private double[] keys = new double[CHILD_COUNT];
+        private int[] precisions = new int[CHILD_COUNT];
+        private int[] froms = new int[CHILD_COUNT];
+        private int[] tos = new int[CHILD_COUNT];
+        private int size;
+
+        private double nearest() {
+            return keys[0];
+        }
+
+        private void push(final double key, final int precision, final int from, final int to) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                precisions = Arrays.copyOf(precisions, size * 2);
+                froms = Arrays.copyOf(froms, size * 2);
+                tos = Arrays.copyOf(tos, size * 2);
+            }
+            int child = size++;
+            while (child > 0 && keys[(child - 1) / 2] > key) {
+                move((child - 1) / 2, child);
+                child = (child - 1) / 2;
+            }
+            set(child, key, precision, from, to);
+        }
+
+        private void pop() {
+            size--;
+            final double key = keys[size];
+            final int precision = precisions[size];
+            final int from = froms[size];
+            final int to = tos[size];
+            int parent = 0;
+            while (2 * parent + 1 < size) {
+                int child = 2 * parent + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                move(child, parent);
+                parent = child;
+            }
+            set(parent, key, precision, from, to);
+        }
+
+        private void move(final int source, final int target) {
+            set(target, keys[source], precisions[source], froms[source], tos[source]);
+        }
+
+        private void set(final int index, final double key, final int precision, final int from, final int to) {
+            keys[index] = key;
+            precisions[index] = precision;
+            froms[index] = from;
+            tos[index] = to;
+        }
+    }
+}
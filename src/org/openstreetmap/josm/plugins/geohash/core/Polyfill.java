@@ -0,0 +1,443 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+
+/**
+ * Computes the geohashes covering a polygon.
+ *
+ * A polygon is given as a list of rings, each ring being an array of interleaved latitudes and longitudes
+ * ({@code lat0, lon0, lat1, lon1, ...}) in decimal degrees; the last vertex is implicitly connected to the first one.
+ * The rings are combined with the even-odd rule, so the inner rings of a multipolygon are holes whatever their
+ * orientation. Polygons crossing the antimeridian are not supported.
+ *
+ * The cover is computed in the grid of the requested precision, without testing the candidate geohashes one by one:
+ * <ul>
+ * <li>the geohashes crossed by the polygon edges are found by walking each edge through the grid rows and
+ * columns;</li>
+ * <li>the interior geohashes are found by intersecting each grid row, at its middle latitude, with the edges crossing
+ * it and filling the column spans between pairs of crossings.</li>
+ * </ul>
+ * The edges and the rows are processed in parallel, on the common fork-join pool, when the polygon is large. The
+ * compact cover is built from the boundary geohashes alone, as described in {@link #compactCover(List, int)}.
+ *
+ * @author agent
+ */
+public final class Polyfill {
+
+    /** The number of edges or rows from which the work is split among several threads */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private static final int CHILD_COUNT = 1 << LongCodec.BITS_PER_CHARACTER;
+
+    private Polyfill() {}
+
+
+    /**
+     * Returns the geohashes with the given precision covering the given polygon: the geohashes crossed by its
+     * boundary and the geohashes whose center lies inside it.
+     *
+     * @param rings the rings of the polygon
+     * @param precision the geohash precision, between 1 and {@link LongCodec#MAX_PRECISION}
+     * @return the packed geohashes, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public static long[] cover(final List<double[]> rings, final int precision) {
+        checkPrecision(precision);
+        final Grid grid = new Grid(rings, precision);
+        final LongStream boundary =
+                stream(grid.edgeCount()).mapToObj(grid::boundaryCells).flatMapToLong(Arrays::stream);
+        final LongStream interior =
+                stream(grid.rowCount()).mapToObj(grid::interiorCells).flatMapToLong(Arrays::stream);
+        // the boundary geohashes are usually found again by the scanline, and shared by consecutive edges
+        return sortedUnique(LongStream.concat(boundary, interior).toArray());
+    }
+
+    /**
+     * Returns the compact cover of the given polygon: the geohashes of {@link #cover(List, int)}, where each complete
+     * group of 32 siblings is replaced by their parent, recursively. The interior of a large polygon is then covered
+     * by a few coarse geohashes, while its boundary keeps the requested precision.
+     *
+     * The compact cover is built directly, without building the full cover first: only the geohashes crossed by the
+     * boundary are computed with the requested precision. The geohashes are then visited from the world geohash down,
+     * in sorted order; a geohash holding no boundary geohash lies either wholly inside or wholly outside the polygon,
+     * so it is kept or dropped as a whole, and only the geohashes holding boundary geohashes are split further. The
+     * cost is therefore proportional to the length of the boundary, whatever the area of the polygon.
+     *
+     * @param rings the rings of the polygon
+     * @param precision the precision of the boundary geohashes, between 1 and {@link LongCodec#MAX_PRECISION}
+     * @return the packed geohashes, of mixed precisions, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public static long[] compactCover(final List<double[]> rings, final int precision) {
+        checkPrecision(precision);
+        final Grid grid = new Grid(rings, precision);
+        final long[] boundary = sortedUnique(
+                stream(grid.edgeCount()).mapToObj(grid::boundaryCells).flatMapToLong(Arrays::stream).toArray());
+        final GeohashSets.Compactor compactor = new GeohashSets.Compactor(boundary.length);
+        grid.descend(LongCodec.WORLD, boundary, 0, boundary.length, compactor);
+        return compactor.toArray();
+    }
+
+    /**
+     * Returns the compact cover of the union of the given polygons. The even-odd rule applies within each polygon only:
+     * the compact cover of each polygon is computed separately, as by {@link #compactCover(List, int)}, and the covers
+     * are then merged, so the area shared by several polygons is covered rather than left out as a hole.
+     *
+     * @param polygons the polygons, each given as its list of rings
+     * @param precision the precision of the boundary geohashes, between 1 and {@link LongCodec#MAX_PRECISION}
+     * @return the packed geohashes, of mixed precisions, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public static long[] compactUnion(final List<List<double[]>> polygons, final int precision) {
+        checkPrecision(precision);
+        final long[] union = sortedUnique(polygons.stream().map(rings -> compactCover(rings, precision))
+                .flatMapToLong(Arrays::stream).toArray());
+        // a geohash of one cover may hold geohashes of another, and siblings may come from different covers
+        return GeohashSets.compactSorted(union, union.length);
+    }
+
+    /**
+     * Returns the number of geohashes crossed by the edges of the given polygon, counted once per edge, without
+     * computing them. The cost of {@link #compactCover(List, int)} is proportional to it.
+     *
+     * @param rings the rings of the polygon
+     * @param precision the geohash precision, between 1 and {@link LongCodec#MAX_PRECISION}
+     * @return the number of boundary geohashes, at least the number of distinct ones
+     */
+    public static long boundaryCellCount(final List<double[]> rings, final int precision) {
+        checkPrecision(precision);
+        final double height = LongCodec.height(precision);
+        final double width = LongCodec.width(precision);
+        long count = 0;
+        for (final double[] ring : rings) {
+            final int vertexCount = ring.length / 2;
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                final int next = (vertex + 1) % vertexCount;
+                // as the walk in Grid.boundaryCells, one geohash per crossed row or column boundary
+                count += 1 + Math.abs((long) Math.floor((ring[2 * next] + 90) / height)
+                        - (long) Math.floor((ring[2 * vertex] + 90) / height))
+                        + Math.abs((long) Math.floor((ring[2 * next + 1] + 180) / width)
+                                - (long) Math.floor((ring[2 * vertex + 1] + 180) / width));
+            }
+        }
+        return count;
+    }
+
+    private static void checkPrecision(final int precision) {
+        if (precision < 1 || precision > LongCodec.MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "The precision must be in the interval [1, " + LongCodec.MAX_PRECISION + "]: " + precision);
+        }
+    }
+
+    /*
+     * Sorts the given geohashes and drops the duplicates.
+     */
+    private static long[] sortedUnique(final long[] geohashes) {
+        // flipping the sign bit maps the geohash order onto the signed order used by Arrays.parallelSort
+        Arrays.parallelSetAll(geohashes, i -> geohashes[i] ^ Long.MIN_VALUE);
+        Arrays.parallelSort(geohashes);
+        int count = 0;
+        for (int i = 0; i < geohashes.length; i++) {
+            if (i == 0 || geohashes[i] != geohashes[i - 1]) {
+                geohashes[count++] = geohashes[i];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            geohashes[i] ^= Long.MIN_VALUE;
+        }
+        return Arrays.copyOf(geohashes, count);
+    }
+
+    private static IntStream stream(final int count) {
+        final IntStream stream = IntStream.range(0, count);
+        return count >= PARALLEL_THRESHOLD ? stream.parallel() : stream;
+    }
+
+
+    /**
+     * The polygon edges expressed in the grid of a precision, where a geohash is a unit square whose south-western
+     * corner has its row and column as coordinates.
+     */
+    private static final class Grid {
+
+        private final int precision;
+        private final long lastRow;
+        private final long lastColumn;
+
+        /** Edge vertices: the edge i goes from (xs[2i], ys[2i]) to (xs[2i + 1], ys[2i + 1]) */
+        private final double[] xs;
+        private final double[] ys;
+
+        /**
+         * The first grid row processed by the scanline, the edges whose span contains the middle of each row and the
+         * abscissas where they cross it, sorted within each row
+         */
+        private final long firstRow;
+        private final int[] rowEdgeStarts;
+        private final int[] rowEdges;
+        private final double[] rowCrossings;
+
+        /** The bounds of the geohash being classified by {@link #descend}, which runs on a single thread */
+        private final double[] bounds = new double[4];
+
+        Grid(final List<double[]> rings, final int precision) {
+            this.precision = precision;
+            lastRow = (1L << LongCodec.latitudeBits(precision)) - 1;
+            lastColumn = (1L << LongCodec.longitudeBits(precision)) - 1;
+            final double height = LongCodec.height(precision);
+            final double width = LongCodec.width(precision);
+            int edgeCount = 0;
+            for (final double[] ring : rings) {
+                if (ring.length < 6 || ring.length % 2 != 0) {
+                    throw new IllegalArgumentException("A ring must have at least 3 vertices, given as latitude and "
+                            + "longitude pairs: " + ring.length + " coordinates");
+                }
+                edgeCount += ring.length / 2;
+            }
+            xs = new double[2 * edgeCount];
+            ys = new double[2 * edgeCount];
+            double minY = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            int edge = 0;
+            for (final double[] ring : rings) {
+                final int vertexCount = ring.length / 2;
+                for (int vertex = 0; vertex < vertexCount; vertex++) {
+                    final int next = (vertex + 1) % vertexCount;
+                    checkVertex(ring[2 * vertex], ring[2 * vertex + 1]);
+                    ys[2 * edge] = (ring[2 * vertex] + 90) / height;
+                    xs[2 * edge] = (ring[2 * vertex + 1] + 180) / width;
+                    ys[2 * edge + 1] = (ring[2 * next] + 90) / height;
+                    xs[2 * edge + 1] = (ring[2 * next + 1] + 180) / width;
+                    minY = Math.min(minY, ys[2 * edge]);
+                    maxY = Math.max(maxY, ys[2 * edge]);
+                    edge++;
+                }
+            }
+            if (edgeCount == 0) {
+                firstRow = 0;
+                rowEdgeStarts = new int[1];
+                rowEdges = new int[0];
+                rowCrossings = new double[0];
+            } else {
+                firstRow = firstRowAbove(minY);
+                final int rowCount = (int) Math.max(0, lastRowBelow(maxY) - firstRow + 1);
+                // groups the edges by the rows they cross, as a compressed sparse row index
+                rowEdgeStarts = new int[rowCount + 1];
+                for (int i = 0; i < edgeCount; i++) {
+                    for (long row = firstRowAbove(minY(i)); row <= lastRowBelow(maxY(i)); row++) {
+                        rowEdgeStarts[(int) (row - firstRow) + 1]++;
+                    }
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    rowEdgeStarts[row + 1] += rowEdgeStarts[row];
+                }
+                rowEdges = new int[rowEdgeStarts[rowCount]];
+                final int[] fill = Arrays.copyOf(rowEdgeStarts, rowCount);
+                for (int i = 0; i < edgeCount; i++) {
+                    for (long row = firstRowAbove(minY(i)); row <= lastRowBelow(maxY(i)); row++) {
+                        rowEdges[fill[(int) (row - firstRow)]++] = i;
+                    }
+                }
+                rowCrossings = new double[rowEdges.length];
+                stream(rowCount).forEach(this::computeCrossings);
+            }
+        }
+
+        /*
+         * Intersects the given row (counted from the first scanned row), at its middle ordinate, with the edges
+         * crossing it.
+         */
+        private void computeCrossings(final int rowOffset) {
+            final double y = firstRow + rowOffset + 0.5;
+            final int from = rowEdgeStarts[rowOffset];
+            final int to = rowEdgeStarts[rowOffset + 1];
+            for (int i = from; i < to; i++) {
+                final int edge = rowEdges[i];
+                final double x0 = xs[2 * edge];
+                final double y0 = ys[2 * edge];
+                rowCrossings[i] = x0 + (y - y0) * (xs[2 * edge + 1] - x0) / (ys[2 * edge + 1] - y0);
+            }
+            Arrays.sort(rowCrossings, from, to);
+        }
+
+        private static void checkVertex(final double latitude, final double longitude) {
+            if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+                throw new IllegalArgumentException("Invalid vertex: " + latitude + ", " + longitude);
+            }
+        }
+
+        int edgeCount() {
+            return xs.length / 2;
+        }
+
+        int rowCount() {
+            return rowEdgeStarts.length - 1;
+        }
+
+        private double minY(final int edge) {
+            return Math.min(ys[2 * edge], ys[2 * edge + 1]);
+        }
+
+        private double maxY(final int edge) {
+            return Math.max(ys[2 * edge], ys[2 * edge + 1]);
+        }
+
+        /* The first row whose middle is at or above the given ordinate. */
+        private long firstRowAbove(final double y) {
+            return Math.max(0, (long) Math.ceil(y - 0.5));
+        }
+
+        /* The last row whose middle is strictly below the given ordinate. */
+        private long lastRowBelow(final double y) {
+            return Math.min(lastRow, (long) Math.ceil(y - 0.5) - 1);
+        }
+
+        /**
+         * Returns the geohashes crossed by the given edge, walking from one cell to the next through the row or column
+         * boundary which the edge crosses first.
+         */
+        long[] boundaryCells(final int edge) {
+            final double x0 = xs[2 * edge];
+            final double y0 = ys[2 * edge];
+            final double x1 = xs[2 * edge + 1];
+            final double y1 = ys[2 * edge + 1];
+            long column = clamp((long) Math.floor(x0), lastColumn);
+            long row = clamp((long) Math.floor(y0), lastRow);
+            final long endColumn = clamp((long) Math.floor(x1), lastColumn);
+            final long endRow = clamp((long) Math.floor(y1), lastRow);
+            final double dx = x1 - x0;
+            final double dy = y1 - y0;
+            final int columnStep = dx > 0 ? 1 : -1;
+            final int rowStep = dy > 0 ? 1 : -1;
+            final double columnDelta = dx != 0 ? Math.abs(1 / dx) : Double.POSITIVE_INFINITY;
+            final double rowDelta = dy != 0 ? Math.abs(1 / dy) : Double.POSITIVE_INFINITY;
+            double nextColumn = dx > 0 ? (column + 1 - x0) * columnDelta
+                    : dx < 0 ? (x0 - column) * columnDelta : Double.POSITIVE_INFINITY;
+            double nextRow = dy > 0 ? (row + 1 - y0) * rowDelta
+                    : dy < 0 ? (y0 - row) * rowDelta : Double.POSITIVE_INFINITY;
+            // the step count bounds the walk even if rounding errors make it miss the end cell
+            final int stepCount = (int) (Math.abs(endColumn - column) + Math.abs(endRow - row));
+            final long[] cells = new long[stepCount + 1];
+            cells[0] = LongCodec.fromIndices(row, column, precision);
+            for (int step = 1; step <= stepCount; step++) {
+                if (nextColumn < nextRow) {
+                    column = clamp(column + columnStep, lastColumn);
+                    nextColumn += columnDelta;
+                } else {
+                    row = clamp(row + rowStep, lastRow);
+                    nextRow += rowDelta;
+                }
+                cells[step] = LongCodec.fromIndices(row, column, precision);
+            }
+            return cells;
+        }
+
+        /**
+         * Returns the geohashes of the given row (counted from the first scanned row) whose center lies inside the
+         * polygon.
+         */
+        long[] interiorCells(final int rowOffset) {
+            final long row = firstRow + rowOffset;
+            final int from = rowEdgeStarts[rowOffset];
+            final int to = rowEdgeStarts[rowOffset + 1];
+            // with the even-odd rule the polygon covers the spans between the first and second crossing, the third
+            // and fourth one, and so on
+            long cellCount = 0;
+            for (int i = from; i + 1 < to; i += 2) {
+                cellCount += Math.max(0, lastColumnBefore(rowCrossings[i + 1]) - firstColumnAfter(rowCrossings[i]) + 1);
+            }
+            final long[] cells = new long[(int) cellCount];
+            int count = 0;
+            for (int i = from; i + 1 < to; i += 2) {
+                final long end = lastColumnBefore(rowCrossings[i + 1]);
+                for (long column = firstColumnAfter(rowCrossings[i]); column <= end; column++) {
+                    cells[count++] = LongCodec.fromIndices(row, column, precision);
+                }
+            }
+            return cells;
+        }
+
+        /**
+         * Checks if the center of the given geohash lies inside the polygon, as {@link #interiorCells(int)} decides.
+         */
+        private boolean isInside(final long row, final long column) {
+            if (row < firstRow || row - firstRow >= rowCount()) {
+                return false;
+            }
+            final int from = rowEdgeStarts[(int) (row - firstRow)];
+            final int to = rowEdgeStarts[(int) (row - firstRow) + 1];
+            final double x = column + 0.5;
+            // the number of crossings before the center tells the span it lies in, or the gap after a span
+            int crossing = from;
+            int high = to;
+            while (crossing < high) {
+                final int middle = (crossing + high) >>> 1;
+                if (rowCrossings[middle] < x) {
+                    crossing = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            final int before = crossing - from;
+            return before % 2 == 1 ? crossing < to : crossing + 1 < to && rowCrossings[crossing] == x;
+        }
+
+        /**
+         * Passes the compact cover of the part of the polygon lying in the given geohash to the given consumer, in
+         * sorted order. The boundary geohashes of the polygon lying in the geohash are the given range of the sorted
+         * boundary geohashes.
+         */
+        void descend(final long geohash, final long[] boundary, final int from, final int to,
+                final LongConsumer consumer) {
+            final int length = LongCodec.precision(geohash);
+            if (from < to && length == precision) {
+                consumer.accept(geohash);
+            } else if (from == to) {
+                // no edge crosses the geohash, so all its descendants lie on the same side as the first one
+                LongCodec.decode(geohash, bounds);
+                if (isInside(LongCodec.latitudeIndex(bounds[LongCodec.SOUTH] + LongCodec.height(precision) / 2,
+                        precision), LongCodec.longitudeIndex(bounds[LongCodec.WEST] + LongCodec.width(precision) / 2,
+                                precision))) {
+                    consumer.accept(geohash);
+                }
+            } else {
+                final long prefix = geohash & LongCodec.hashMask(length);
+                final int shift = LongCodec.shiftFor(length);
+                final long childMask = LongCodec.hashMask(length + 1);
+                int start = from;
+                for (long index = 0; index < CHILD_COUNT; index++) {
+                    final long childPrefix = prefix | (index << shift);
+                    int end = start;
+                    while (end < to && (boundary[end] & childMask) == childPrefix) {
+                        end++;
+                    }
+                    descend(childPrefix | (length + 1), boundary, start, end, consumer);
+                    start = end;
+                }
+            }
+        }
+
+        /* The first column whose middle is at or after the given abscissa. */
+        private long firstColumnAfter(final double x) {
+            return Math.max(0, (long) Math.ceil(x - 0.5));
+        }
+
+        /* The last column whose middle is at or before the given abscissa. */
+        private long lastColumnBefore(final double x) {
+            return Math.min(lastColumn, (long) Math.floor(x - 0.5));
+        }
+
+        private static long clamp(final long index, final long lastIndex) {
+            return Math.max(0, Math.min(lastIndex, index));
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+import net.exfidefortis.map.Point;
+
+
+/**
+ * A geodesic circle on a sphere of radius {@link PointIndex#EARTH_RADIUS}, and the geohashes intersecting it.
+ *
+ * A geohash intersects the circle if the great-circle distance between the center and the nearest location of the
+ * geohash is at most the radius. The distance is computed exactly for each geohash, rather than approximated by the
+ * bounding box of the circle, so the cover holds no geohash lying in the corners of that box. As a predicate, a
+ * proximity filters geohash-keyed data, whatever the precision of the keys.
+ *
+ * @author agent
+ */
+public final class Proximity implements LongPredicate {
+
+    /** The largest number of geohashes in a cover */
+    private static final long MAX_COVER_SIZE = Integer.MAX_VALUE - 8;
+
+    private final double latitude;
+    private final double longitude;
+    private final double cosLatitude;
+    private final double meters;
+
+    /** The haversine of the central angle of the radius; a geohash intersects the circle if its own is not larger */
+    private final double maxHaversine;
+    private final double radiusDegrees;
+
+    /** The largest longitude difference between the center and a location of the circle, 180 if it has a pole */
+    private final double maxLongitudeDifference;
+
+    /** The latitude of the locations of the circle farthest in longitude from the center, in radians */
+    private final double widestLatitude;
+    private final double sinLatitude;
+    private final double cosAngle;
+
+
+    /**
+     * Builds the circle with the given center and radius.
+     *
+     * @param center the center of the circle
+     * @param meters the radius of the circle, in meters
+     */
+    public Proximity(final Point center, final double meters) {
+        if (center == null) {
+            throw new IllegalArgumentException("The center must be not null");
+        }
+        if (!(meters >= 0) || Double.isInfinite(meters)) {
+            throw new IllegalArgumentException("The radius must be a non-negative number of meters: " + meters);
+        }
+        latitude = center.latitude().asDegrees();
+        longitude = center.longitude().asDegrees();
+        cosLatitude = Math.cos(Math.toRadians(latitude));
+        this.meters = meters;
+        final double angle = Math.min(Math.PI, meters / PointIndex.EARTH_RADIUS);
+        final double sinHalfAngle = Math.sin(angle / 2);
+        maxHaversine = sinHalfAngle * sinHalfAngle;
+        radiusDegrees = Math.toDegrees(angle);
+        sinLatitude = Math.sin(Math.toRadians(latitude));
+        cosAngle = Math.cos(angle);
+        if (angle < Math.PI / 2 - Math.abs(Math.toRadians(latitude))) {
+            maxLongitudeDifference = Math.toDegrees(Math.asin(Math.sin(angle) / cosLatitude));
+            widestLatitude = Math.asin(sinLatitude / cosAngle);
+        } else {
+            maxLongitudeDifference = 180;
+            widestLatitude = Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the geohashes with the given precision intersecting the circle with the given center and radius.
+     *
+     * @param center the center of the circle
+     * @param meters the radius of the circle, in meters
+     * @param precision the geohash precision, between 1 and {@link LongCodec#MAX_PRECISION}
+     * @return the packed geohashes, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public static long[] cover(final Point center, final double meters, final int precision) {
+        return new Proximity(center, meters).cover(precision);
+    }
+
+    /**
+     * Returns the radius of the circle.
+     *
+     * @return the radius, in meters
+     */
+    public double meters() {
+        return meters;
+    }
+
+    /**
+     * Returns the geohashes with the given precision intersecting the circle.
+     *
+     * The geohashes are computed row by row: the circle crosses a contiguous run of the rows of the grid, and in each
+     * row the geohashes get farther from the center as their longitude gets farther from the longitude of the center,
+     * so each row holds a contiguous run of intersecting geohashes. The ends of the run are the geohashes holding the
+     * locations of the circle farthest in longitude within the row; when the circle holds a pole, they are found by
+     * binary search instead.
+     *
+     * @param precision the geohash precision, between 1 and {@link LongCodec#MAX_PRECISION}
+     * @return the packed geohashes, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public long[] cover(final int precision) {
+        if (precision < 1 || precision > LongCodec.MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "The precision must be in the interval [1, " + LongCodec.MAX_PRECISION + "]: " + precision);
+        }
+        final long columnCount = 1L << LongCodec.longitudeBits(precision);
+        final long centerColumn = LongCodec.longitudeIndex(longitude, precision);
+        final long firstRow = LongCodec.latitudeIndex(Math.max(-90, latitude - radiusDegrees), precision);
+        final long rowCount = LongCodec.latitudeIndex(Math.min(90, latitude + radiusDegrees), precision) - firstRow + 1;
+        final long maxOffset = (long) Math.ceil(maxLongitudeDifference / LongCodec.width(precision)) + 1;
+        // the runs of the rows: the first column (possibly negative, the columns wrapping around) and the length
+        final long[] runs = new long[(int) (2 * rowCount)];
+        long size = 0;
+        for (int i = 0; i < rowCount; i++) {
+            final long row = firstRow + i;
+            final long west;
+            final long east;
+            if (Double.isNaN(widestLatitude)) {
+                west = farthestColumn(row, centerColumn, -1, Math.min(maxOffset, (columnCount - 1) / 2), columnCount,
+                        precision);
+                east = farthestColumn(row, centerColumn, 1, Math.min(maxOffset, columnCount / 2), columnCount,
+                        precision);
+            } else {
+                final double difference = longitudeDifference(row, precision);
+                final double width = LongCodec.width(precision);
+                final double column = Math.floor((longitude + 180) / width);
+                west = Math.min((columnCount - 1) / 2,
+                        Math.max(0, (long) (column - Math.floor((longitude - difference + 180) / width))));
+                east = Math.min(columnCount / 2,
+                        Math.max(0, (long) (Math.floor((longitude + difference + 180) / width) - column)));
+            }
+            if (west >= 0) {
+                runs[2 * i] = centerColumn - west;
+                runs[2 * i + 1] = Math.min(columnCount, west + east + 1);
+                size += runs[2 * i + 1];
+            }
+        }
+        if (size > MAX_COVER_SIZE) {
+            throw new IllegalArgumentException(
+                    "The cover has too many geohashes: " + size + " with the precision " + precision);
+        }
+        final long[] geohashes = new long[(int) size];
+        int count = 0;
+        for (int i = 0; i < rowCount; i++) {
+            for (long column = runs[2 * i]; column < runs[2 * i] + runs[2 * i + 1]; column++) {
+                geohashes[count++] =
+                        LongCodec.fromIndices(firstRow + i, Math.floorMod(column, columnCount), precision);
+            }
+        }
+        LongCodec.sort(geohashes);
+        return geohashes;
+    }
+
+    /*
+     * Returns the largest longitude difference between the center and a location of the circle in the given row, for a
+     * circle without poles. Along the parallel at the latitude t, the circle spans the longitude differences d with
+     * cos(d) >= (cos(radius) - sin(lat) sin(t)) / (cos(lat) cos(t)), whose span is widest at the widest latitude and
+     * shrinks away from it.
+     */
+    private double longitudeDifference(final long row, final int precision) {
+        final double south = Math.toRadians(LongCodec.south(row, precision));
+        final double north = Math.toRadians(LongCodec.south(row, precision) + LongCodec.height(precision));
+        final double nearest = Math.max(south, Math.min(north, widestLatitude));
+        final double cosDifference = (cosAngle - sinLatitude * Math.sin(nearest)) / (cosLatitude * Math.cos(nearest));
+        return Math.toDegrees(Math.acos(Math.max(-1, Math.min(1, cosDifference))));
+    }
+
+    /*
+     * Returns the largest column offset, in the given direction and up to the given limit, of a geohash of the given
+     * row intersecting the circle, or -1 if no geohash of the row intersects it.
+     */
+    private long farthestColumn(final long row, final long centerColumn, final int direction, final long limit,
+            final long columnCount, final int precision) {
+        if (!intersects(row, centerColumn, precision)) {
+            return -1;
+        }
+        long low = 0;
+        long high = limit;
+        while (low < high) {
+            final long middle = (low + high + 1) >>> 1;
+            if (intersects(row, Math.floorMod(centerColumn + direction * middle, columnCount), precision)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean intersects(final long row, final long column, final int precision) {
+        final double south = LongCodec.south(row, precision);
+        final double west = LongCodec.west(column, precision);
+        return haversine(latitude, longitude, cosLatitude, south, west, south + LongCodec.height(precision),
+                west + LongCodec.width(precision)) <= maxHaversine;
+    }
+
+    /**
+     * Returns the geohashes intersecting the circle, replacing each complete group of 32 siblings by their parent,
+     * recursively.
+     *
+     * @param precision the precision of the geohashes on the circle boundary, between 1 and
+     * {@link LongCodec#MAX_PRECISION}
+     * @return the packed geohashes, of mixed precisions, sorted in the order of {@link LongCodec#compare(long, long)}
+     */
+    public long[] compactCover(final int precision) {
+        final long[] geohashes = cover(precision);
+        return GeohashSets.compactSorted(geohashes, geohashes.length);
+    }
+
+    /**
+     * Checks whether the given geohash intersects the circle.
+     *
+     * @param geohash a packed geohash, of any precision
+     * @return true if the nearest location of the geohash is within the radius of the center, false otherwise
+     */
+    @Override
+    public boolean test(final long geohash) {
+        final double[] bounds = new double[4];
+        LongCodec.decode(geohash, bounds);
+        return haversine(latitude, longitude, cosLatitude, bounds[LongCodec.SOUTH], bounds[LongCodec.WEST],
+                bounds[LongCodec.NORTH], bounds[LongCodec.EAST]) <= maxHaversine;
+    }
+
+    /**
+     * Checks whether the given location is within the circle.
+     *
+     * @param latitude the latitude of the location, in decimal degrees
+     * @param longitude the longitude of the location, in decimal degrees
+     * @return true if the great-circle distance between the location and the center is at most the radius
+     */
+    public boolean contains(final double latitude, final double longitude) {
+        return haversine(this.latitude, this.longitude, cosLatitude, latitude, longitude, latitude, longitude)
+                <= maxHaversine;
+    }
+
+    /**
+     * Returns the indices of the entries of the given store whose geohashes intersect the circle. Only the entries
+     * under a coarse cover of the circle, and their ancestors, are read.
+     *
+     * @param store a geohash store
+     * @return the indices, in increasing order
+     */
+    public long[] filter(final GeohashStore store) {
+        // the longest geohashes at least as large as the circle: the circle intersects only a few of them
+        int precision = 1;
+        while (precision < LongCodec.MAX_PRECISION && LongCodec.height(precision + 1) >= radiusDegrees
+                && LongCodec.width(precision + 1) >= radiusDegrees) {
+            precision++;
+        }
+        final long[] geohashes = compactCover(precision);
+        long[] indices = new long[16];
+        int count = 0;
+        for (final long geohash : geohashes) {
+            // the stored ancestors, which contain a geohash of the cover, so intersect the circle
+            for (int ancestorPrecision = 0; ancestorPrecision < LongCodec.precision(geohash); ancestorPrecision++) {
+                final long index = store.get((geohash & LongCodec.hashMask(ancestorPrecision)) | ancestorPrecision);
+                if (index >= 0) {
+                    indices = append(indices, count++, index);
+                }
+            }
+            final GeohashStore.Range range = store.prefixRange(geohash);
+            for (long index = range.from(); index < range.to(); index++) {
+                if (test(store.key(index))) {
+                    indices = append(indices, count++, index);
+                }
+            }
+        }
+        // the ancestors are shared by neighboring geohashes of the cover
+        final long[] result = Arrays.copyOf(indices, count);
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    private static long[] append(final long[] values, final int count, final long value) {
+        final long[] result = count == values.length ? Arrays.copyOf(values, 2 * count) : values;
+        result[count] = value;
+        return result;
+    }
+
+    /**
+     * Returns the haversine of the smallest central angle between the given location and the given bounds, that is
+     * sin^2(angle / 2), which grows with the distance. Outside the longitudes of the bounds, the nearest location of
+     * the bounds lies on their nearer meridian edge: along a meridian at a longitude difference d, the cosine of the
+     * central angle to the latitude t is sin(lat) sin(t) + cos(lat) cos(d) cos(t), that is r cos(t - t0), which is
+     * largest at the latitude nearest to t0.
+     *
+     * @param latitude the latitude of the location, in decimal degrees
+     * @param longitude the longitude of the location, in decimal degrees
+     * @param cosLatitude the cosine of the latitude of the location
+     * @param south the southern latitude of the bounds, in decimal degrees
+     * @param west the western longitude of the bounds, in decimal degrees
+     * @param north the northern latitude of the bounds, in decimal degrees
+     * @param east the eastern longitude of the bounds, in decimal degrees
+     * @return the haversine of the central angle, between 0 and 1
+     */
+    static double haversine(final double latitude, final double longitude, final double cosLatitude,
+            final double south, final double west, final double north, final double east) {
+        final double southRadians = Math.toRadians(south);
+        final double northRadians = Math.toRadians(north);
+        final double latitudeRadians = Math.toRadians(latitude);
+        final double cosAngle;
+        if (longitude >= west && longitude <= east) {
+            cosAngle = Math.cos(Math.max(0, Math.max(southRadians - latitudeRadians, latitudeRadians - northRadians)));
+        } else {
+            // the smallest longitude difference, the longitudes wrapping around
+            final double difference = Math.toRadians(Math.min(longitudeDifference(west, longitude),
+                    longitudeDifference(longitude, east)));
+            final double x = cosLatitude * Math.cos(difference);
+            final double y = Math.sin(latitudeRadians);
+            final double nearest = Math.atan2(y, x);
+            cosAngle = Math.sqrt(x * x + y * y) * (nearest >= southRadians && nearest <= northRadians ? 1
+                    : Math.max(Math.cos(southRadians - nearest), Math.cos(northRadians - nearest)));
+        }
+        return Math.min(1, Math.max(0, (1 - cosAngle) / 2));
+    }
+
+    /*
+     * Returns the absolute difference between the given longitudes, the longitudes wrapping around.
+     */
+    private static double longitudeDifference(final double first, final double second) {
+        final double difference = Math.abs(first - second) % 360;
+        return difference > 180 ? 360 - difference : difference;
+    }
+}
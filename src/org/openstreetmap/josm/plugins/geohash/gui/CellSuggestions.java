@@ -0,0 +1,252 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.gui;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.plugins.geohash.core.CellIndex;
+import org.openstreetmap.josm.plugins.geohash.core.LongCodec;
+import org.openstreetmap.josm.tools.Logging;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+
+
+/**
+ * Suggests the geohashes holding data of the active data set under the prefix typed by the user, from a
+ * {@link CellIndex} of the data set.
+ *
+ * The suggestions are requested on every keystroke but looked up only once the typing pauses. The index is built in
+ * the background on the first lookup and reused by the next ones; any change of the node locations or of the ways makes
+ * it stale, and it is rebuilt on the next lookup. The nodes and ways are read in the background too, holding the read
+ * lock of the data set, so a large data set does not block the event dispatch thread. If the build fails, the error is
+ * logged and the index is built again on the next lookup. Only the result of the newest lookup is delivered.
+ *
+ * @author agent
+ */
+class CellSuggestions implements DataSetListener {
+
+    /** The pause in the typing, in milliseconds, after which the suggestions are looked up */
+    private static final int DEBOUNCE_DELAY = 150;
+
+    private final Consumer<List<CellIndex.Cell>> suggestionsListener;
+    private final Timer debounceTimer;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "geohash-suggestions");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private String requestedPrefix;
+    private long lookupGeneration;
+
+    /** The index of the indexed data set, being built or built; null if there is none or it is stale */
+    private DataSet indexedDataSet;
+    private CompletableFuture<CellIndex> index;
+
+
+    /**
+     * Builds a suggestion source.
+     *
+     * @param suggestionsListener - called on the event dispatch thread with the suggestions of the newest prefix
+     */
+    CellSuggestions(final Consumer<List<CellIndex.Cell>> suggestionsListener) {
+        this.suggestionsListener = suggestionsListener;
+        debounceTimer = new Timer(DEBOUNCE_DELAY, event -> lookup());
+        debounceTimer.setRepeats(false);
+        DatasetEventManager.getInstance().addDatasetListener(this, FireMode.IN_EDT);
+    }
+
+    /**
+     * Requests the suggestions of the given prefix, replacing any earlier request.
+     *
+     * @param prefix - the typed geohash prefix, possibly empty
+     */
+    void request(final String prefix) {
+        requestedPrefix = prefix;
+        debounceTimer.restart();
+    }
+
+    /**
+     * Stops suggesting and drops the index.
+     */
+    void dispose() {
+        debounceTimer.stop();
+        DatasetEventManager.getInstance().removeDatasetListener(this);
+        executor.shutdownNow();
+        lookupGeneration++;
+        indexedDataSet = null;
+        index = null;
+    }
+
+    private void lookup() {
+        final long generation = ++lookupGeneration;
+        final String prefix = requestedPrefix;
+        final DataSet dataSet = MainApplication.getLayerManager().getActiveDataSet();
+        if (dataSet == null || !LongCodec.isValid(prefix)) {
+            suggestionsListener.accept(Collections.emptyList());
+            return;
+        }
+        if (index == null || dataSet != indexedDataSet) {
+            index = buildIndex(dataSet);
+            indexedDataSet = dataSet;
+        }
+        final CompletableFuture<CellIndex> lookedUpIndex = index;
+        lookedUpIndex.thenApplyAsync(builtIndex -> builtIndex.children(prefix), executor).handle((cells, error) -> {
+            if (error != null) {
+                Logging.error(error);
+            }
+            final List<CellIndex.Cell> suggestions = cells != null ? cells : Collections.<CellIndex.Cell>emptyList();
+            SwingUtilities.invokeLater(() -> {
+                // a failed build is not reused: the next lookup builds the index again
+                if (index == lookedUpIndex && lookedUpIndex.isCompletedExceptionally()) {
+                    index = null;
+                }
+                if (generation == lookupGeneration) {
+                    suggestionsListener.accept(suggestions);
+                }
+            });
+            return null;
+        });
+    }
+
+    /*
+     * Builds the index of the given data set in the background.
+     */
+    private CompletableFuture<CellIndex> buildIndex(final DataSet dataSet) {
+        return CompletableFuture.supplyAsync(() -> {
+            final Lock readLock = dataSet.getReadLock();
+            readLock.lock();
+            try {
+                return snapshotIndex(dataSet);
+            } finally {
+                readLock.unlock();
+            }
+        }, executor);
+    }
+
+    /*
+     * Indexes the locations of the usable nodes and ways. A way is placed at the center of the bounds of its nodes.
+     * Must be called holding the read lock of the data set, so that it is not edited meanwhile.
+     */
+    private static CellIndex snapshotIndex(final DataSet dataSet) {
+        final Collection<Node> nodes = dataSet.getNodes();
+        final double[] nodeLatitudes = new double[nodes.size()];
+        final double[] nodeLongitudes = new double[nodeLatitudes.length];
+        int nodeCount = 0;
+        for (final Node node : nodes) {
+            if (isIndexed(node)) {
+                nodeLatitudes[nodeCount] = node.lat();
+                nodeLongitudes[nodeCount] = node.lon();
+                nodeCount++;
+            }
+        }
+        final Collection<Way> ways = dataSet.getWays();
+        final double[] wayLatitudes = new double[ways.size()];
+        final double[] wayLongitudes = new double[wayLatitudes.length];
+        int wayCount = 0;
+        for (final Way way : ways) {
+            if (!way.isDeleted() && !way.isIncomplete()) {
+                double south = Double.POSITIVE_INFINITY;
+                double west = Double.POSITIVE_INFINITY;
+                double north = Double.NEGATIVE_INFINITY;
+                double east = Double.NEGATIVE_INFINITY;
+                for (final Node node : way.getNodes()) {
+                    if (isIndexed(node)) {
+                        south = Math.min(south, node.lat());
+                        west = Math.min(west, node.lon());
+                        north = Math.max(north, node.lat());
+                        east = Math.max(east, node.lon());
+                    }
+                }
+                if (south <= north) {
+                    wayLatitudes[wayCount] = (south + north) / 2;
+                    wayLongitudes[wayCount] = (west + east) / 2;
+                    wayCount++;
+                }
+            }
+        }
+        return CellIndex.build(Arrays.copyOf(nodeLatitudes, nodeCount), Arrays.copyOf(nodeLongitudes, nodeCount),
+                Arrays.copyOf(wayLatitudes, wayCount), Arrays.copyOf(wayLongitudes, wayCount));
+    }
+
+    /*
+     * Checks if the given node is indexed: usable, with known coordinates inside the world.
+     */
+    private static boolean isIndexed(final Node node) {
+        return !node.isDeleted() && !node.isIncomplete() && node.isLatLonKnown()
+                && node.lat() >= Latitude.MINIMUM_DEGREE_VALUE && node.lat() <= Latitude.MAXIMUM_DEGREE_VALUE
+                && node.lon() >= Longitude.MINIMUM_DEGREE_VALUE && node.lon() <= Longitude.MAXIMUM_DEGREE_VALUE;
+    }
+
+    private void invalidate() {
+        index = null;
+    }
+
+    @Override
+    public void primitivesAdded(final PrimitivesAddedEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void primitivesRemoved(final PrimitivesRemovedEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void nodeMoved(final NodeMovedEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void wayNodesChanged(final WayNodesChangedEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void dataChanged(final DataChangedEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void tagsChanged(final TagsChangedEvent event) {
+        // not required
+    }
+
+    @Override
+    public void relationMembersChanged(final RelationMembersChangedEvent event) {
+        // not required
+    }
+
+    @Override
+    public void otherDatasetChange(final AbstractDatasetChangedEvent event) {
+        // not required
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.gui;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.SwingUtilities;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.plugins.geohash.core.DensityIndex;
+import org.openstreetmap.josm.plugins.geohash.core.Geohash;
+import org.openstreetmap.josm.tools.Logging;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+
+
+/**
+ * Keeps a {@link DensityIndex} of the nodes and one of the ways of the active data set up to date. A way is placed at
+ * the center of the bounds of its nodes, so it counts once, in the geohash holding that center.
+ *
+ * The indexes are built in the background when tracking starts and whenever JOSM reports that the data set changed as
+ * a whole (e.g. the active layer changed). Afterwards they are maintained incrementally from the added, removed and
+ * moved node events and the changed way node events, which are delivered on the event dispatch thread; moving a node
+ * also moves the ways using it. The events received while a build is running are recorded and applied to the new
+ * indexes once they are ready. If a build fails, the error is logged, the recorded events are dropped and no density
+ * is shown until the next data set change starts a new build.
+ *
+ * @author agent
+ */
+class DensityTracker implements DataSetListener {
+
+    private final Runnable changeListener;
+
+    private DataSet dataSet;
+    private DensityIndex nodeIndex;
+    private DensityIndex wayIndex;
+
+    /*
+     * Node (or way) id to its new location, or to null if it was removed or is no longer usable, recorded while the
+     * indexes are being built.
+     */
+    private Map<Long, double[]> pendingNodeChanges;
+    private Map<Long, double[]> pendingWayChanges;
+    private long buildGeneration;
+
+
+    /**
+     * Builds a tracker.
+     *
+     * @param changeListener - called on the event dispatch thread when the indexes changed
+     */
+    DensityTracker(final Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Starts tracking the active data set.
+     */
+    void start() {
+        DatasetEventManager.getInstance().addDatasetListener(this, FireMode.IN_EDT);
+        rebuild(MainApplication.getLayerManager().getActiveDataSet());
+    }
+
+    /**
+     * Stops tracking and drops the indexes.
+     */
+    void stop() {
+        DatasetEventManager.getInstance().removeDatasetListener(this);
+        buildGeneration++;
+        pendingNodeChanges = null;
+        pendingWayChanges = null;
+        dataSet = null;
+        nodeIndex = null;
+        wayIndex = null;
+    }
+
+    /**
+     * Tells if the indexes are built.
+     *
+     * @return false while the first indexes are being built or if there is no active data set
+     */
+    boolean isBuilt() {
+        return nodeIndex != null;
+    }
+
+    /**
+     * Returns the number of nodes and ways found in the given geohash.
+     *
+     * @param geohash - a geohash
+     * @return the number of nodes and ways, or 0 if the indexes are not built
+     */
+    int count(final Geohash geohash) {
+        return nodeIndex == null ? 0 : nodeIndex.count(geohash) + wayIndex.count(geohash);
+    }
+
+    /*
+     * Takes a snapshot of the usable nodes and ways on the event dispatch thread and builds the indexes from it in the
+     * background.
+     */
+    private void rebuild(final DataSet newDataSet) {
+        final long generation = ++buildGeneration;
+        dataSet = newDataSet;
+        nodeIndex = null;
+        wayIndex = null;
+        if (newDataSet == null) {
+            pendingNodeChanges = null;
+            pendingWayChanges = null;
+            changeListener.run();
+            return;
+        }
+        pendingNodeChanges = new LinkedHashMap<>();
+        pendingWayChanges = new LinkedHashMap<>();
+        final Snapshot nodes = new Snapshot(newDataSet.getNodes().size());
+        for (final Node node : newDataSet.getNodes()) {
+            nodes.add(node.getUniqueId(), location(node));
+        }
+        final Snapshot ways = new Snapshot(newDataSet.getWays().size());
+        for (final Way way : newDataSet.getWays()) {
+            ways.add(way.getUniqueId(), location(way));
+        }
+        CompletableFuture.supplyAsync(() -> new DensityIndex[] { nodes.build(), ways.build() })
+                .whenComplete((builtIndexes, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        buildFailed(generation, error);
+                    } else {
+                        indexesBuilt(generation, builtIndexes[0], builtIndexes[1]);
+                    }
+                }));
+    }
+
+    /*
+     * Drops the changes recorded for the failed build, so they do not pile up, and forgets the data set, so the next
+     * data set change starts a new build.
+     */
+    private void buildFailed(final long generation, final Throwable error) {
+        if (generation == buildGeneration) {
+            Logging.error(error);
+            pendingNodeChanges = null;
+            pendingWayChanges = null;
+            dataSet = null;
+            nodeIndex = null;
+            wayIndex = null;
+            changeListener.run();
+        }
+    }
+
+    private void indexesBuilt(final long generation, final DensityIndex builtNodeIndex,
+            final DensityIndex builtWayIndex) {
+        if (generation == buildGeneration) {
+            apply(pendingNodeChanges, builtNodeIndex);
+            apply(pendingWayChanges, builtWayIndex);
+            pendingNodeChanges = null;
+            pendingWayChanges = null;
+            nodeIndex = builtNodeIndex;
+            wayIndex = builtWayIndex;
+            changeListener.run();
+        }
+    }
+
+    private static void apply(final Map<Long, double[]> changes, final DensityIndex index) {
+        for (final Map.Entry<Long, double[]> change : changes.entrySet()) {
+            update(index, change.getKey(), change.getValue());
+        }
+    }
+
+    private static void update(final DensityIndex index, final long id, final double[] location) {
+        if (location == null) {
+            index.remove(id);
+        } else {
+            index.put(id, location[0], location[1]);
+        }
+    }
+
+    /*
+     * Returns the location of the given node, or null if it is not counted: deleted, incomplete, without known
+     * coordinates or outside the world.
+     */
+    private static double[] location(final Node node) {
+        if (node.isDeleted() || node.isIncomplete() || !node.isLatLonKnown()
+                || !(node.lat() >= Latitude.MINIMUM_DEGREE_VALUE && node.lat() <= Latitude.MAXIMUM_DEGREE_VALUE)
+                || !(node.lon() >= Longitude.MINIMUM_DEGREE_VALUE && node.lon() <= Longitude.MAXIMUM_DEGREE_VALUE)) {
+            return null;
+        }
+        return new double[] { node.lat(), node.lon() };
+    }
+
+    /*
+     * Returns the center of the bounds of the counted nodes of the given way, or null if the way is not counted:
+     * deleted, incomplete or without counted nodes.
+     */
+    private static double[] location(final Way way) {
+        if (way.isDeleted() || way.isIncomplete()) {
+            return null;
+        }
+        double south = Double.POSITIVE_INFINITY;
+        double west = Double.POSITIVE_INFINITY;
+        double north = Double.NEGATIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        for (final Node node : way.getNodes()) {
+            final double[] location = location(node);
+            if (location != null) {
+                south = Math.min(south, location[0]);
+                west = Math.min(west, location[1]);
+                north = Math.max(north, location[0]);
+                east = Math.max(east, location[1]);
+            }
+        }
+        return south <= north ? new double[] { (south + north) / 2, (west + east) / 2 } : null;
+    }
+
+    private void put(final Node node) {
+        final double[] location = location(node);
+        if (pendingNodeChanges != null) {
+            pendingNodeChanges.put(node.getUniqueId(), location);
+        } else if (nodeIndex != null) {
+            update(nodeIndex, node.getUniqueId(), location);
+        }
+    }
+
+    private void put(final Way way) {
+        final double[] location = location(way);
+        if (pendingWayChanges != null) {
+            pendingWayChanges.put(way.getUniqueId(), location);
+        } else if (wayIndex != null) {
+            update(wayIndex, way.getUniqueId(), location);
+        }
+    }
+
+    private void remove(final OsmPrimitive primitive) {
+        final Map<Long, double[]> pendingChanges = primitive instanceof Node ? pendingNodeChanges : pendingWayChanges;
+        final DensityIndex index = primitive instanceof Node ? nodeIndex : wayIndex;
+        if (pendingChanges != null) {
+            pendingChanges.put(primitive.getUniqueId(), null);
+        } else if (index != null) {
+            index.remove(primitive.getUniqueId());
+        }
+    }
+
+    @Override
+    public void primitivesAdded(final PrimitivesAddedEvent event) {
+        for (final OsmPrimitive primitive : event.getPrimitives()) {
+            if (primitive instanceof Node) {
+                put((Node) primitive);
+            } else if (primitive instanceof Way) {
+                put((Way) primitive);
+            }
+        }
+        changeListener.run();
+    }
+
+    @Override
+    public void primitivesRemoved(final PrimitivesRemovedEvent event) {
+        for (final OsmPrimitive primitive : event.getPrimitives()) {
+            if (primitive instanceof Node || primitive instanceof Way) {
+                remove(primitive);
+            }
+        }
+        changeListener.run();
+    }
+
+    @Override
+    public void nodeMoved(final NodeMovedEvent event) {
+        put(event.getNode());
+        for (final Way way : event.getNode().getParentWays()) {
+            put(way);
+        }
+        changeListener.run();
+    }
+
+    @Override
+    public void wayNodesChanged(final WayNodesChangedEvent event) {
+        put(event.getChangedWay());
+        changeListener.run();
+    }
+
+    @Override
+    public void dataChanged(final DataChangedEvent event) {
+        if (event.getEvents() != null && event.getDataset() == dataSet) {
+            // several changes reported together; each of them can still be applied incrementally
+            for (final AbstractDatasetChangedEvent change : event.getEvents()) {
+                change.fire(this);
+            }
+        } else {
+            rebuild(event.getDataset());
+        }
+    }
+
+    @Override
+    public void tagsChanged(final TagsChangedEvent event) {
+        // not required
+    }
+
+    @Override
+    public void relationMembersChanged(final RelationMembersChangedEvent event) {
+        // not required
+    }
+
+    @Override
+    public void otherDatasetChange(final AbstractDatasetChangedEvent event) {
+        // not required
+    }
+
+
+    /**
+     * The ids and locations of the counted primitives of a data set, from which an index is built.
+     */
+    private static final class Snapshot {
+
+        private long[] ids;
+        private double[] latitudes;
+        private double[] longitudes;
+        private int count;
+
+        private Snapshot(final int capacity) {
+            ids = new long[capacity];
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+        }
+
+        private void add(final long id, final double[] location) {
+            if (location != null) {
+                ids[count] = id;
+                latitudes[count] = location[0];
+                longitudes[count] = location[1];
+                count++;
+            }
+        }
+
+        private DensityIndex build() {
+            return DensityIndex.build(Arrays.copyOf(ids, count), Arrays.copyOf(latitudes, count),
+                    Arrays.copyOf(longitudes, count));
+        }
+    }
+}
@@ -7,27 +7,48 @@
 package org.openstreetmap.josm.plugins.geohash.gui;
 
 import java.awt.Graphics2D;
+import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.Icon;
+import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.dialogs.LayerListDialog;
 import org.openstreetmap.josm.gui.dialogs.LayerListPopup;
 import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.plugins.geohash.core.CoverUpdate;
 import org.openstreetmap.josm.plugins.geohash.core.Geohash;
 import org.openstreetmap.josm.plugins.geohash.core.GeohashIdentifier;
+import org.openstreetmap.josm.plugins.geohash.core.Instrumentation;
+import org.openstreetmap.josm.plugins.geohash.core.LongCodec;
 import org.openstreetmap.josm.plugins.geohash.util.Convert;
 import org.openstreetmap.josm.plugins.geohash.util.PaintHandler;
+import org.openstreetmap.josm.plugins.geohash.util.PreferenceManager;
 import org.openstreetmap.josm.plugins.geohash.util.config.Configurer;
 import org.openstreetmap.josm.tools.I18n;
 import org.openstreetmap.josm.tools.ImageProvider;
+import org.openstreetmap.josm.tools.Logging;
 import net.exfidefortis.map.BoundingBox;
 
 
@@ -67,6 +88,7 @@ public final class GeohashLayer extends Layer {
         @Override
         public void actionPerformed(final ActionEvent e) {
             geohashIdentifier.increaseSideRatio();
+            GeohashLayer.getInstance().discardRequestedCover();
             GeohashLayer.getInstance().invalidate();
             MainApplication.getMap().repaint();
         }
@@ -80,18 +102,148 @@ public final class GeohashLayer extends Layer {
         @Override
         public void actionPerformed(final ActionEvent e) {
             geohashIdentifier.decreaseSideRatio();
+            GeohashLayer.getInstance().discardRequestedCover();
             GeohashLayer.getInstance().invalidate();
             MainApplication.getMap().repaint();
         }
     };
 
+    private final AbstractAction toggleDensityAction = new AbstractAction(I18n.tr(configurer.getShowDensityText())) {
+
+        private static final long serialVersionUID = 2795187402427731062L;
+
+        @Override
+        public void actionPerformed(final ActionEvent e) {
+            final GeohashLayer layer = GeohashLayer.getInstance();
+            if (layer.densityTracker == null) {
+                putValue(Action.NAME, I18n.tr(configurer.getHideDensityText()));
+                layer.densityTracker = new DensityTracker(layer::invalidate);
+                layer.densityTracker.start();
+            } else {
+                putValue(Action.NAME, I18n.tr(configurer.getShowDensityText()));
+                layer.densityTracker.stop();
+                layer.densityTracker = null;
+                layer.invalidate();
+            }
+        }
+    };
+
+    private final AbstractAction coverSelectionAction = new AbstractAction(
+            I18n.tr(configurer.getCoverSelectionText())) {
+
+        private static final long serialVersionUID = -4528741939270367718L;
+
+        @Override
+        public void actionPerformed(final ActionEvent e) {
+            final DataSet dataSet = MainApplication.getLayerManager().getActiveDataSet();
+            final JSpinner precisionInput = new JSpinner(new SpinnerNumberModel(
+                    Math.max(1, GeohashLayer.getInstance().paintedPrecision()), 1, LongCodec.MAX_PRECISION, 1));
+            final JCheckBox compactInput = new JCheckBox(I18n.tr(configurer.getSelectionCompactText()));
+            final JPanel panel = new JPanel(new GridLayout(0, 1));
+            panel.add(new JLabel(I18n.tr(configurer.getSelectionPrecisionText())));
+            panel.add(precisionInput);
+            panel.add(compactInput);
+            if (JOptionPane.showConfirmDialog(MainApplication.getMainFrame(), panel,
+                    I18n.tr(configurer.getCoverSelectionText()), JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION
+                    && (dataSet == null || !GeohashLayer.getInstance().selectionCover.compute(dataSet.getSelected(),
+                            (Integer) precisionInput.getValue(), compactInput.isSelected()))) {
+                JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
+                        I18n.tr(configurer.getSelectionInvalidText()), I18n.tr(configurer.getCoverSelectionText()),
+                        JOptionPane.WARNING_MESSAGE);
+            }
+        }
+    };
+
+    private final AbstractAction clearSelectionCoverAction = new AbstractAction(
+            I18n.tr(configurer.getClearSelectionCoverText())) {
+
+        private static final long serialVersionUID = 6390243413651127403L;
+
+        @Override
+        public void actionPerformed(final ActionEvent e) {
+            GeohashLayer.getInstance().selectionCover.clear();
+        }
+    };
+
+    private final AbstractAction toggleMetricsAction = new AbstractAction(I18n.tr(configurer.getOpenMetricsText())) {
+
+        private static final long serialVersionUID = -2168519540335290784L;
+
+        @Override
+        public void actionPerformed(final ActionEvent e) {
+            final GeohashLayer layer = GeohashLayer.getInstance();
+            if (layer.storeMetrics == null) {
+                final JFileChooser fileChooser = new JFileChooser();
+                if (fileChooser.showOpenDialog(MainApplication.getMainFrame()) == JFileChooser.APPROVE_OPTION) {
+                    try {
+                        layer.storeMetrics = new StoreMetrics(fileChooser.getSelectedFile().toPath());
+                        putValue(Action.NAME, I18n.tr(configurer.getCloseMetricsText()));
+                    } catch (final IOException ex) {
+                        Logging.warn(ex);
+                        JOptionPane.showMessageDialog(MainApplication.getMainFrame(), ex.getMessage(),
+                                I18n.tr(configurer.getOpenMetricsText()), JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            } else {
+                putValue(Action.NAME, I18n.tr(configurer.getOpenMetricsText()));
+                try {
+                    layer.storeMetrics.close();
+                } catch (final IOException ex) {
+                    Logging.warn(ex);
+                }
+                layer.storeMetrics = null;
+            }
+            layer.discardRequestedCover();
+            layer.invalidate();
+        }
+    };
+
     private final PaintHandler paintHandler;
     private final GeohashIdentifier geohashIdentifier;
 
+    /** The map view bounds and the geohash cover being painted, used for updating the cover incrementally */
+    private BoundingBox paintedBounds;
+    private Collection<Geohash> paintedGeohashes;
+
+    /**
+     * Computes the geohash covers off the event dispatch thread. Only the newest request matters: older requests are
+     * cancelled and their results, if any, are ignored. Cancelling keeps a queued request from starting and interrupts
+     * a running one, but the geohash identifier ignores the interrupt, so a cover computation already running still
+     * completes; only the metrics loading checks the interrupt, and stops early.
+     */
+    private final ExecutorService coverExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "geohash-cover");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingCover;
+    private BoundingBox requestedBounds;
+    private long coverGeneration;
+
+    /** Counts the nodes and ways of the active data set per geohash while the density is shown; null otherwise */
+    private DensityTracker densityTracker;
+
+    /** The metrics read from a geohash store file opened by the user, loaded for the painted geohashes; null if none */
+    private StoreMetrics storeMetrics;
+
+    /** The geohashes covering the areas selected by the user, drawn over the grid */
+    private final SelectionCover selectionCover = new SelectionCover(this::invalidate);
+
+    /** The counters and latencies of the plug-in, exposed through JMX while the layer exists */
+    private final LayerStatistics statistics = new LayerStatistics();
+
     private GeohashLayer() {
         super(Configurer.getINSTANCE().getPluginName());
-        paintHandler = new PaintHandler();
+        paintHandler = new PaintHandler(this::invalidate);
         geohashIdentifier = new GeohashIdentifier();
+        final int maxCellCount = PreferenceManager.getInstance()
+                .loadMaxCellCount(GeohashIdentifier.DEFAULT_MAX_CELL_COUNT);
+        try {
+            geohashIdentifier.setMaxCellCount(maxCellCount);
+        } catch (final IllegalArgumentException e) {
+            Logging.warn(e);
+        }
+        statistics.register();
     }
 
     public static GeohashLayer getInstance() {
@@ -102,25 +254,163 @@ public final class GeohashLayer extends Layer {
     }
 
     public static void destroyInstance() {
+        if (instance != null) {
+            instance.coverExecutor.shutdownNow();
+            instance.paintHandler.dispose();
+            instance.statistics.unregister();
+            if (instance.densityTracker != null) {
+                instance.densityTracker.stop();
+            }
+            if (instance.storeMetrics != null) {
+                try {
+                    instance.storeMetrics.close();
+                } catch (final IOException e) {
+                    Logging.warn(e);
+                }
+            }
+        }
         instance = null;
     }
 
     @Override
     public void paint(final Graphics2D graphics, final MapView mapView, final Bounds bounds) {
+        final long start = Instrumentation.start();
+        final PaintEvent event = new PaintEvent();
+        event.begin();
         mapView.setDoubleBuffered(true);
         final Collection<Geohash> geohashes;
         if (!geohashIdentifier.getZoomFreeze()) {
-            geohashes = geohashIdentifier.get(mapViewBounds());
+            requestCover(mapViewBounds());
+            geohashes = paintedGeohashes;
         } else {
             geohashes = geohashIdentifier.getGeohashesBeforeFreeze();
         }
 
-        setColors();
-        for (final Geohash geohash : geohashes) {
-            paintHandler.drawGeohash(graphics, mapView, geohash, false);
+        if (geohashes != null) {
+            Instrumentation.CELLS_PER_FRAME.record(geohashes.size());
+            if (densityTracker != null && densityTracker.isBuilt()) {
+                paintHandler.fillDensity(graphics, mapView, geohashes, densityTracker::count);
+            }
+            if (storeMetrics != null) {
+                paintHandler.fillDensity(graphics, mapView, geohashes, storeMetrics::metric);
+            }
+            setColors();
+            if (geohashIdentifier.getZoomFreeze()) {
+                paintHandler.drawGrid(graphics, mapView, geohashes);
+            } else {
+                // the cover spans the whole map view, so the grid is drawn from the cached tiles
+                paintHandler.drawGridTiles(graphics, mapView, geohashes);
+            }
+        }
+        if (!selectionCover.isEmpty()) {
+            paintHandler.drawCover(graphics, mapView, selectionCover.cover(), selectionCover.precision(),
+                    selectionCover.isCompact());
+        }
+        Instrumentation.stop(Instrumentation.LAYER_PAINT, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.precision = paintedPrecision();
+            event.cellCount = geohashes == null ? 0 : geohashes.size();
+            event.zoomFrozen = geohashIdentifier.getZoomFreeze();
+            event.densityShown = densityTracker != null;
+            event.metricsShown = storeMetrics != null;
+            event.selectionCoverSize = selectionCover.cover().length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Requests the geohash cover for the given map view bounds to be computed in the background, unless it was already
+     * requested. When the map view is only panned, the cover being painted is updated with the geohashes entering and
+     * leaving the view instead of being recomputed. The layer keeps painting the last computed cover until the new one
+     * is ready. The metrics of the new cover, if a store is open, are loaded in the same background task.
+     *
+     * @param viewBounds the current map view bounds
+     */
+    private void requestCover(final BoundingBox viewBounds) {
+        if (viewBounds.equals(requestedBounds)) {
+            return;
+        }
+        requestedBounds = viewBounds;
+        if (pendingCover != null) {
+            pendingCover.cancel(true);
+        }
+        final long generation = ++coverGeneration;
+        final BoundingBox previousBounds = paintedBounds;
+        final Collection<Geohash> previousGeohashes = paintedGeohashes;
+        final StoreMetrics metrics = storeMetrics;
+        pendingCover = coverExecutor.submit(() -> {
+            try {
+                final CoverUpdate update;
+                if (previousGeohashes == null) {
+                    final Collection<Geohash> geohashes = geohashIdentifier.get(viewBounds);
+                    update = new CoverUpdate(geohashes, geohashes, Collections.emptyList(), false);
+                } else {
+                    update = geohashIdentifier.update(previousBounds, previousGeohashes, viewBounds);
+                }
+                // a newer request cancelled this one while the cover was computed: its metrics are not needed
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                final Map<Geohash, Integer> loadedMetrics = metrics != null ? metrics.load(update.geohashes()) : null;
+                if (metrics != null && loadedMetrics == null) {
+                    // interrupted by a newer request while the metrics were loaded
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> coverComputed(generation, viewBounds, update, metrics, loadedMetrics));
+            } catch (final RuntimeException e) {
+                Logging.error(e);
+                SwingUtilities.invokeLater(() -> coverFailed(generation));
+            }
+        });
+    }
+
+    /**
+     * Called on the event dispatch thread when a cover computation finishes. The result is painted only if it belongs
+     * to the newest request; the screen geometry of the geohashes which left the view is discarded, and the metrics
+     * loaded for the result, if any, replace the painted ones. The metrics loaded for an older request are dropped.
+     */
+    private void coverComputed(final long generation, final BoundingBox viewBounds, final CoverUpdate update,
+            final StoreMetrics metrics, final Map<Geohash, Integer> loadedMetrics) {
+        if (generation == coverGeneration) {
+            paintHandler.discard(update.removed());
+            if (metrics != null && metrics == storeMetrics) {
+                metrics.show(loadedMetrics);
+            }
+            paintedBounds = viewBounds;
+            paintedGeohashes = update.geohashes();
+            pendingCover = null;
+            invalidate();
         }
     }
 
+    /**
+     * Called on the event dispatch thread when a cover computation fails. The layer keeps painting the last computed
+     * cover; the failed request is forgotten, so it is retried once the map view changes.
+     */
+    private void coverFailed(final long generation) {
+        if (generation == coverGeneration) {
+            pendingCover = null;
+        }
+    }
+
+    /**
+     * Forgets the requested cover, so the next paint requests a new one even if the map view did not change. Used when
+     * the geohash size settings change.
+     */
+    private void discardRequestedCover() {
+        requestedBounds = null;
+    }
+
+    /**
+     * Returns the length of the geohashes being painted, or 0 if none is painted yet.
+     */
+    private int paintedPrecision() {
+        final Collection<Geohash> geohashes = geohashIdentifier.getZoomFreeze()
+                ? geohashIdentifier.getGeohashesBeforeFreeze() : paintedGeohashes;
+        return geohashes == null || geohashes.isEmpty() ? 0 : geohashes.iterator().next().code().length();
+    }
+
     private BoundingBox mapViewBounds() {
         final ProjectionBounds projectionBounds = MainApplication.getMap().mapView.getProjectionBounds();
         final Bounds bounds = MainApplication.getMap().mapView.getProjection().getLatLonBoundsBox(projectionBounds);
@@ -134,7 +424,9 @@ public final class GeohashLayer extends Layer {
 
     @Override
     public Object getInfoComponent() {
-        return Configurer.getINSTANCE().getLayerInfoComponent();
+        return "<html>" + Configurer.getINSTANCE().getLayerInfoComponent() + "<br><br><b>"
+                + I18n.tr(Configurer.getINSTANCE().getLayerInfoStatisticsText()) + "</b>" + statistics.toHtml()
+                + "</html>";
     }
 
     @Override
@@ -149,11 +441,14 @@ public final class GeohashLayer extends Layer {
             decreaseCoverageAction.setEnabled(geohashIdentifier.canDecreaseSideRatio()
                     && geohashIdentifier.wouldNoticeSideRatioDecrease(mapViewBounds()));
         }
+        coverSelectionAction.setEnabled(MainApplication.getLayerManager().getActiveDataSet() != null);
+        clearSelectionCoverAction.setEnabled(!selectionCover.isEmpty());
         final LayerListDialog layerListDialog = LayerListDialog.getInstance();
         return new Action[]{layerListDialog.createActivateLayerAction(this),
                 layerListDialog.createShowHideLayerAction(), new GeohashLayerDeleteAction(layerListDialog.getModel()),
-                increaseCoverageAction, decreaseCoverageAction, toggleZoomFreezeAction,
-                SeparatorLayerAction.INSTANCE, new LayerListPopup.InfoAction(this)};
+                increaseCoverageAction, decreaseCoverageAction, toggleZoomFreezeAction, toggleDensityAction,
+                toggleMetricsAction, coverSelectionAction, clearSelectionCoverAction, SeparatorLayerAction.INSTANCE,
+                new LayerListPopup.InfoAction(this)};
     }
 
     @Override
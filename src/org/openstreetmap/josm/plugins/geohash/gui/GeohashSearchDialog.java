@@ -7,22 +7,35 @@
 package org.openstreetmap.josm.plugins.geohash.gui;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
 import javax.swing.AbstractAction;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.dialogs.ToggleDialog;
+import org.openstreetmap.josm.plugins.geohash.core.CellIndex;
 import org.openstreetmap.josm.plugins.geohash.core.Geohash;
 import org.openstreetmap.josm.plugins.geohash.util.Convert;
 import org.openstreetmap.josm.plugins.geohash.util.config.Configurer;
+import org.openstreetmap.josm.tools.I18n;
 import org.openstreetmap.josm.tools.Shortcut;
 import com.grab.josm.common.gui.builder.ButtonBuilder;
 import com.grab.josm.common.gui.builder.TextComponentBuilder;
@@ -46,10 +59,15 @@ public class GeohashSearchDialog extends ToggleDialog {
     private static final Dimension INPUT_DIM = new Dimension(Integer.MAX_VALUE, 20);
     private static final Color WHITE = new Color(255, 255, 255);
     private static final int DLG_HEIGHT = 50;
+    private static final int SUGGESTION_ROWS = 6;
     private static final Configurer CONFIG = Configurer.getINSTANCE();
     private final JTextField searchInput;
     private final JTextArea searchOutput;
 
+    /** The geohashes holding data under the typed code, looked up while typing */
+    private final DefaultListModel<CellIndex.Cell> suggestionsModel = new DefaultListModel<>();
+    private final CellSuggestions suggestions = new CellSuggestions(this::showSuggestions);
+
     public GeohashSearchDialog() {
         super(CONFIG.getPluginName(), CONFIG.getDialogShortcutIcon(), CONFIG.getPluginName(),
                 Shortcut.registerShortcut(CONFIG.getDialogShortcutName(), CONFIG.getDialogShortcutName(), KeyEvent.VK_0,
@@ -73,8 +91,26 @@ public class GeohashSearchDialog extends ToggleDialog {
                 }
             }
         });
+        searchInput.getDocument().addDocumentListener(new DocumentListener() {
+
+            @Override
+            public void insertUpdate(final DocumentEvent e) {
+                suggestions.request(searchInput.getText().trim());
+            }
+
+            @Override
+            public void removeUpdate(final DocumentEvent e) {
+                suggestions.request(searchInput.getText().trim());
+            }
+
+            @Override
+            public void changedUpdate(final DocumentEvent e) {
+                // attribute changes do not change the text
+            }
+        });
         searchContainer.add(searchInput);
-        final JButton searchButton = ButtonBuilder.build(new SearchAction(), Configurer.getINSTANCE().getDialogButtonName());
+        final SearchAction searchAction = new SearchAction();
+        final JButton searchButton = ButtonBuilder.build(searchAction, Configurer.getINSTANCE().getDialogButtonName());
         searchContainer.add(new JLabel(" "));
         searchContainer.add(searchButton);
 
@@ -83,9 +119,50 @@ public class GeohashSearchDialog extends ToggleDialog {
         searchOutput.setWrapStyleWord(true);
         searchContainer.add(searchOutput);
 
+        final JList<CellIndex.Cell> suggestionList = new JList<>(suggestionsModel);
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.setCellRenderer(new DefaultListCellRenderer() {
+
+            private static final long serialVersionUID = 3950378420245712409L;
+
+            @Override
+            public Component getListCellRendererComponent(final JList<?> list, final Object value,
+                    final int index, final boolean isSelected, final boolean cellHasFocus) {
+                final CellIndex.Cell cell = (CellIndex.Cell) value;
+                return super.getListCellRendererComponent(list,
+                        I18n.tr(CONFIG.getDialogSuggestionText(), cell.code(), cell.nodeCount(), cell.wayCount()),
+                        index, isSelected, cellHasFocus);
+            }
+        });
+        suggestionList.addMouseListener(new MouseAdapter() {
+
+            @Override
+            public void mouseClicked(final MouseEvent e) {
+                final int index = suggestionList.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    // searching the suggested geohash zooms to it and suggests its own children
+                    searchInput.setText(suggestionsModel.get(index).code());
+                    searchAction.actionPerformed(null);
+                }
+            }
+        });
+        suggestionList.setVisibleRowCount(SUGGESTION_ROWS);
+        searchContainer.add(new JScrollPane(suggestionList));
+
         add(createLayout(searchContainer, false, null));
     }
 
+    @Override
+    public void destroy() {
+        suggestions.dispose();
+        super.destroy();
+    }
+
+    private void showSuggestions(final List<CellIndex.Cell> cells) {
+        suggestionsModel.clear();
+        cells.forEach(suggestionsModel::addElement);
+    }
+
     /**
      * ActionListener implementing search button logic.
      *
@@ -98,12 +175,20 @@ public class GeohashSearchDialog extends ToggleDialog {
         @Override
         public void actionPerformed(final ActionEvent e) {
             final String geohashCode = searchInput.getText();
+            final SearchEvent event = new SearchEvent();
+            event.begin();
             try {
                 final Geohash findGeohash = new Geohash(geohashCode);
                 outputSearchFound(findGeohash);
+                event.found = true;
             } catch (final IllegalArgumentException ex) {
                 searchOutput.setText(Configurer.getINSTANCE().getDialogLabelNotFound());
             }
+            event.end();
+            if (event.shouldCommit()) {
+                event.code = geohashCode;
+                event.commit();
+            }
         }
 
         /**
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.gui;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import org.openstreetmap.josm.plugins.geohash.core.Instrumentation;
+import org.openstreetmap.josm.tools.Logging;
+
+
+/**
+ * Exposes the {@link Instrumentation} statistics of the plug-in as a JMX MBean, with one read-only attribute per
+ * statistic, a writable "enabled" attribute turning the timing on or off and a "reset" operation, and formats them for
+ * the layer information dialog.
+ *
+ * @author agent
+ */
+class LayerStatistics implements DynamicMBean {
+
+    private static final String OBJECT_NAME = "org.openstreetmap.josm.plugins.geohash:type=LayerStatistics";
+    private static final String ENABLED = "enabled";
+    private static final String RESET = "reset";
+
+    private ObjectName registeredName;
+
+
+    /**
+     * Registers the statistics with the platform MBean server. Failures are logged, since the statistics are not
+     * needed for the layer to work.
+     */
+    void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (final JMException e) {
+            Logging.warn(e);
+        }
+    }
+
+    /**
+     * Unregisters the statistics from the platform MBean server, if they were registered.
+     */
+    void unregister() {
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (final JMException e) {
+                Logging.warn(e);
+            }
+            registeredName = null;
+        }
+    }
+
+    /**
+     * Formats the statistics as the rows of an HTML table.
+     *
+     * @return the HTML table
+     */
+    String toHtml() {
+        final StringBuilder html = new StringBuilder("<table>");
+        for (final Map.Entry<String, Number> statistic : Instrumentation.snapshot().entrySet()) {
+            final Number value = statistic.getValue();
+            html.append("<tr><td>").append(statistic.getKey()).append("</td><td align=\"right\">")
+                    .append(value instanceof Double ? String.format(Locale.ROOT, "%.3f", value) : value)
+                    .append("</td></tr>");
+        }
+        return html.append("</table>").toString();
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        if (ENABLED.equals(attribute)) {
+            return Instrumentation.isEnabled();
+        }
+        final Number value = Instrumentation.snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute)
+            throws AttributeNotFoundException, InvalidAttributeValueException {
+        if (!ENABLED.equals(attribute.getName())) {
+            throw new AttributeNotFoundException("Read-only or unknown attribute: " + attribute.getName());
+        }
+        if (!(attribute.getValue() instanceof Boolean)) {
+            throw new InvalidAttributeValueException("Not a boolean: " + attribute.getValue());
+        }
+        Instrumentation.setEnabled((Boolean) attribute.getValue());
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final AttributeList list = new AttributeList();
+        final Map<String, Number> snapshot = Instrumentation.snapshot();
+        for (final String attribute : attributes) {
+            if (ENABLED.equals(attribute)) {
+                list.add(new Attribute(attribute, Instrumentation.isEnabled()));
+            } else if (snapshot.containsKey(attribute)) {
+                list.add(new Attribute(attribute, snapshot.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        final AttributeList set = new AttributeList();
+        for (final Attribute attribute : attributes.asList()) {
+            try {
+                setAttribute(attribute);
+                set.add(attribute);
+            } catch (final JMException e) {
+                Logging.warn(e);
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature)
+            throws ReflectionException {
+        if (!RESET.equals(actionName)) {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+        Instrumentation.reset();
+        return null;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        attributes.add(new MBeanAttributeInfo(ENABLED, Boolean.TYPE.getName(), "Whether the durations are recorded",
+                true, true, true));
+        for (final Map.Entry<String, Number> statistic : Instrumentation.snapshot().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(statistic.getKey(), statistic.getValue().getClass().getName(),
+                    statistic.getKey(), true, false, false));
+        }
+        final MBeanOperationInfo reset = new MBeanOperationInfo(RESET, "Forgets the recorded statistics", null,
+                Void.TYPE.getName(), MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "Geohash layer statistics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[]{reset}, null);
+    }
+}
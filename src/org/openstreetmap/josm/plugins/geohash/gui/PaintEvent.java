@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event of a paint pass of the {@link GeohashLayer}, lasting as long as the pass.
+ *
+ * @author agent
+ */
+@Name("org.openstreetmap.josm.plugins.geohash.Paint")
+@Label("Geohash Layer Paint")
+@Category({"JOSM", "Geohash"})
+@Description("Paint pass of the geohash layer")
+class PaintEvent extends jdk.jfr.Event {
+
+    @Label("Precision")
+    @Description("The length of the painted geohashes, 0 if none is painted")
+    int precision;
+
+    @Label("Cell Count")
+    int cellCount;
+
+    @Label("Zoom Frozen")
+    boolean zoomFrozen;
+
+    @Label("Density Shown")
+    boolean densityShown;
+
+    @Label("Metrics Shown")
+    boolean metricsShown;
+
+    @Label("Selection Cover Size")
+    int selectionCoverSize;
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event of a geohash looked up in the {@link GeohashSearchDialog}, lasting until the map view was
+ * zoomed to it.
+ *
+ * @author agent
+ */
+@Name("org.openstreetmap.josm.plugins.geohash.Search")
+@Label("Geohash Search")
+@Category({"JOSM", "Geohash"})
+@Description("Geohash lookup in the search dialog")
+class SearchEvent extends jdk.jfr.Event {
+
+    @Label("Code")
+    String code;
+
+    @Label("Found")
+    @Description("Whether the code was a valid geohash")
+    boolean found;
+}
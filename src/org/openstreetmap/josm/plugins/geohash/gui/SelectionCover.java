@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.SwingUtilities;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.visitor.paint.relations.Multipolygon;
+import org.openstreetmap.josm.plugins.geohash.core.LongCodec;
+import org.openstreetmap.josm.plugins.geohash.core.Polyfill;
+import org.openstreetmap.josm.tools.Logging;
+
+
+/**
+ * The geohashes covering the areas selected in the active data set: closed ways and multipolygon relations.
+ *
+ * The rings of the selected areas are read on the event dispatch thread, and the cover is computed in the background.
+ * The cover is always computed and kept compact, as packed geohashes, so that a large area covered with a fine
+ * precision holds about as many geohashes as its boundary; when it is not shown compact, its coarse geohashes are split
+ * only where they are drawn.
+ *
+ * @author agent
+ */
+class SelectionCover {
+
+    /** Upper limit for the number of boundary geohashes of the selection, beyond which nothing is computed */
+    static final long MAX_BOUNDARY_COUNT = 4_000_000L;
+
+    private final Runnable changeListener;
+
+    private long[] cover = new long[0];
+    private int precision;
+    private boolean compact;
+    private long generation;
+
+
+    /**
+     * Builds an empty cover.
+     *
+     * @param changeListener - called on the event dispatch thread when the cover changed
+     */
+    SelectionCover(final Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Returns the packed geohashes of the last computed cover, in compact form.
+     *
+     * @return the geohashes, sorted in the order of {@link LongCodec#compare(long, long)}, empty if no cover was
+     * computed
+     */
+    long[] cover() {
+        return cover;
+    }
+
+    /**
+     * Returns the precision the last cover was computed with.
+     *
+     * @return the length of the geohashes crossed by the boundary of the selection
+     */
+    int precision() {
+        return precision;
+    }
+
+    /**
+     * Tells if the last cover is shown compact.
+     *
+     * @return false if the geohashes shorter than the precision stand for their descendants with that precision
+     */
+    boolean isCompact() {
+        return compact;
+    }
+
+    boolean isEmpty() {
+        return cover.length == 0;
+    }
+
+    /**
+     * Starts computing the cover of the given selection.
+     *
+     * @param selection - the selected primitives; the ones which are not areas are ignored
+     * @param precision - the length of the geohashes
+     * @param compact - if true, the complete groups of sibling geohashes are shown as their parent
+     * @return false if the selection holds no area, or if its boundary is too long for the given precision
+     */
+    boolean compute(final Collection<OsmPrimitive> selection, final int precision, final boolean compact) {
+        final List<List<double[]>> polygons = polygons(selection);
+        long boundaryCount = 0;
+        for (final List<double[]> rings : polygons) {
+            boundaryCount += Polyfill.boundaryCellCount(rings, precision);
+        }
+        if (polygons.isEmpty() || boundaryCount > MAX_BOUNDARY_COUNT) {
+            return false;
+        }
+        final long computation = ++generation;
+        CompletableFuture.supplyAsync(() -> Polyfill.compactUnion(polygons, precision))
+                .whenComplete((computedCover, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        Logging.error(error);
+                    } else if (computation == generation) {
+                        cover = computedCover;
+                        this.precision = precision;
+                        this.compact = compact;
+                        changeListener.run();
+                    }
+                }));
+        return true;
+    }
+
+    /**
+     * Drops the cover, including the one being computed.
+     */
+    void clear() {
+        generation++;
+        cover = new long[0];
+        changeListener.run();
+    }
+
+    /*
+     * Returns the areas found in the given selection, one polygon per primitive. The outer and inner rings of a
+     * multipolygon are returned together, and the polyfill tells them apart with the even-odd rule; the rings of
+     * different primitives are kept apart, so that overlapping areas, or a closed way selected together with its
+     * multipolygon, do not cancel each other.
+     */
+    private static List<List<double[]>> polygons(final Collection<OsmPrimitive> selection) {
+        final List<List<double[]>> polygons = new ArrayList<>();
+        for (final OsmPrimitive primitive : selection) {
+            final List<double[]> rings = new ArrayList<>();
+            if (primitive instanceof Way && ((Way) primitive).isClosed()) {
+                addRing(rings, ((Way) primitive).getNodes());
+            } else if (primitive instanceof Relation && ((Relation) primitive).isMultipolygon()
+                    && !primitive.isIncomplete()) {
+                for (final Multipolygon.PolyData polygon : new Multipolygon((Relation) primitive)
+                        .getCombinedPolygons()) {
+                    addRing(rings, polygon.getNodes());
+                    for (final Multipolygon.PolyData inner : polygon.getInners()) {
+                        addRing(rings, inner.getNodes());
+                    }
+                }
+            }
+            if (!rings.isEmpty()) {
+                polygons.add(rings);
+            }
+        }
+        return polygons;
+    }
+
+    private static void addRing(final List<double[]> rings, final List<Node> nodes) {
+        final double[] ring = new double[2 * nodes.size()];
+        int length = 0;
+        for (final Node node : nodes) {
+            if (node.isLatLonKnown()) {
+                ring[length++] = node.lat();
+                ring[length++] = node.lon();
+            }
+        }
+        // the closing node repeats the first one
+        if (length >= 4 && ring[0] == ring[length - 2] && ring[1] == ring[length - 1]) {
+            length -= 2;
+        }
+        if (length >= 6) {
+            rings.add(Arrays.copyOf(ring, length));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.gui;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.openstreetmap.josm.plugins.geohash.core.AggregatePyramid;
+import org.openstreetmap.josm.plugins.geohash.core.Geohash;
+import org.openstreetmap.josm.plugins.geohash.core.GeohashStore;
+
+
+/**
+ * Per-geohash metrics read from a {@link GeohashStore} whose values start with an int (e.g. a count).
+ *
+ * The metric of a painted geohash is the sum of the values stored for it and for its descendants. Summing the values of
+ * a large geohash may read many entries, so the metrics are loaded off the event dispatch thread, together with the
+ * geohash cover, and painting only reads the loaded metrics. The store is streamed once into an
+ * {@link AggregatePyramid}, which then gives the metric of any geohash up to its depth in constant time; the metrics of
+ * the longer geohashes, which hold few entries, are summed from the store. The depth of the pyramid is the deepest one
+ * whose aggregates fit the memory budget, whatever the size of the store.
+ *
+ * The metrics of each cover are loaded into a new map, reusing the metrics of the painted cover, and the map replaces
+ * the painted one only once the cover is painted; the metrics loaded for a cover that is cancelled, superseded or
+ * failed are dropped with it, so the loaded metrics never outgrow the painted cover.
+ *
+ * @author agent
+ */
+class StoreMetrics implements Closeable {
+
+    /** The largest number of aggregates (geohash prefixes) kept in the pyramid */
+    private static final long MAX_PYRAMID_AGGREGATES = 2_000_000;
+
+    private final GeohashStore store;
+    /** The metrics of the painted geohashes which are not in the pyramid; replaced, never modified */
+    private volatile Map<Geohash, Integer> metrics = Collections.emptyMap();
+    private volatile AggregatePyramid pyramid;
+    private boolean pyramidBuilt;
+
+
+    /**
+     * Opens the given store.
+     *
+     * @param path - the store file
+     * @throws IOException if the file cannot be read, is not a store or has values shorter than an int
+     */
+    StoreMetrics(final Path path) throws IOException {
+        store = GeohashStore.open(path);
+        if (store.valueWidth() < Integer.BYTES) {
+            store.close();
+            throw new IOException("The values of " + path + " are shorter than an int");
+        }
+    }
+
+    /**
+     * Loads the metrics of the given geohashes, reusing the ones already painted. Called off the event dispatch thread,
+     * one cover at a time.
+     *
+     * @param geohashes - the geohashes to be painted
+     * @return the metrics of the geohashes which are not in the pyramid, to be passed to {@link #show(Map)}, or null if
+     * the loading was interrupted
+     */
+    Map<Geohash, Integer> load(final Collection<Geohash> geohashes) {
+        if (!pyramidBuilt && store.size() > 0) {
+            pyramid = buildPyramid();
+            pyramidBuilt = true;
+        }
+        final Map<Geohash, Integer> painted = metrics;
+        final Map<Geohash, Integer> loaded = new HashMap<>();
+        for (final Geohash geohash : geohashes) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            if (!inPyramid(geohash)) {
+                final Integer metric = painted.get(geohash);
+                loaded.put(geohash, metric != null ? metric : sum(geohash));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Replaces the painted metrics with the given ones, once their cover is painted. Called on the event dispatch
+     * thread.
+     *
+     * @param loaded - the metrics returned by {@link #load(Collection)}
+     */
+    void show(final Map<Geohash, Integer> loaded) {
+        metrics = loaded;
+    }
+
+    /**
+     * Returns the loaded metric of the given geohash.
+     *
+     * @param geohash - a painted geohash
+     * @return the metric, or 0 if it is not loaded yet
+     */
+    int metric(final Geohash geohash) {
+        return inPyramid(geohash) ? clamp(pyramid.sum(geohash.toLong())) : metrics.getOrDefault(geohash, 0);
+    }
+
+    private boolean inPyramid(final Geohash geohash) {
+        return pyramid != null && geohash.code().length() <= pyramid.depth();
+    }
+
+    /*
+     * Builds the pyramid of the whole store, streaming it once to choose the depth and once to aggregate the values.
+     */
+    private AggregatePyramid buildPyramid() {
+        final int depth = AggregatePyramid.depthFor(store.size(), store::key, MAX_PYRAMID_AGGREGATES);
+        return depth == 0 ? null
+                : AggregatePyramid.build(store.size(), store::key, index -> store.getInt(index, 0), depth);
+    }
+
+    private int sum(final Geohash geohash) {
+        final GeohashStore.Range range = store.prefixRange(geohash.toLong());
+        long sum = 0;
+        for (long index = range.from(); index < range.to(); index++) {
+            sum += store.getInt(index, 0);
+        }
+        return clamp(sum);
+    }
+
+    private static int clamp(final double sum) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, sum));
+    }
+
+    @Override
+    public void close() throws IOException {
+        metrics = Collections.emptyMap();
+        store.close();
+    }
+}
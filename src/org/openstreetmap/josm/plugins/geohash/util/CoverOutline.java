@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import javax.swing.SwingUtilities;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.gui.MapView;
+import org.openstreetmap.josm.plugins.geohash.core.Geohash;
+import org.openstreetmap.josm.plugins.geohash.core.GeohashSets;
+import org.openstreetmap.josm.tools.Logging;
+import net.exfidefortis.map.BoundingBox;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+
+
+/**
+ * The outline of a selection cover, built for the part of the cover lying around the map view. A cover may hold
+ * millions of geohashes, so only the geohashes sharing area with the view, extended by half its size on each side, are
+ * outlined, and the outline is built off the event dispatch thread. When the view holds too many geohashes to be told
+ * apart, coarser geohashes are outlined instead.
+ *
+ * As for the {@link GridTiles}, the outline coordinates are computed from the projection and the scale of the map view,
+ * relative to the location (0, 0), so the outline stays valid while the map view is panned; it is rebuilt when the
+ * view leaves the outlined area or when the scale or the projection change.
+ *
+ * @author agent
+ */
+final class CoverOutline {
+
+    /** Upper limit for the number of outlined geohashes */
+    private static final int MAX_OUTLINED_GEOHASHES = 20_000;
+
+    /** The location the outline coordinates are relative to */
+    private static final LatLon ORIGIN = new LatLon(0, 0);
+
+    private final Runnable outlineBuilt;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "geohash-cover-outline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The built outline and what it was built for; used on the EDT only */
+    private Request built;
+    private Path2D outline;
+
+    /** The newest requested outline; the older requests are not built */
+    private Request requested;
+    private volatile long generation;
+
+
+    /**
+     * Builds an empty outline.
+     *
+     * @param outlineBuilt - called on the event dispatch thread when an outline was built
+     */
+    CoverOutline(final Runnable outlineBuilt) {
+        this.outlineBuilt = outlineBuilt;
+    }
+
+    /**
+     * Draws the outline of the given cover over the map view, if it is built, and requests it to be built otherwise.
+     *
+     * @param graphics - the JOSM graphics
+     * @param mapView - the current mapView
+     * @param cover - the sorted packed geohashes of the cover, none covering another
+     * @param precision - the length of the geohashes along the boundary of the covered areas
+     * @param compact - if false, the geohashes shorter than the precision are outlined as their descendants with that
+     * precision
+     * @param color - the color of the outline
+     */
+    void draw(final Graphics2D graphics, final MapView mapView, final long[] cover, final int precision,
+            final boolean compact, final Color color) {
+        final Projection projection = mapView.getProjection();
+        final Request request = new Request(cover, precision, compact, projection, mapView.getScale(),
+                Convert.convertBoundsToBoundingBox(projection.getLatLonBoundsBox(mapView.getProjectionBounds())));
+        if (!request.isServedBy(requested)) {
+            request(request);
+        }
+        if (outline != null && request.sameOutline(built)) {
+            final Point2D origin = mapView.getPoint2D(ORIGIN);
+            final AffineTransform transform = graphics.getTransform();
+            graphics.translate(origin.getX(), origin.getY());
+            graphics.setStroke(PaintHandler.STROKE);
+            graphics.setColor(color);
+            graphics.draw(outline);
+            graphics.setTransform(transform);
+        }
+    }
+
+    /**
+     * Discards the outline and stops building.
+     */
+    void dispose() {
+        executor.shutdownNow();
+        generation++;
+        requested = null;
+        built = null;
+        outline = null;
+    }
+
+    private void request(final Request request) {
+        requested = request;
+        final long requestGeneration = ++generation;
+        executor.execute(() -> {
+            try {
+                if (requestGeneration == generation) {
+                    final Path2D path = build(request);
+                    SwingUtilities.invokeLater(() -> outlineBuilt(requestGeneration, request, path));
+                }
+            } catch (final RuntimeException e) {
+                Logging.error(e);
+            }
+        });
+    }
+
+    private void outlineBuilt(final long requestGeneration, final Request request, final Path2D path) {
+        if (requestGeneration == generation) {
+            built = request;
+            outline = path;
+            outlineBuilt.run();
+        }
+    }
+
+    /*
+     * Builds the outline of the geohashes of the cover sharing area with the requested area, in the coordinates
+     * relative to the origin.
+     */
+    private static Path2D build(final Request request) {
+        final int fittingPrecision = GeohashSets.precisionFor(request.area, MAX_OUTLINED_GEOHASHES);
+        final long[] outlined;
+        if (!request.compact) {
+            outlined = GeohashSets.resample(request.cover, Math.min(request.precision, fittingPrecision),
+                    request.area);
+        } else if (request.precision <= fittingPrecision) {
+            outlined = GeohashSets.intersecting(request.cover, request.area);
+        } else {
+            outlined = GeohashSets.compact(GeohashSets.resample(request.cover, fittingPrecision, request.area));
+        }
+        final List<Geohash> geohashes = new ArrayList<>(outlined.length);
+        for (final long geohash : outlined) {
+            geohashes.add(new Geohash(geohash));
+        }
+        final EastNorth origin = request.projection.latlon2eastNorth(ORIGIN);
+        final Function<LatLon, Point2D> toOutline = location -> {
+            final EastNorth eastNorth = request.projection.latlon2eastNorth(location);
+            return new Point2D.Double((eastNorth.east() - origin.east()) / request.scale,
+                    (origin.north() - eastNorth.north()) / request.scale);
+        };
+        return GridOutline.build(geohashes, toOutline);
+    }
+
+
+    /**
+     * What an outline is built for: a cover, drawn in the map view with a given projection and scale, and the area
+     * around the map view whose geohashes are outlined.
+     */
+    private static final class Request {
+
+        private final long[] cover;
+        private final int precision;
+        private final boolean compact;
+        private final Projection projection;
+        private final double scale;
+        private final BoundingBox view;
+        private final BoundingBox area;
+
+        private Request(final long[] cover, final int precision, final boolean compact, final Projection projection,
+                final double scale, final BoundingBox view) {
+            this.cover = cover;
+            this.precision = precision;
+            this.compact = compact;
+            this.projection = projection;
+            this.scale = scale;
+            this.view = view;
+            final double width = view.widthInDegrees();
+            final double height = view.heightInDegrees();
+            area = BoundingBox.forDegrees(
+                    Math.min(Latitude.MAXIMUM_DEGREE_VALUE, view.north().asDegrees() + height / 2),
+                    Math.max(Latitude.MINIMUM_DEGREE_VALUE, view.south().asDegrees() - height / 2),
+                    Math.min(Longitude.MAXIMUM_DEGREE_VALUE, view.east().asDegrees() + width / 2),
+                    Math.max(Longitude.MINIMUM_DEGREE_VALUE, view.west().asDegrees() - width / 2));
+        }
+
+        /*
+         * Checks if the other request outlines the same cover in the same coordinates, whatever its area.
+         */
+        private boolean sameOutline(final Request other) {
+            return other != null && cover == other.cover && precision == other.precision && compact == other.compact
+                    && projection == other.projection && scale == other.scale;
+        }
+
+        /*
+         * Checks if the outline of the other request covers the map view of this one.
+         */
+        private boolean isServedBy(final Request other) {
+            return sameOutline(other) && other.area.contains(view);
+        }
+    }
+}
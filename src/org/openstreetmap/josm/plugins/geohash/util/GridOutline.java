@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.util;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Function;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.gui.MapView;
+import org.openstreetmap.josm.plugins.geohash.core.Geohash;
+import net.exfidefortis.map.BoundingBox;
+
+
+/**
+ * Builds the outline of a set of geohashes as a single path. Adjacent geohashes share edges, so the edges are merged
+ * into de-duplicated horizontal (constant latitude) and vertical (constant longitude) lines, each line being drawn only
+ * once through all the geohash corners lying on it.
+ *
+ * @author agent
+ */
+final class GridOutline {
+
+    private static final int CONSTANT = 0;
+    private static final int FROM = 1;
+    private static final int TO = 2;
+
+    private static final Comparator<double[]> EDGE_ORDER =
+            Comparator.<double[]>comparingDouble(edge -> edge[CONSTANT]).thenComparingDouble(edge -> edge[FROM]);
+
+    private GridOutline() {}
+
+
+    /**
+     * Builds the outline path of the given geohashes in map view coordinates.
+     *
+     * @param geohashes - the geohashes to be outlined
+     * @param mapView - the current JOSM mapView
+     * @param offset - an offset subtracted from the map view coordinates
+     * @return the outline path
+     */
+    static Path2D build(final Collection<Geohash> geohashes, final MapView mapView, final Point2D offset) {
+        return build(geohashes, location -> {
+            final Point2D point = mapView.getPoint2D(location);
+            return new Point2D.Double(point.getX() - offset.getX(), point.getY() - offset.getY());
+        });
+    }
+
+    /**
+     * Builds the outline path of the given geohashes in the coordinates given by the given function, e.g. the
+     * coordinates of an image rendered off the event dispatch thread.
+     *
+     * @param geohashes - the geohashes to be outlined
+     * @param toPoint - gives the path coordinates of a location
+     * @return the outline path
+     */
+    static Path2D build(final Collection<Geohash> geohashes, final Function<LatLon, Point2D> toPoint) {
+        final double[][] horizontalEdges = new double[geohashes.size() * 2][];
+        final double[][] verticalEdges = new double[geohashes.size() * 2][];
+        int index = 0;
+        for (final Geohash geohash : geohashes) {
+            final BoundingBox bounds = geohash.bounds();
+            final double north = Convert.fitLatitudeInBounds(bounds.north().asDegrees());
+            final double south = Convert.fitLatitudeInBounds(bounds.south().asDegrees());
+            final double west = bounds.west().asDegrees();
+            final double east = bounds.east().asDegrees();
+            horizontalEdges[index] = new double[] { north, west, east };
+            horizontalEdges[index + 1] = new double[] { south, west, east };
+            verticalEdges[index] = new double[] { west, south, north };
+            verticalEdges[index + 1] = new double[] { east, south, north };
+            index += 2;
+        }
+        final Path2D path = new Path2D.Double();
+        appendLines(path, horizontalEdges, true, toPoint);
+        appendLines(path, verticalEdges, false, toPoint);
+        return path;
+    }
+
+    /*
+     * Sorts the edges by their constant coordinate and start, then merges the overlapping or touching edges lying on
+     * the same line into a single polyline passing through all their end points.
+     */
+    private static void appendLines(final Path2D path, final double[][] edges, final boolean horizontal,
+            final Function<LatLon, Point2D> toPoint) {
+        Arrays.sort(edges, EDGE_ORDER);
+        final double[] vertices = new double[edges.length * 2];
+        int start = 0;
+        while (start < edges.length) {
+            final double constant = edges[start][CONSTANT];
+            double end = edges[start][TO];
+            int vertexCount = 0;
+            vertices[vertexCount++] = edges[start][FROM];
+            vertices[vertexCount++] = end;
+            int next = start + 1;
+            while (next < edges.length && edges[next][CONSTANT] == constant && edges[next][FROM] <= end) {
+                vertices[vertexCount++] = edges[next][FROM];
+                vertices[vertexCount++] = edges[next][TO];
+                end = Math.max(end, edges[next][TO]);
+                next++;
+            }
+            Arrays.sort(vertices, 0, vertexCount);
+            double previous = Double.NaN;
+            for (int i = 0; i < vertexCount; i++) {
+                if (vertices[i] != previous) {
+                    final Point2D point = toPoint.apply(horizontal ? new LatLon(constant, vertices[i])
+                            : new LatLon(vertices[i], constant));
+                    if (i == 0) {
+                        path.moveTo(point.getX(), point.getY());
+                    } else {
+                        path.lineTo(point.getX(), point.getY());
+                    }
+                    previous = vertices[i];
+                }
+            }
+            start = next;
+        }
+    }
+}
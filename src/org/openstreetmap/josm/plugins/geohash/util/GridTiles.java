@@ -0,0 +1,296 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import javax.swing.SwingUtilities;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.gui.MapView;
+import org.openstreetmap.josm.plugins.geohash.core.Direction;
+import org.openstreetmap.josm.plugins.geohash.core.Geohash;
+import org.openstreetmap.josm.plugins.geohash.core.Instrumentation;
+import org.openstreetmap.josm.plugins.geohash.core.LongCodec;
+import net.exfidefortis.map.BoundingBox;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+import net.exfidefortis.map.Point;
+
+
+/**
+ * Cache of the geohash grid rendered into image tiles. At a given map view scale the grid of a given geohash length
+ * does not change, so it is rendered once into 256 pixel tiles which are then only copied to the screen, whatever the
+ * panning. The tiles are anchored on the location (0, 0), as the slippy map tiles are, so with the Mercator projection
+ * at the scale of a slippy map zoom level they match the slippy map tiles.
+ *
+ * The tiles are rendered off the event dispatch thread, from the projection and the scale of the map view, and kept in
+ * least recently used order within a memory budget; the tiles of the previously seen scales are kept as well, so
+ * zooming back shows them at once.
+ *
+ * @author agent
+ */
+final class GridTiles {
+
+    /** The side of a tile, in pixels */
+    static final int TILE_SIZE = 256;
+
+    /** The memory budget of the cached tiles, in bytes */
+    private static final long MAX_CACHE_BYTES = 64L << 20;
+    private static final long TILE_BYTES = (long) TILE_SIZE * TILE_SIZE * Integer.BYTES;
+
+    /** The margin, in pixels, around a tile in which the geohashes whose outline or label may reach the tile lie */
+    private static final int MARGIN = 128;
+
+    /** The location the tiles are anchored on */
+    private static final LatLon ORIGIN = new LatLon(0, 0);
+
+    private final Runnable tileRendered;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "geohash-tiles");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The rendered tiles, in least recently used order, and the tiles being rendered; used on the EDT only */
+    private final Map<TileKey, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<TileKey> pendingTiles = new HashSet<>();
+    private Projection tileProjection;
+
+    /** Lays out and places the geohash codes; used on the rendering thread only */
+    private final Labels labels = new Labels();
+
+    /** Incremented when the painted grid changes; the pending tiles of older grids are not rendered */
+    private volatile long generation;
+    private TileKey lastKey;
+
+
+    /**
+     * Builds an empty cache.
+     *
+     * @param tileRendered - called on the event dispatch thread when a tile was rendered
+     */
+    GridTiles(final Runnable tileRendered) {
+        this.tileRendered = tileRendered;
+    }
+
+    /**
+     * Draws the cached tiles of the grid of geohashes with the given length over the map view, and requests the
+     * missing tiles to be rendered.
+     *
+     * @param graphics - the JOSM graphics
+     * @param mapView - the current mapView
+     * @param precision - the length of the geohashes
+     * @param color - the color of the grid
+     * @return the area of the map view not covered by a cached tile, empty if the whole view was drawn
+     */
+    Path2D draw(final Graphics2D graphics, final MapView mapView, final int precision, final Color color) {
+        final Projection projection = mapView.getProjection();
+        if (projection != tileProjection) {
+            tiles.clear();
+            tileProjection = projection;
+        }
+        final double scale = mapView.getScale();
+        final Point2D origin = mapView.getPoint2D(ORIGIN);
+        final long originX = Math.round(origin.getX());
+        final long originY = Math.round(origin.getY());
+        final long firstColumn = Math.floorDiv(-originX, TILE_SIZE);
+        final long lastColumn = Math.floorDiv(mapView.getWidth() - originX, TILE_SIZE);
+        final long firstRow = Math.floorDiv(-originY, TILE_SIZE);
+        final long lastRow = Math.floorDiv(mapView.getHeight() - originY, TILE_SIZE);
+        final Path2D missing = new Path2D.Double();
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                final TileKey key = new TileKey(scale, precision, color.getRGB(), column, row);
+                if (!key.sameGrid(lastKey)) {
+                    generation++;
+                    lastKey = key;
+                }
+                final int x = (int) (originX + column * TILE_SIZE);
+                final int y = (int) (originY + row * TILE_SIZE);
+                final BufferedImage tile = tiles.get(key);
+                if (tile != null) {
+                    Instrumentation.TILE_CACHE_HITS.increment();
+                    graphics.drawImage(tile, x, y, null);
+                } else {
+                    Instrumentation.TILE_CACHE_MISSES.increment();
+                    request(key, projection);
+                    missing.append(new Rectangle(x, y, TILE_SIZE, TILE_SIZE), false);
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Discards the cached tiles and stops rendering.
+     */
+    void dispose() {
+        executor.shutdownNow();
+        tiles.clear();
+        pendingTiles.clear();
+    }
+
+    private void request(final TileKey key, final Projection projection) {
+        if (pendingTiles.add(key)) {
+            final long tileGeneration = generation;
+            executor.execute(() -> {
+                final BufferedImage tile = tileGeneration == generation ? render(key, projection) : null;
+                SwingUtilities.invokeLater(() -> tileRendered(key, projection, tile));
+            });
+        }
+    }
+
+    private void tileRendered(final TileKey key, final Projection projection, final BufferedImage tile) {
+        pendingTiles.remove(key);
+        if (tile != null && projection == tileProjection) {
+            tiles.put(key, tile);
+            final Iterator<BufferedImage> eldest = tiles.values().iterator();
+            while (tiles.size() * TILE_BYTES > MAX_CACHE_BYTES) {
+                eldest.next();
+                eldest.remove();
+            }
+            tileRendered.run();
+        }
+    }
+
+    /*
+     * Renders the given tile. The map view coordinates are computed from the projection and the scale alone, the tile
+     * coordinates being the map view coordinates relative to the origin, so the map view itself is not used.
+     */
+    private BufferedImage render(final TileKey key, final Projection projection) {
+        final long start = Instrumentation.start();
+        final EastNorth origin = projection.latlon2eastNorth(ORIGIN);
+        final double tileX = key.column * TILE_SIZE;
+        final double tileY = key.row * TILE_SIZE;
+        final Function<LatLon, Point2D> toTile = location -> {
+            final EastNorth eastNorth = projection.latlon2eastNorth(location);
+            return new Point2D.Double((eastNorth.east() - origin.east()) / key.scale - tileX,
+                    (origin.north() - eastNorth.north()) / key.scale - tileY);
+        };
+        double south = Double.POSITIVE_INFINITY;
+        double west = Double.POSITIVE_INFINITY;
+        double north = Double.NEGATIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 4; corner++) {
+            final double x = tileX + (corner % 2 == 0 ? -MARGIN : TILE_SIZE + MARGIN);
+            final double y = tileY + (corner < 2 ? -MARGIN : TILE_SIZE + MARGIN);
+            final LatLon location = projection.eastNorth2latlon(
+                    new EastNorth(origin.east() + x * key.scale, origin.north() - y * key.scale));
+            south = Math.min(south, location.lat());
+            west = Math.min(west, location.lon());
+            north = Math.max(north, location.lat());
+            east = Math.max(east, location.lon());
+        }
+        final BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        final Collection<Geohash> geohashes = geohashes(south, west, north, east, key.precision);
+        if (!geohashes.isEmpty()) {
+            final Graphics2D graphics = tile.createGraphics();
+            graphics.setStroke(PaintHandler.STROKE);
+            graphics.setColor(new Color(key.color, true));
+            graphics.draw(GridOutline.build(geohashes, toTile));
+            labels.begin(graphics);
+            for (final Geohash geohash : geohashes) {
+                final BoundingBox bounds = geohash.bounds();
+                labels.place(geohash.code(), toTile.apply(new LatLon(Convert.fitLatitudeInBounds(
+                        bounds.north().asDegrees()), bounds.west().asDegrees())), toTile.apply(new LatLon(
+                        Convert.fitLatitudeInBounds(bounds.south().asDegrees()), bounds.east().asDegrees())));
+            }
+            labels.draw(graphics);
+            graphics.dispose();
+        }
+        Instrumentation.stop(Instrumentation.RENDER_TILE, start);
+        return tile;
+    }
+
+    /*
+     * Returns the geohashes with the given length sharing area with the given bounds, walking from the south western
+     * geohash to the east and to the north.
+     */
+    private static Collection<Geohash> geohashes(final double south, final double west, final double north,
+            final double east, final int precision) {
+        final Collection<Geohash> geohashes = new ArrayList<>();
+        final double clampedSouth = Math.max(Latitude.MINIMUM_DEGREE_VALUE, south);
+        final double clampedNorth = Math.min(Latitude.MAXIMUM_DEGREE_VALUE, north);
+        final double clampedWest = Math.max(Longitude.MINIMUM_DEGREE_VALUE, west);
+        final double clampedEast = Math.min(Longitude.MAXIMUM_DEGREE_VALUE, east);
+        if (clampedSouth >= clampedNorth || clampedWest >= clampedEast) {
+            return geohashes;
+        }
+        Geohash rowStart = new Geohash(new Point(Longitude.forDegrees(clampedWest),
+                Latitude.forDegrees(clampedSouth)), precision);
+        final long columnCount = (long) Math.ceil(
+                (clampedEast - rowStart.bounds().west().asDegrees()) / LongCodec.width(precision));
+        while (rowStart != null && rowStart.bounds().south().asDegrees() < clampedNorth) {
+            Geohash geohash = rowStart;
+            for (long column = 0; column < columnCount && geohash != null; column++) {
+                geohashes.add(geohash);
+                geohash = geohash.neighbor(Direction.EAST);
+            }
+            rowStart = rowStart.neighbor(Direction.NORTH);
+        }
+        return geohashes;
+    }
+
+
+    /**
+     * Identifies a tile: the grid it shows and its position, in tiles from the origin.
+     */
+    private static final class TileKey {
+
+        private final double scale;
+        private final int precision;
+        private final int color;
+        private final long column;
+        private final long row;
+
+        private TileKey(final double scale, final int precision, final int color, final long column, final long row) {
+            this.scale = scale;
+            this.precision = precision;
+            this.color = color;
+            this.column = column;
+            this.row = row;
+        }
+
+        private boolean sameGrid(final TileKey other) {
+            return other != null && scale == other.scale && precision == other.precision && color == other.color;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final TileKey other = (TileKey) obj;
+            return sameGrid(other) && column == other.column && row == other.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scale, precision, color, column, row);
+        }
+    }
+}
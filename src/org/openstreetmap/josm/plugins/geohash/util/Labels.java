@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.util;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Lays out and draws the geohash codes. The glyphs of each code are laid out once and cached, together with their
+ * bounds, for as long as the font rendering context does not change. A frame places its labels first, skipping the
+ * labels which do not fit inside their geohash or which overlap a label placed before, then draws the placed labels in
+ * a single pass.
+ *
+ * An instance is used by a single thread.
+ *
+ * @author agent
+ */
+final class Labels {
+
+    /** Upper limit for the cached glyph layouts, beyond which the least recently used ones are dropped */
+    private static final int MAX_CACHED_LABELS = 4096;
+
+    /** The side, in pixels, of the squares into which the placed labels are bucketed for the overlap checks */
+    private static final int BUCKET_SIZE = 64;
+
+    private final Map<String, Label> cache = new LinkedHashMap<String, Label>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 4316236517263826094L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Label> eldest) {
+            return size() > MAX_CACHED_LABELS;
+        }
+    };
+    private FontRenderContext fontRenderContext;
+    private FontMetrics fontMetrics;
+
+    /** The labels placed in the current frame, their positions (baseline start) and their bounds by bucket */
+    private final List<Label> placed = new ArrayList<>();
+    private final List<Point> positions = new ArrayList<>();
+    private final Map<Long, List<Rectangle2D>> buckets = new HashMap<>();
+
+
+    /**
+     * Starts placing the labels of a frame drawn on the given graphics.
+     *
+     * @param graphics - the graphics on which the labels will be drawn
+     */
+    void begin(final Graphics2D graphics) {
+        final FontRenderContext context = graphics.getFontRenderContext();
+        if (!context.equals(fontRenderContext)) {
+            cache.clear();
+            fontRenderContext = context;
+            fontMetrics = graphics.getFontMetrics(PaintHandler.FONT);
+        }
+        placed.clear();
+        positions.clear();
+        buckets.clear();
+    }
+
+    /**
+     * Places the code of a geohash near its north western corner, unless the label does not fit inside the geohash
+     * or overlaps a label placed before.
+     *
+     * @param code - the geohash code
+     * @param northWest - the position of the north western corner of the geohash
+     * @param southEast - the position of the south eastern corner of the geohash
+     * @return true if the label was placed, false if it was skipped
+     */
+    boolean place(final String code, final Point2D northWest, final Point2D southEast) {
+        final Label label = cache.computeIfAbsent(code, this::layout);
+        final Point position = PaintHandler.textPoint(northWest, fontMetrics);
+        final Rectangle2D bounds = new Rectangle2D.Double(position.x + label.bounds.getX(),
+                position.y + label.bounds.getY(), label.bounds.getWidth(), label.bounds.getHeight());
+        if (!new Rectangle2D.Double(northWest.getX(), northWest.getY(),
+                southEast.getX() - northWest.getX(), southEast.getY() - northWest.getY()).contains(bounds)) {
+            return false;
+        }
+        final long firstColumn = Math.floorDiv((long) bounds.getMinX(), BUCKET_SIZE);
+        final long lastColumn = Math.floorDiv((long) bounds.getMaxX(), BUCKET_SIZE);
+        final long firstRow = Math.floorDiv((long) bounds.getMinY(), BUCKET_SIZE);
+        final long lastRow = Math.floorDiv((long) bounds.getMaxY(), BUCKET_SIZE);
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                for (final Rectangle2D other : buckets.getOrDefault(bucket(row, column), List.of())) {
+                    if (other.intersects(bounds)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                buckets.computeIfAbsent(bucket(row, column), key -> new ArrayList<>()).add(bounds);
+            }
+        }
+        placed.add(label);
+        positions.add(position);
+        return true;
+    }
+
+    /**
+     * Draws the labels placed since {@link #begin(Graphics2D)}, with the current color of the graphics.
+     *
+     * @param graphics - the graphics given to {@link #begin(Graphics2D)}
+     */
+    void draw(final Graphics2D graphics) {
+        for (int i = 0; i < placed.size(); i++) {
+            graphics.drawGlyphVector(placed.get(i).glyphs, positions.get(i).x, positions.get(i).y);
+        }
+        placed.clear();
+        positions.clear();
+        buckets.clear();
+    }
+
+    private Label layout(final String code) {
+        final GlyphVector glyphs = PaintHandler.FONT.createGlyphVector(fontRenderContext, code);
+        return new Label(glyphs, glyphs.getVisualBounds());
+    }
+
+    private static long bucket(final long row, final long column) {
+        return (row << Integer.SIZE) ^ (column & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * The laid out glyphs of a code and their bounds, relative to the baseline start.
+     */
+    private static final class Label {
+
+        private final GlyphVector glyphs;
+        private final Rectangle2D bounds;
+
+        private Label(final GlyphVector glyphs, final Rectangle2D bounds) {
+            this.glyphs = glyphs;
+            this.bounds = bounds;
+        }
+    }
+}
@@ -9,19 +9,26 @@ package org.openstreetmap.josm.plugins.geohash.util;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Point;
-import java.awt.geom.GeneralPath;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.layer.ImageryLayer;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.plugins.geohash.core.Geohash;
-import com.grab.josm.common.gui.PaintManager;
-import net.exfidefortis.map.Latitude;
-import net.exfidefortis.map.Longitude;
+import org.openstreetmap.josm.plugins.geohash.core.Instrumentation;
 
 
 /**
@@ -37,6 +44,8 @@ public class PaintHandler {
     private static final int STROKE_WIDTH_2 = 2;
     private static final int FONT_SIZE = 13;
     private static final String FONT_NAME = "Verdana";
+    static final BasicStroke STROKE = new BasicStroke(STROKE_WIDTH_2);
+    static final Font FONT = new Font(FONT_NAME, Font.BOLD, FONT_SIZE);
 
     private static final String IMAGERY = "imagery";
     private static final String MAPBOX_SATELLITE = "Mapbox Satellite";
@@ -44,34 +53,242 @@ public class PaintHandler {
     private static final Color LINE_COLOR_LIGHT_BACKGROUND = new Color(0, 0, 255);
     private static final Color LINE_COLOR_DARK_BACKGROUND = new Color(51, 255, 255);
     private static final Color SELECTED_LINE_COLOR = new Color(255, 0, 0);
+
+    /** Fill colors for the density levels, from the sparsest to the densest geohashes */
+    private static final Color[] DENSITY_COLORS = new Color[16];
+    private static final int MIN_DENSITY_ALPHA = 24;
+    private static final int MAX_DENSITY_ALPHA = 168;
+
+    static {
+        for (int level = 0; level < DENSITY_COLORS.length; level++) {
+            final int alpha =
+                    MIN_DENSITY_ALPHA + (MAX_DENSITY_ALPHA - MIN_DENSITY_ALPHA) * level / (DENSITY_COLORS.length - 1);
+            DENSITY_COLORS[level] = new Color(255, 69, 0, alpha);
+        }
+    }
+
+    /** Fixed location whose screen position tells how much the map view was translated since the cache was built */
+    private static final LatLon REFERENCE = new LatLon(0, 0);
+
+    /** Upper limit for the cached geometries, beyond which the cache is rebuilt from scratch */
+    private static final int MAX_CACHED_GEOMETRIES = 8192;
+
     private Color lineColor;
 
+    /*
+     * Screen geometry of the painted geohashes. It stays valid as long as the map view scale and projection do not
+     * change; a pure translation of the map view is applied as an offset when drawing.
+     */
+    private final Map<Geohash, GeohashGeometry> geometryCache = new HashMap<>();
+    private double cachedScale;
+    private Projection cachedProjection;
+    private Point2D cachedReference;
+
+    /** The merged outline of the last geohashes drawn as a grid, in the same coordinates as the geometry cache */
+    private Collection<Geohash> gridGeohashes;
+    private Path2D gridOutline;
+
+    /** Lays out and places the geohash codes drawn on the event dispatch thread */
+    private final Labels labels = new Labels();
+
+    /** The grid rendered into image tiles, for the map views showing whole grids */
+    private final GridTiles gridTiles;
+
+    /** The outline of the selection cover around the map view, built in the background */
+    private final CoverOutline coverOutline;
+
 
     public PaintHandler() {
+        this(() -> {});
+    }
+
+    /**
+     * Builds a paint handler whose grid tiles and selection cover outlines are rendered in the background.
+     *
+     * @param tileRendered - called on the event dispatch thread when a grid tile or a cover outline was rendered, e.g.
+     * to repaint
+     */
+    public PaintHandler(final Runnable tileRendered) {
         lineColor = LINE_COLOR_DARK_BACKGROUND;
+        gridTiles = new GridTiles(tileRendered);
+        coverOutline = new CoverOutline(tileRendered);
     }
 
     /**
-     * Method for drawing a geohash on map. This includes the rectangle (geohash area) and the text (geohash code).
+     * Method for drawing geohashes on map as a grid. The outlines of all the geohashes are merged into a single path
+     * in which the edges shared by adjacent geohashes appear only once, and which is stroked with a single call. The
+     * geohash codes are drawn afterwards, in a separate pass.
      *
      * @param graphics - the JOSM graphics
      * @param mapView - the current mapView
-     * @param geohash - the geohash to be drawn
+     * @param geohashes - the geohashes to be drawn
      */
-    public void drawGeohash(final Graphics2D graphics, final MapView mapView, final Geohash geohash,
-            final boolean isSelected) {
-        final GeneralPath path = getGeohashPath(geohash, mapView);
-        if (isSelected) {
-            graphics.setColor(SELECTED_LINE_COLOR);
-        } else {
-            graphics.setColor(lineColor);
+    public void drawGrid(final Graphics2D graphics, final MapView mapView, final Collection<Geohash> geohashes) {
+        final long start = Instrumentation.start();
+        final Point2D offset = validateGeometryCache(mapView);
+        if (gridOutline == null || gridGeohashes != geohashes) {
+            gridOutline = GridOutline.build(geohashes, mapView, offset);
+            gridGeohashes = geohashes;
+        }
+        final AffineTransform transform = graphics.getTransform();
+        graphics.translate(offset.getX(), offset.getY());
+        graphics.setStroke(STROKE);
+        graphics.setColor(lineColor);
+        graphics.draw(gridOutline);
+        drawLabels(graphics, mapView, geohashes, offset);
+        graphics.setTransform(transform);
+        Instrumentation.stop(Instrumentation.DRAW_GRID, start);
+    }
+
+    /**
+     * Method for drawing the geohash grid covering the whole map view from cached image tiles. The grid is the same
+     * as the one drawn by {@link #drawGrid(Graphics2D, MapView, Collection)}, but panning only copies the tiles to the
+     * screen. The tiles which are not rendered yet are requested, and the grid is drawn from the geohashes over them
+     * meanwhile.
+     *
+     * @param graphics - the JOSM graphics
+     * @param mapView - the current mapView
+     * @param geohashes - the geohashes covering the map view, all of the same length
+     */
+    public void drawGridTiles(final Graphics2D graphics, final MapView mapView,
+            final Collection<Geohash> geohashes) {
+        final int precision = geohashes.isEmpty() ? 0 : geohashes.iterator().next().code().length();
+        if (precision == 0) {
+            drawGrid(graphics, mapView, geohashes);
+            return;
+        }
+        final Path2D missing = gridTiles.draw(graphics, mapView, precision, lineColor);
+        if (!missing.getBounds().isEmpty()) {
+            final Shape clip = graphics.getClip();
+            graphics.clip(missing);
+            drawGrid(graphics, mapView, geohashes);
+            graphics.setClip(clip);
+        }
+    }
+
+    /**
+     * Stops rendering grid tiles and cover outlines, and discards the cached ones.
+     */
+    public void dispose() {
+        gridTiles.dispose();
+        coverOutline.dispose();
+    }
+
+    /**
+     * Method for drawing the geohashes covering the selected areas. As for the grid, the outlines of the geohashes are
+     * merged into a single path; the geohash codes are not drawn, since the cover may hold many small geohashes. Only
+     * the geohashes around the map view are outlined, in the background, and nothing is drawn until their outline is
+     * built.
+     *
+     * @param graphics - the JOSM graphics
+     * @param mapView - the current mapView
+     * @param cover - the sorted packed geohashes of the cover, none covering another
+     * @param precision - the length of the geohashes along the boundary of the covered areas
+     * @param compact - if false, the geohashes shorter than the precision are drawn as their descendants with that
+     * precision
+     */
+    public void drawCover(final Graphics2D graphics, final MapView mapView, final long[] cover, final int precision,
+            final boolean compact) {
+        coverOutline.draw(graphics, mapView, cover, precision, compact, SELECTED_LINE_COLOR);
+    }
+
+    /**
+     * Method for filling geohashes on map according to their density. The fill opacity grows with the logarithm of the
+     * geohash count, relative to the largest count among the given geohashes; geohashes with a count of 0 are not
+     * filled.
+     *
+     * @param graphics - the JOSM graphics
+     * @param mapView - the current mapView
+     * @param geohashes - the geohashes to be filled
+     * @param density - gives the count (e.g. the number of nodes) of a geohash
+     */
+    public void fillDensity(final Graphics2D graphics, final MapView mapView, final Collection<Geohash> geohashes,
+            final ToIntFunction<Geohash> density) {
+        final int[] counts = new int[geohashes.size()];
+        int maximum = 0;
+        int index = 0;
+        for (final Geohash geohash : geohashes) {
+            counts[index] = density.applyAsInt(geohash);
+            maximum = Math.max(maximum, counts[index]);
+            index++;
+        }
+        if (maximum == 0) {
+            return;
+        }
+        final Point2D offset = validateGeometryCache(mapView);
+        final AffineTransform transform = graphics.getTransform();
+        graphics.translate(offset.getX(), offset.getY());
+        final double scale = (DENSITY_COLORS.length - 1) / Math.log1p(maximum);
+        index = 0;
+        for (final Geohash geohash : geohashes) {
+            final int count = counts[index++];
+            if (count > 0) {
+                graphics.setColor(DENSITY_COLORS[(int) (Math.log1p(count) * scale)]);
+                graphics.fill(geometry(geohash, mapView, offset).path(geohash, mapView, offset));
+            }
+        }
+        graphics.setTransform(transform);
+    }
+
+    /*
+     * Draws the geohash codes in a single pass. The codes which do not fit inside their geohash are skipped, and so
+     * are the codes overlapping a code drawn before.
+     */
+    private void drawLabels(final Graphics2D graphics, final MapView mapView, final Collection<Geohash> geohashes,
+            final Point2D offset) {
+        graphics.setColor(lineColor);
+        labels.begin(graphics);
+        for (final Geohash geohash : geohashes) {
+            final GeohashGeometry geometry = geometry(geohash, mapView, offset);
+            labels.place(geohash.code(), geometry.northWest, geometry.southEast);
         }
-        graphics.setStroke(new BasicStroke(STROKE_WIDTH_2));
-        graphics.draw(path);
-        final Point textPoint = getTextPoint(geohash, mapView, geohash.code(), graphics);
-        PaintManager.drawText(graphics, geohash.code(), textPoint, new Font(FONT_NAME, Font.BOLD, FONT_SIZE),
-                lineColor);
+        labels.draw(graphics);
+    }
 
+    /**
+     * Discards the cached screen geometry of the given geohashes, e.g. because they are no longer visible.
+     *
+     * @param geohashes - the geohashes that are no longer painted
+     */
+    public void discard(final Collection<Geohash> geohashes) {
+        for (final Geohash geohash : geohashes) {
+            geometryCache.remove(geohash);
+        }
+    }
+
+    /**
+     * Checks the cached geometry against the current map view. If the scale or the projection changed, the cache is
+     * cleared. Otherwise the offset between the map view state the cache was built for and the current one is returned.
+     *
+     * @param mapView - the current JOSM mapView
+     * @return the offset to be applied to the cached geometry
+     */
+    private Point2D validateGeometryCache(final MapView mapView) {
+        final Point2D reference = mapView.getPoint2D(REFERENCE);
+        if (cachedReference == null || cachedScale != mapView.getScale()
+                || cachedProjection != mapView.getProjection() || geometryCache.size() > MAX_CACHED_GEOMETRIES) {
+            geometryCache.clear();
+            gridOutline = null;
+            cachedScale = mapView.getScale();
+            cachedProjection = mapView.getProjection();
+            cachedReference = reference;
+        }
+        return new Point2D.Double(reference.getX() - cachedReference.getX(),
+                reference.getY() - cachedReference.getY());
+    }
+
+    private GeohashGeometry geometry(final Geohash geohash, final MapView mapView, final Point2D offset) {
+        GeohashGeometry geometry = geometryCache.get(geohash);
+        if (geometry != null) {
+            Instrumentation.GEOMETRY_CACHE_HITS.increment();
+        } else {
+            Instrumentation.GEOMETRY_CACHE_MISSES.increment();
+            geometry = new GeohashGeometry(corner(geohash.bounds().north().asDegrees(),
+                    geohash.bounds().west().asDegrees(), mapView, offset),
+                    corner(geohash.bounds().south().asDegrees(), geohash.bounds().east().asDegrees(), mapView, offset));
+            geometryCache.put(geohash, geometry);
+        }
+        return geometry;
     }
 
     /**
@@ -79,38 +296,69 @@ public class PaintHandler {
      *
      * @param geohash - the geohash for which the calculation is made
      * @param mapView - the current JOSM mapView
+     * @param offset - the offset of the cached geometry, subtracted from the map view coordinates
      * @return geohashPath - the path to be drawn
      */
-    private GeneralPath getGeohashPath(final Geohash geohash, final MapView mapView) {
-        final Latitude north = geohash.bounds().north();
-        final Longitude west = geohash.bounds().west();
-        final Latitude south = geohash.bounds().south();
-        final Longitude east = geohash.bounds().east();
-
-        final LatLon northWest = new LatLon(Convert.fitLatitudeInBounds(north.asDegrees()), west.asDegrees());
-        final LatLon northEast = new LatLon(Convert.fitLatitudeInBounds(north.asDegrees()), east.asDegrees());
-        final LatLon southWest = new LatLon(Convert.fitLatitudeInBounds(south.asDegrees()), west.asDegrees());
-        final LatLon southEast = new LatLon(Convert.fitLatitudeInBounds(south.asDegrees()), east.asDegrees());
-
-        final GeneralPath path = new GeneralPath();
-        path.moveTo(mapView.getPoint(northWest).getX(), mapView.getPoint(northWest).getY());
-        path.lineTo(mapView.getPoint(southWest).getX(), mapView.getPoint(southWest).getY());
-        path.lineTo(mapView.getPoint(southEast).getX(), mapView.getPoint(southEast).getY());
-        path.lineTo(mapView.getPoint(northEast).getX(), mapView.getPoint(northEast).getY());
-        path.lineTo(mapView.getPoint(northWest).getX(), mapView.getPoint(northWest).getY());
+    private static Path2D getGeohashPath(final Geohash geohash, final MapView mapView, final Point2D offset) {
+        final double north = Convert.fitLatitudeInBounds(geohash.bounds().north().asDegrees());
+        final double west = geohash.bounds().west().asDegrees();
+        final double south = Convert.fitLatitudeInBounds(geohash.bounds().south().asDegrees());
+        final double east = geohash.bounds().east().asDegrees();
+
+        final Point2D northWest = mapView.getPoint2D(new LatLon(north, west));
+        final Point2D northEast = mapView.getPoint2D(new LatLon(north, east));
+        final Point2D southWest = mapView.getPoint2D(new LatLon(south, west));
+        final Point2D southEast = mapView.getPoint2D(new LatLon(south, east));
 
+        final Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, 5);
+        path.moveTo(northWest.getX() - offset.getX(), northWest.getY() - offset.getY());
+        path.lineTo(southWest.getX() - offset.getX(), southWest.getY() - offset.getY());
+        path.lineTo(southEast.getX() - offset.getX(), southEast.getY() - offset.getY());
+        path.lineTo(northEast.getX() - offset.getX(), northEast.getY() - offset.getY());
+        path.closePath();
         return path;
     }
 
-    private Point getTextPoint(final Geohash geohash, final MapView mapView, final String text,
-            final Graphics2D graphics) {
-        final double latitude = Convert.fitLatitudeInBounds(geohash.bounds().north().asDegrees());
-        final double longitude = geohash.bounds().west().asDegrees();
-        final LatLon northWest = new LatLon(latitude, longitude);
-        final Point textPoint = mapView.getPoint(northWest);
-        textPoint.translate(graphics.getFontMetrics().stringWidth(text) / 2 + TRANSLATE_X, TRANSLATE_Y);
-        return new Point((int) textPoint.getX(), (int) textPoint.getY());
+    /**
+     * Returns the position of a geohash corner, relative to the given offset.
+     */
+    private static Point2D corner(final double latitude, final double longitude, final MapView mapView,
+            final Point2D offset) {
+        final Point2D corner = mapView.getPoint2D(new LatLon(Convert.fitLatitudeInBounds(latitude), longitude));
+        return new Point2D.Double(corner.getX() - offset.getX(), corner.getY() - offset.getY());
+    }
 
+    /**
+     * Returns the position (baseline start) of a geohash code, given the position of the north western corner of the
+     * geohash.
+     */
+    static Point textPoint(final Point2D northWest, final FontMetrics fontMetrics) {
+        final double x = northWest.getX() + TRANSLATE_X;
+        final double y = northWest.getY() + TRANSLATE_Y - fontMetrics.getHeight() / 2 + fontMetrics.getAscent();
+        return new Point((int) x, (int) y);
+    }
+
+    /**
+     * Screen geometry of a geohash: the position of its corners, which place its label, and, if it was drawn
+     * separately, its outline.
+     */
+    private static final class GeohashGeometry {
+
+        private final Point2D northWest;
+        private final Point2D southEast;
+        private Path2D path;
+
+        private GeohashGeometry(final Point2D northWest, final Point2D southEast) {
+            this.northWest = northWest;
+            this.southEast = southEast;
+        }
+
+        private Path2D path(final Geohash geohash, final MapView mapView, final Point2D offset) {
+            if (path == null) {
+                path = getGeohashPath(geohash, mapView, offset);
+            }
+            return path;
+        }
     }
 
     /**
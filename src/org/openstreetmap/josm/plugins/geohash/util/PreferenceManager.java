@@ -17,6 +17,7 @@ import org.openstreetmap.josm.spi.preferences.Config;
 public final class PreferenceManager {
 
     private static final String LAYER_OPENED = "geohash.layer.opened";
+    private static final String MAX_CELL_COUNT = "geohash.cells.max";
     private static final PreferenceManager INSTANCE = new PreferenceManager();
 
     private PreferenceManager() {}
@@ -33,4 +34,14 @@ public final class PreferenceManager {
     public void setLayerOpenedFlag(final Boolean isOpened) {
         Config.getPref().put(LAYER_OPENED, isOpened.toString());
     }
+
+    /**
+     * Loads the maximum number of geohashes painted at once.
+     *
+     * @param defaultValue - the value used if none was set
+     * @return the maximum number of geohashes
+     */
+    public int loadMaxCellCount(final int defaultValue) {
+        return Config.getPref().getInt(MAX_CELL_COUNT, defaultValue);
+    }
 }
\ No newline at end of file
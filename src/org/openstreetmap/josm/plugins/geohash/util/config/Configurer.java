@@ -52,10 +52,18 @@ public final class Configurer extends BaseConfig {
         return readProperty("dialog.label.text");
     }
 
+    public String getDialogSuggestionText() {
+        return readProperty("dialog.suggestion.text");
+    }
+
     public String getLayerInfoComponent() {
         return readProperty("layer.info.component");
     }
 
+    public String getLayerInfoStatisticsText() {
+        return readProperty("layer.info.statistics");
+    }
+
     public String getLayerTooltipText() {
         return readProperty("layer.tooltip.text");
     }
@@ -76,5 +84,41 @@ public final class Configurer extends BaseConfig {
         return readProperty("menu.display.smaller.geohashes.text");
     }
 
+    public String getShowDensityText() {
+        return readProperty("menu.density.show.text");
+    }
+
+    public String getHideDensityText() {
+        return readProperty("menu.density.hide.text");
+    }
+
+    public String getOpenMetricsText() {
+        return readProperty("menu.metrics.open.text");
+    }
+
+    public String getCloseMetricsText() {
+        return readProperty("menu.metrics.close.text");
+    }
+
+    public String getCoverSelectionText() {
+        return readProperty("menu.selection.cover.text");
+    }
+
+    public String getClearSelectionCoverText() {
+        return readProperty("menu.selection.clear.text");
+    }
+
+    public String getSelectionPrecisionText() {
+        return readProperty("selection.precision.text");
+    }
+
+    public String getSelectionCompactText() {
+        return readProperty("selection.compact.text");
+    }
+
+    public String getSelectionInvalidText() {
+        return readProperty("selection.invalid.text");
+    }
+
 
 }
\ No newline at end of file
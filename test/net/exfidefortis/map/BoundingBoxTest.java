@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015, Mihai Chintoanu. All rights reserved.
+ *
+ * This code is free software. You may use it in compliance with the
+ * GNU Lesser General Public License (LGPL), Version 3, or any later version.
+ * You may obtain a copy of the License at http://www.gnu.org/licenses/lgpl.html
+ *
+ * This code is distributed on an "AS IS" basis, WITHOUT ANY WARRANTY.
+ */
+package net.exfidefortis.map;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class BoundingBoxTest {
+
+    /*
+     * Boundaries on a coarse grid, so that many of the random boxes share edges or corners.
+     */
+    private static BoundingBox randomBox(final Random random) {
+        final double latitude1 = -90 + 15 * random.nextInt(13);
+        final double latitude2 = -90 + 15 * random.nextInt(13);
+        final double longitude1 = -180 + 30 * random.nextInt(13);
+        final double longitude2 = -180 + 30 * random.nextInt(13);
+        return BoundingBox.forDegrees(Math.max(latitude1, latitude2), Math.min(latitude1, latitude2),
+                Math.max(longitude1, longitude2), Math.min(longitude1, longitude2));
+    }
+
+    /*
+     * The object-based checks the primitive ones replaced: corner containment and Angle.between.
+     */
+
+    private static boolean referenceContains(final BoundingBox box, final Point point) {
+        return point.latitude().asDegrees() >= box.south().asDegrees()
+                && point.latitude().asDegrees() <= box.north().asDegrees()
+                && point.longitude().asDegrees() >= box.west().asDegrees()
+                && point.longitude().asDegrees() <= box.east().asDegrees();
+    }
+
+    private static boolean referenceContains(final BoundingBox box, final BoundingBox other) {
+        return referenceContains(box, other.northEast()) && referenceContains(box, other.northWest())
+                && referenceContains(box, other.southEast()) && referenceContains(box, other.southWest());
+    }
+
+    private static boolean intersectsLatitude(final BoundingBox box, final BoundingBox other) {
+        return other.south().between(box.south(), box.north()) || other.north().between(box.south(), box.north());
+    }
+
+    private static boolean intersectsLongitude(final BoundingBox box, final BoundingBox other) {
+        return other.west().between(box.west(), box.east()) || other.east().between(box.west(), box.east());
+    }
+
+    private static boolean referenceIntersects(final BoundingBox box, final BoundingBox other) {
+        return (intersectsLatitude(box, other) && intersectsLongitude(other, box))
+                || (intersectsLongitude(box, other) && intersectsLatitude(other, box));
+    }
+
+    private static boolean referenceSharesAreaWith(final BoundingBox box, final BoundingBox other) {
+        return referenceContains(box, other) || referenceIntersects(box, other) || referenceContains(other, box);
+    }
+
+    @Test
+    public void testPredicates() {
+        final Random random = new Random(10);
+        for (int i = 0; i < 200_000; i++) {
+            final BoundingBox box = randomBox(random);
+            final BoundingBox other = randomBox(random);
+            final double north = box.north().asDegrees();
+            final double south = box.south().asDegrees();
+            final double east = box.east().asDegrees();
+            final double west = box.west().asDegrees();
+            final double otherNorth = other.north().asDegrees();
+            final double otherSouth = other.south().asDegrees();
+            final double otherEast = other.east().asDegrees();
+            final double otherWest = other.west().asDegrees();
+
+            final boolean contains = referenceContains(box, other);
+            Assert.assertEquals(contains, box.contains(other));
+            Assert.assertEquals(contains,
+                    BoundingBox.contains(north, south, east, west, otherNorth, otherSouth, otherEast, otherWest));
+
+            final boolean intersects = referenceIntersects(box, other);
+            Assert.assertEquals(intersects, box.intersects(other));
+            Assert.assertEquals(intersects,
+                    BoundingBox.intersects(north, south, east, west, otherNorth, otherSouth, otherEast, otherWest));
+
+            final boolean sharesArea = referenceSharesAreaWith(box, other);
+            Assert.assertEquals(sharesArea, box.sharesAreaWith(other));
+            Assert.assertEquals(sharesArea, BoundingBox.sharesAreaWith(north, south, east, west, otherNorth,
+                    otherSouth, otherEast, otherWest));
+
+            final Point point = other.southWest();
+            final boolean containsPoint = referenceContains(box, point);
+            Assert.assertEquals(containsPoint, box.contains(point));
+            Assert.assertEquals(containsPoint, BoundingBox.contains(north, south, east, west,
+                    point.latitude().asDegrees(), point.longitude().asDegrees()));
+        }
+    }
+
+    @Test
+    public void testForDegrees() {
+        final BoundingBox box = BoundingBox.forDegrees(52.5, -10.25, 13.4, -120);
+        Assert.assertEquals(new BoundingBox.Builder().north(Latitude.forDegrees(52.5))
+                .south(Latitude.forDegrees(-10.25)).east(Longitude.forDegrees(13.4)).west(Longitude.forDegrees(-120))
+                .build(), box);
+        Assert.assertEquals(BoundingBox.WORLD, BoundingBox.forDegrees(90, -90, 180, -180));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForDegrees_northBelowSouth() {
+        BoundingBox.forDegrees(10, 20, 30, 0);
+    }
+
+    @Test
+    public void testDimensions() {
+        final BoundingBox box = BoundingBox.forDegrees(52.5, -10.25, 13.4, -120);
+        Assert.assertEquals(62.75, box.heightInDegrees(), 0);
+        Assert.assertEquals(133.4, box.widthInDegrees(), 1e-12);
+        Assert.assertEquals(360, BoundingBox.WORLD.widthInDegrees(), 0);
+        Assert.assertEquals(180, BoundingBox.WORLD.heightInDegrees(), 0);
+        Assert.assertEquals(0, BoundingBox.forDegrees(1, 1, 2, 2).widthInDegrees(), 0);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.josm.plugins.geohash.core.LongCodec;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class BatchGeohasherTest {
+
+    @Test
+    public void testRun() throws IOException {
+        final String input = "id,lon,lat\n" + "1,-151,65.6\n" + "2, 13.4 ,\"52.52\"\r\n" + "\n" + "3,abc,1\n"
+                + "4,-29,-25.5";
+        final String expected = "id,lon,lat,geohash\n" + "1,-151,65.6,best5\n" + "2, 13.4 ,\"52.52\",u33db\r\n"
+                + "\n" + "3,abc,1,\n" + "4,-29,-25.5,777qu";
+        final Path output = Files.createTempFile("geohash", ".csv");
+        final BatchGeohasher geohasher = geohash(input, output, "--latitude-column", "3", "--longitude-column", "2",
+                "--precision", "5", "--header");
+        Assert.assertEquals(expected, read(output));
+        Assert.assertEquals(4, geohasher.rowCount());
+        Assert.assertEquals(1, geohasher.invalidRowCount());
+    }
+
+    @Test
+    public void testRun_severalChunks() throws IOException {
+        final StringBuilder input = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 600_000; i++) {
+            final double latitude = i % 180 - 90 + 0.25;
+            final double longitude = i % 360 - 180 + 0.5;
+            final String row = latitude + "\t" + longitude + "\t" + i;
+            input.append(row).append('\n');
+            expected.append(row).append('\t').append(LongCodec.toString(LongCodec.encode(latitude, longitude, 9)))
+                    .append('\n');
+        }
+        final Path output = Files.createTempFile("geohash", ".tsv");
+        final BatchGeohasher geohasher =
+                geohash(input.toString(), output, "--delimiter", "tab", "--precision", "9", "--threads", "3");
+        Assert.assertEquals(expected.toString(), read(output));
+        Assert.assertEquals(600_000, geohasher.rowCount());
+        Assert.assertEquals(0, geohasher.invalidRowCount());
+    }
+
+    @Test
+    public void testParseCoordinate() {
+        for (final String value : new String[] { "0", "-0.5", "+13.404954", "52.520008", "179.99999999999", "1e2",
+                "-1.5E-3", "123456789012345678901234567890", ".5" }) {
+            final ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+            Assert.assertEquals(Double.parseDouble(value), CoordinateParser.parse(buffer, 0, value.length()), 0);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap("x-1.2.3".getBytes(StandardCharsets.US_ASCII));
+        Assert.assertTrue(Double.isNaN(CoordinateParser.parse(buffer, 1, 7)));
+        Assert.assertTrue(Double.isNaN(CoordinateParser.parse(buffer, 1, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseArguments_sameColumns() {
+        BatchGeohasher.parseArguments(new String[] { "--latitude-column", "2", "--longitude-column", "2", "in", "out" });
+    }
+
+    private static BatchGeohasher geohash(final String input, final Path output, final String... options)
+            throws IOException {
+        final Path inputFile = Files.createTempFile("geohash", ".csv");
+        inputFile.toFile().deleteOnExit();
+        output.toFile().deleteOnExit();
+        Files.write(inputFile, input.getBytes(StandardCharsets.US_ASCII));
+        final String[] args = new String[options.length + 2];
+        System.arraycopy(options, 0, args, 0, options.length);
+        args[options.length] = inputFile.toString();
+        args[options.length + 1] = output.toString();
+        final BatchGeohasher geohasher = BatchGeohasher.parseArguments(args);
+        geohasher.run(new PrintStream(new ByteArrayOutputStream()));
+        return geohasher;
+    }
+
+    private static String read(final Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+    }
+}
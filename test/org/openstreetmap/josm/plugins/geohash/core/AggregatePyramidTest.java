@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class AggregatePyramidTest {
+
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void testPutAndRemove() {
+        final AggregatePyramid pyramid = new AggregatePyramid(5);
+        pyramid.put(LongCodec.fromString("u33db"), 4);
+        pyramid.put(LongCodec.fromString("u33dc"), -2);
+        pyramid.put(LongCodec.fromString("u3400"), 10);
+        final long u33 = LongCodec.fromString("u33");
+        Assert.assertEquals(2, pyramid.count(u33));
+        Assert.assertEquals(2, pyramid.sum(u33), DELTA);
+        Assert.assertEquals(-2, pyramid.minimum(u33), DELTA);
+        Assert.assertEquals(4, pyramid.maximum(u33), DELTA);
+        Assert.assertEquals(3, pyramid.count(LongCodec.WORLD));
+        Assert.assertEquals(10, pyramid.maximum(LongCodec.fromString("u")), DELTA);
+        // replacing and removing values updates the extremes
+        pyramid.put(LongCodec.fromString("u33dc"), 1);
+        Assert.assertEquals(1, pyramid.minimum(u33), DELTA);
+        pyramid.remove(LongCodec.fromString("u3400"));
+        pyramid.remove(LongCodec.fromString("u3400"));
+        Assert.assertEquals(4, pyramid.maximum(LongCodec.WORLD), DELTA);
+        Assert.assertEquals(5, pyramid.sum(LongCodec.WORLD), DELTA);
+        Assert.assertEquals(0, pyramid.count(LongCodec.fromString("u34")));
+        Assert.assertTrue(Double.isNaN(pyramid.minimum(LongCodec.fromString("u34"))));
+    }
+
+    @Test
+    public void testBuildMatchesIncremental() {
+        final Random random = new Random(5);
+        final int depth = 6;
+        final long[] geohashes = new long[50_000];
+        final double[] values = new double[geohashes.length];
+        for (int i = 0; i < geohashes.length; i++) {
+            geohashes[i] = LongCodec.encode(50 + random.nextDouble(), 10 + random.nextDouble(), 8);
+        }
+        LongCodec.sort(geohashes);
+        final Map<Long, double[]> leaves = new HashMap<>();
+        for (int i = 0; i < geohashes.length; i++) {
+            values[i] = random.nextInt(1000) - 500;
+            final long leaf = (geohashes[i] & LongCodec.hashMask(depth)) | depth;
+            final double[] leafValues = leaves.computeIfAbsent(leaf,
+                    key -> new double[] { 0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY });
+            leafValues[0]++;
+            leafValues[1] += values[i];
+            leafValues[2] = Math.min(leafValues[2], values[i]);
+            leafValues[3] = Math.max(leafValues[3], values[i]);
+        }
+        final AggregatePyramid built = AggregatePyramid.build(geohashes, values, depth);
+        final AggregatePyramid incremental = new AggregatePyramid(depth);
+        final long other = LongCodec.encode(-30, -60, depth);
+        for (final Map.Entry<Long, double[]> leaf : leaves.entrySet()) {
+            // the incremental pyramid holds one value per leaf: their sum, so only the sums compare
+            incremental.put(leaf.getKey(), random.nextDouble());
+            incremental.put(other, random.nextDouble());
+            incremental.put(leaf.getKey(), leaf.getValue()[1]);
+        }
+        incremental.remove(other);
+        for (final Map.Entry<Long, double[]> leaf : leaves.entrySet()) {
+            Assert.assertEquals((long) leaf.getValue()[0], built.count(leaf.getKey()));
+            Assert.assertEquals(leaf.getValue()[1], built.sum(leaf.getKey()), DELTA);
+            Assert.assertEquals(leaf.getValue()[2], built.minimum(leaf.getKey()), DELTA);
+            Assert.assertEquals(leaf.getValue()[3], built.maximum(leaf.getKey()), DELTA);
+            Assert.assertEquals(built.sum(leaf.getKey()), incremental.sum(leaf.getKey()), DELTA);
+        }
+        for (int precision = 0; precision < depth; precision++) {
+            for (int i = 0; i < 200; i++) {
+                final long geohash = (geohashes[random.nextInt(geohashes.length)] & LongCodec.hashMask(precision))
+                        | precision;
+                long count = 0;
+                double minimum = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < geohashes.length; j++) {
+                    if (GeohashSets.covers(geohash, geohashes[j])) {
+                        count++;
+                        minimum = Math.min(minimum, values[j]);
+                    }
+                }
+                Assert.assertEquals(count, built.count(geohash));
+                Assert.assertEquals(minimum, built.minimum(geohash), DELTA);
+                Assert.assertEquals(built.sum(geohash), incremental.sum(geohash), DELTA);
+            }
+        }
+        Assert.assertEquals(geohashes.length, built.count(LongCodec.WORLD));
+        Assert.assertEquals(leaves.size(), incremental.count(LongCodec.WORLD));
+    }
+
+    @Test
+    public void testDepthFor() {
+        final long[] geohashes = { LongCodec.fromString("u33db"), LongCodec.fromString("u33dc"),
+            LongCodec.fromString("u3400"), LongCodec.fromString("v0000") };
+        // prefixes per precision: 1, 2, 2, 3, 3, 4
+        Assert.assertEquals(5, AggregatePyramid.depthFor(geohashes.length, index -> geohashes[(int) index], 100));
+        Assert.assertEquals(4, AggregatePyramid.depthFor(geohashes.length, index -> geohashes[(int) index], 14));
+        Assert.assertEquals(1, AggregatePyramid.depthFor(geohashes.length, index -> geohashes[(int) index], 3));
+        Assert.assertEquals(0, AggregatePyramid.depthFor(geohashes.length, index -> geohashes[(int) index], 2));
+        Assert.assertEquals(0, AggregatePyramid.depthFor(0, index -> 0, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_notSorted() {
+        AggregatePyramid.build(new long[] { LongCodec.fromString("u34"), LongCodec.fromString("u33") },
+                new double[] { 1, 2 }, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_notALeaf() {
+        new AggregatePyramid(5).put(LongCodec.fromString("u33d"), 1);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class CellIndexTest {
+
+    private static String[] codes(final double[] latitudes, final double[] longitudes) {
+        final String[] codes = new String[latitudes.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = LongCodec.toString(LongCodec.encode(latitudes[i], longitudes[i], LongCodec.MAX_PRECISION));
+        }
+        return codes;
+    }
+
+    private static Map<String, Integer> childCounts(final String[] codes, final String prefix) {
+        final Map<String, Integer> counts = new TreeMap<>();
+        for (final String code : codes) {
+            if (code.startsWith(prefix)) {
+                counts.merge(code.substring(0, Math.min(code.length(), prefix.length() + 1)), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    public void testChildren() {
+        final Random random = new Random(12);
+        final double[] nodeLatitudes = new double[20_000];
+        final double[] nodeLongitudes = new double[nodeLatitudes.length];
+        for (int i = 0; i < nodeLatitudes.length; i++) {
+            // mostly around Berlin, with a few nodes anywhere
+            nodeLatitudes[i] = i % 10 == 0 ? random.nextDouble() * 180 - 90 : 52.5 + random.nextDouble() * 0.1;
+            nodeLongitudes[i] = i % 10 == 0 ? random.nextDouble() * 360 - 180 : 13.4 + random.nextDouble() * 0.1;
+        }
+        final double[] wayLatitudes = {52.52, 52.53, -33.87};
+        final double[] wayLongitudes = {13.41, 13.42, 151.21};
+        final CellIndex index = CellIndex.build(nodeLatitudes, nodeLongitudes, wayLatitudes, wayLongitudes);
+        Assert.assertEquals(nodeLatitudes.length, index.nodeCount());
+        Assert.assertEquals(wayLatitudes.length, index.wayCount());
+        final String[] nodeCodes = codes(nodeLatitudes, nodeLongitudes);
+        final String[] wayCodes = codes(wayLatitudes, wayLongitudes);
+        final String berlin = nodeCodes[1];
+        for (int length = 0; length <= LongCodec.MAX_PRECISION; length++) {
+            final String prefix = berlin.substring(0, length);
+            final Map<String, Integer> nodeCounts = childCounts(nodeCodes, prefix);
+            final Map<String, Integer> wayCounts = childCounts(wayCodes, prefix);
+            final List<CellIndex.Cell> children = index.children(prefix);
+            final Map<String, Integer> expectedCodes = new TreeMap<>(nodeCounts);
+            wayCounts.keySet().forEach(code -> expectedCodes.putIfAbsent(code, 0));
+            Assert.assertEquals(List.copyOf(expectedCodes.keySet()),
+                    children.stream().map(CellIndex.Cell::code).collect(Collectors.toList()));
+            for (final CellIndex.Cell child : children) {
+                Assert.assertEquals((int) nodeCounts.getOrDefault(child.code(), 0), child.nodeCount());
+                Assert.assertEquals((int) wayCounts.getOrDefault(child.code(), 0), child.wayCount());
+            }
+        }
+        Assert.assertEquals(nodeLatitudes.length, index.cell("").nodeCount());
+        Assert.assertEquals(1, index.cell(wayCodes[2].substring(0, 6)).wayCount());
+    }
+
+    @Test
+    public void testEmpty() {
+        final CellIndex index = CellIndex.build(new double[0], new double[0], new double[0], new double[0]);
+        Assert.assertTrue(index.children("").isEmpty());
+        Assert.assertTrue(index.children("u33dc0000000").isEmpty());
+        Assert.assertEquals(0, index.cell("u").nodeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChildren_invalidPrefix() {
+        CellIndex.build(new double[0], new double[0], new double[0], new double[0]).children("u3a");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class DensityIndexTest {
+
+    @Test
+    public void testCount() {
+        final DensityIndex index = DensityIndex.build(new long[] { 1, 2, 3, -4 },
+                new double[] { 52.52, 52.52, 52.51, -25.5 }, new double[] { 13.40, 13.41, 13.39, -29 });
+        Assert.assertEquals(4, index.size());
+        Assert.assertEquals(4, index.count(Geohash.WORLD));
+        Assert.assertEquals(3, index.count(new Geohash("u")));
+        Assert.assertEquals(3, index.count(new Geohash("u33d")));
+        Assert.assertEquals(1, index.count(new Geohash("7")));
+        Assert.assertEquals(0, index.count(new Geohash("b")));
+        Assert.assertEquals(0, index.count(new Geohash("u33dbu33db")));
+        final long deepest = LongCodec.encode(52.52, 13.40, GeohashIdentifier.CUTOFF_DEPTH);
+        Assert.assertEquals(1, index.count(new Geohash(deepest)));
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        final DensityIndex index = new DensityIndex();
+        index.put(1, 52.52, 13.40);
+        index.put(2, 52.52, 13.41);
+        Assert.assertEquals(2, index.count(new Geohash("u33d")));
+        // moving a point
+        index.put(2, -25.5, -29);
+        Assert.assertEquals(1, index.count(new Geohash("u33d")));
+        Assert.assertEquals(1, index.count(new Geohash("777")));
+        index.remove(1);
+        index.remove(1);
+        Assert.assertEquals(0, index.count(new Geohash("u")));
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testIncrementalMatchesBuild() {
+        final Random random = new Random(3);
+        final int pointCount = 200_000;
+        final long[] ids = new long[pointCount];
+        final double[] latitudes = new double[pointCount];
+        final double[] longitudes = new double[pointCount];
+        final DensityIndex incremental = new DensityIndex();
+        for (int i = 0; i < pointCount; i++) {
+            ids[i] = i * 7L - 1000;
+            latitudes[i] = 45 + random.nextDouble();
+            longitudes[i] = 10 + random.nextDouble();
+            incremental.put(ids[i], random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+        }
+        // moves every point to its final location and removes a few extra ones
+        for (int i = 0; i < pointCount; i++) {
+            incremental.put(ids[i], latitudes[i], longitudes[i]);
+            incremental.put(-ids[i] - 1, 0, 0);
+            incremental.remove(-ids[i] - 1);
+        }
+        final DensityIndex built = DensityIndex.build(ids, latitudes, longitudes);
+        Assert.assertEquals(built.size(), incremental.size());
+        for (int i = 0; i < 5000; i++) {
+            final int precision = 1 + random.nextInt(DensityIndex.MAX_PRECISION);
+            final Geohash geohash = new Geohash(
+                    LongCodec.encode(45 + random.nextDouble(), 10 + random.nextDouble(), precision));
+            Assert.assertEquals(built.count(geohash), incremental.count(geohash));
+        }
+        Assert.assertEquals(pointCount, built.count(new Geohash("u")));
+    }
+}
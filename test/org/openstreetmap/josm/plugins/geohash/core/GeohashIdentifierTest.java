@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import net.exfidefortis.map.BoundingBox;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class GeohashIdentifierTest {
+
+    private static BoundingBox bounds(final double south, final double west, final double north, final double east) {
+        return new BoundingBox.Builder().south(Latitude.forDegrees(south)).west(Longitude.forDegrees(west))
+                .north(Latitude.forDegrees(north)).east(Longitude.forDegrees(east)).build();
+    }
+
+    @Test
+    public void testGet() {
+        final Collection<Geohash> geohashes = new GeohashIdentifier().get(bounds(52.4, 13.2, 52.6, 13.6));
+        Assert.assertEquals(50, geohashes.size());
+        for (final Geohash geohash : geohashes) {
+            Assert.assertEquals(5, geohash.code().length());
+            Assert.assertTrue(geohash.bounds().sharesAreaWith(bounds(52.4, 13.2, 52.6, 13.6)));
+        }
+        Assert.assertTrue(geohashes.contains(new Geohash("u33db")));
+    }
+
+    @Test
+    public void testGet_world() {
+        final Collection<Geohash> geohashes = new GeohashIdentifier().get(BoundingBox.WORLD);
+        Assert.assertEquals(32, geohashes.size());
+        Assert.assertEquals(new HashSet<>(Geohash.WORLD.children()), geohashes);
+    }
+
+    @Test
+    public void testGet_edgeTouchingGeohashesExcluded() {
+        // the bounds are exactly the geohash "b"; its neighbours only touch it
+        final Collection<Geohash> geohashes = new GeohashIdentifier().get(new Geohash("b").bounds());
+        for (final Geohash geohash : geohashes) {
+            Assert.assertTrue(geohash.code().startsWith("b"));
+        }
+    }
+
+    @Test
+    public void testGet_cutOffDepth() {
+        final Collection<Geohash> geohashes = new GeohashIdentifier().get(bounds(52.5, 13.4, 52.500001, 13.400001));
+        Assert.assertFalse(geohashes.isEmpty());
+        for (final Geohash geohash : geohashes) {
+            Assert.assertEquals(GeohashIdentifier.CUTOFF_DEPTH, geohash.code().length());
+        }
+    }
+
+    @Test
+    public void testMaxCellCount() {
+        final GeohashIdentifier identifier = new GeohashIdentifier();
+        // a tall area: the side ratio only accounts for its width
+        final BoundingBox bounds = bounds(30, 13.2, 60, 13.6);
+        Assert.assertEquals(4, identifier.get(bounds).iterator().next().code().length());
+        Assert.assertTrue(identifier.get(bounds).size() <= GeohashIdentifier.DEFAULT_MAX_CELL_COUNT);
+        identifier.setMaxCellCount(Integer.MAX_VALUE);
+        Assert.assertEquals(5, identifier.get(bounds).iterator().next().code().length());
+        identifier.setMaxCellCount(100);
+        final Collection<Geohash> geohashes = identifier.get(bounds);
+        Assert.assertTrue(geohashes.size() <= 100);
+        // the longest geohashes within the budget
+        final int length = geohashes.iterator().next().code().length();
+        Assert.assertEquals(3, length);
+        Assert.assertFalse(identifier.wouldNoticeSideRatioIncrease(bounds));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxCellCount_belowTheWorldCover() {
+        new GeohashIdentifier().setMaxCellCount(31);
+    }
+
+    @Test
+    public void testSideRatio() {
+        final GeohashIdentifier identifier = new GeohashIdentifier();
+        final BoundingBox bounds = bounds(52.4, 13.2, 52.6, 13.6);
+        Assert.assertFalse(identifier.canDecreaseSideRatio());
+        Assert.assertTrue(identifier.wouldNoticeSideRatioIncrease(bounds));
+        final int length = identifier.get(bounds).iterator().next().code().length();
+        identifier.increaseSideRatio();
+        Assert.assertTrue(identifier.canDecreaseSideRatio());
+        Assert.assertEquals(length - 1, identifier.get(bounds).iterator().next().code().length());
+    }
+
+    @Test
+    public void testCache() {
+        final GeohashIdentifier identifier = new GeohashIdentifier();
+        final Collection<Geohash> geohashes = identifier.get(bounds(52.4, 13.2, 52.6, 13.6));
+        Assert.assertSame(geohashes, identifier.get(bounds(52.4, 13.2, 52.6, 13.6)));
+        Assert.assertEquals(1, identifier.cacheHits());
+        Assert.assertEquals(1, identifier.cacheMisses());
+
+        identifier.increaseSideRatio();
+        final Collection<Geohash> largerGeohashes = identifier.get(bounds(52.4, 13.2, 52.6, 13.6));
+        Assert.assertNotEquals(geohashes, largerGeohashes);
+        Assert.assertEquals(2, identifier.cacheMisses());
+
+        identifier.decreaseSideRatio();
+        Assert.assertEquals(geohashes, identifier.get(bounds(52.4, 13.2, 52.6, 13.6)));
+        Assert.assertEquals(3, identifier.cacheMisses());
+    }
+
+    @Test
+    public void testUpdate() {
+        final GeohashIdentifier identifier = new GeohashIdentifier();
+        final BoundingBox previousBounds = bounds(52.4, 13.2, 52.6, 13.6);
+        final Collection<Geohash> previousGeohashes = identifier.get(previousBounds);
+        final BoundingBox bounds = bounds(52.43, 13.25, 52.63, 13.65);
+
+        final CoverUpdate update = identifier.update(previousBounds, previousGeohashes, bounds);
+        Assert.assertEquals(new GeohashIdentifier().get(bounds), update.geohashes());
+        Assert.assertTrue(update.isChanged());
+        Assert.assertTrue(update.incremental());
+        final Set<Geohash> expectedAdded = new HashSet<>(update.geohashes());
+        expectedAdded.removeAll(previousGeohashes);
+        Assert.assertEquals(expectedAdded, new HashSet<>(update.added()));
+        final Set<Geohash> expectedRemoved = new HashSet<>(previousGeohashes);
+        expectedRemoved.removeAll(update.geohashes());
+        Assert.assertEquals(expectedRemoved, new HashSet<>(update.removed()));
+    }
+
+    @Test
+    public void testUpdate_differentLength() {
+        final GeohashIdentifier identifier = new GeohashIdentifier();
+        final BoundingBox previousBounds = bounds(52.4, 13.2, 52.6, 13.6);
+        final Collection<Geohash> previousGeohashes = identifier.get(previousBounds);
+        final BoundingBox bounds = bounds(52.49, 13.39, 52.51, 13.43);
+
+        final CoverUpdate update = identifier.update(previousBounds, previousGeohashes, bounds);
+        Assert.assertEquals(identifier.get(bounds), update.geohashes());
+        Assert.assertFalse(update.incremental());
+        Assert.assertEquals(update.geohashes(), new HashSet<>(update.added()));
+        Assert.assertEquals(previousGeohashes, new HashSet<>(update.removed()));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import net.exfidefortis.map.BoundingBox;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class GeohashSetsTest {
+
+    private static List<Geohash> geohashes(final String... codes) {
+        final List<Geohash> geohashes = new ArrayList<>();
+        for (final String code : codes) {
+            geohashes.add(new Geohash(code));
+        }
+        return geohashes;
+    }
+
+    @Test
+    public void testCompact() {
+        final List<Geohash> geohashes = new ArrayList<>(new Geohash("u33").children());
+        geohashes.addAll(geohashes("u34", "u34b", "u35c"));
+        Collections.shuffle(geohashes, new Random(1));
+        Assert.assertEquals(geohashes("u33", "u34", "u35c"), GeohashSets.compact(geohashes));
+    }
+
+    @Test
+    public void testCompact_recursive() {
+        final List<Geohash> geohashes = new ArrayList<>();
+        for (final Geohash child : Geohash.WORLD.children()) {
+            if (child.equals(new Geohash("s"))) {
+                geohashes.addAll(child.children());
+            } else {
+                geohashes.add(child);
+            }
+        }
+        Assert.assertEquals(Collections.singletonList(Geohash.WORLD), GeohashSets.compact(geohashes));
+        geohashes.remove(new Geohash("s0"));
+        Assert.assertEquals(62, GeohashSets.compact(geohashes).size());
+    }
+
+    @Test
+    public void testExpand() {
+        final List<Geohash> expanded = GeohashSets.expand(geohashes("u33", "u34b", "u34bc", "u35cd"), 4);
+        Assert.assertEquals(34, expanded.size());
+        Assert.assertEquals(new HashSet<>(new Geohash("u33").children()), new HashSet<>(expanded.subList(0, 32)));
+        Assert.assertEquals(geohashes("u34b", "u35c"), expanded.subList(32, 34));
+        Assert.assertEquals(Collections.singletonList(Geohash.WORLD), GeohashSets.expand(expanded, 0));
+    }
+
+    @Test
+    public void testCompactAndExpand() {
+        final Random random = new Random(2);
+        final long[] geohashes = new long[100_000];
+        for (int i = 0; i < geohashes.length; i++) {
+            geohashes[i] = LongCodec.encode(52 + random.nextDouble(), 13 + random.nextDouble(), 5);
+        }
+        final long[] expanded = GeohashSets.expand(geohashes, 5);
+        final long[] compacted = GeohashSets.compact(geohashes);
+        Assert.assertTrue(compacted.length < expanded.length);
+        Assert.assertArrayEquals(expanded, GeohashSets.expand(compacted, 5));
+        Assert.assertArrayEquals(compacted, GeohashSets.compact(expanded));
+        for (int i = 1; i < expanded.length; i++) {
+            Assert.assertTrue(LongCodec.compare(expanded[i - 1], expanded[i]) < 0);
+        }
+        Assert.assertTrue(Arrays.stream(compacted).anyMatch(geohash -> LongCodec.precision(geohash) < 5));
+    }
+
+    @Test
+    public void testIntersectingAndResample() {
+        final Random random = new Random(3);
+        final long[] geohashes = new long[20_000];
+        for (int i = 0; i < geohashes.length; i++) {
+            geohashes[i] = LongCodec.encode(52 + random.nextDouble(), 13 + random.nextDouble(), 6);
+        }
+        final long[] compacted = GeohashSets.compact(geohashes);
+        final BoundingBox bounds = BoundingBox.forDegrees(52.61, 52.3, 13.72, 13.2);
+        final double[] geohashBounds = new double[4];
+        final List<Long> expected = new ArrayList<>();
+        for (final long geohash : compacted) {
+            LongCodec.decode(geohash, geohashBounds);
+            if (geohashBounds[LongCodec.SOUTH] < 52.61 && geohashBounds[LongCodec.NORTH] > 52.3
+                    && geohashBounds[LongCodec.WEST] < 13.72 && geohashBounds[LongCodec.EAST] > 13.2) {
+                expected.add(geohash);
+            }
+        }
+        final long[] intersecting = GeohashSets.intersecting(compacted, bounds);
+        Assert.assertEquals(expected, Arrays.stream(intersecting).boxed().collect(Collectors.toList()));
+        Assert.assertTrue(intersecting.length < compacted.length);
+
+        for (final int precision : new int[] { 4, 6 }) {
+            Assert.assertArrayEquals(GeohashSets.intersecting(GeohashSets.expand(compacted, precision), bounds),
+                    GeohashSets.resample(compacted, precision, bounds));
+        }
+        final long[] resampled = GeohashSets.resample(compacted, 7, bounds);
+        for (final long geohash : resampled) {
+            Assert.assertEquals(7, LongCodec.precision(geohash));
+            Assert.assertTrue(Arrays.stream(intersecting).anyMatch(cell -> GeohashSets.covers(cell, geohash)));
+        }
+        // the geohashes of length 6 only partly inside the bounds keep only part of their children
+        final long[] parents = GeohashSets.resample(compacted, 6, bounds);
+        Assert.assertTrue(resampled.length > 0 && resampled.length < 32 * parents.length);
+    }
+
+    @Test
+    public void testPrecisionFor() {
+        final BoundingBox bounds = BoundingBox.forDegrees(52.61, 52.3, 13.72, 13.2);
+        final int precision = GeohashSets.precisionFor(bounds, 1000);
+        Assert.assertTrue(CellRange.covering(bounds, precision).size() <= 1000);
+        Assert.assertTrue(CellRange.covering(bounds, precision + 1).size() > 1000);
+        Assert.assertEquals(0, GeohashSets.precisionFor(BoundingBox.WORLD, 31));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class GeohashStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static long[] sortedGeohashes(final int count, final int precision) {
+        final Random random = new Random(4);
+        final long[] geohashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            geohashes[i] = LongCodec.encode(40 + random.nextDouble() * 20, random.nextDouble() * 30, precision);
+        }
+        LongCodec.sort(geohashes);
+        int size = 0;
+        for (int i = 0; i < geohashes.length; i++) {
+            if (i == 0 || geohashes[i] != geohashes[i - 1]) {
+                geohashes[size++] = geohashes[i];
+            }
+        }
+        return Arrays.copyOf(geohashes, size);
+    }
+
+    @Test
+    public void testGetAndPrefixRange() throws IOException {
+        final long[] geohashes = sortedGeohashes(100_000, 7);
+        final Path path = folder.newFile().toPath();
+        try (GeohashStore.Builder builder = new GeohashStore.Builder(path, 12)) {
+            for (int i = 0; i < geohashes.length; i++) {
+                builder.add(geohashes[i], ByteBuffer.allocate(12).putInt(i).putLong(geohashes[i]).array());
+            }
+        }
+        try (GeohashStore store = GeohashStore.open(path)) {
+            Assert.assertEquals(geohashes.length, store.size());
+            Assert.assertEquals(12, store.valueWidth());
+            for (int i = 0; i < geohashes.length; i += 7) {
+                final long index = store.get(geohashes[i]);
+                Assert.assertEquals(i, index);
+                Assert.assertEquals(i, store.getInt(index, 0));
+                Assert.assertEquals(geohashes[i], store.getLong(index, 4));
+            }
+            Assert.assertEquals(-1, store.get(LongCodec.encode(-40, -100, 7)));
+            Assert.assertEquals(0, store.prefixRange(LongCodec.fromString("7")).size());
+            Assert.assertEquals(geohashes.length, store.prefixRange(LongCodec.WORLD).size());
+            for (final String prefix : new String[] { "u", "u0", "u0m", "sr", "spz", "u33db" }) {
+                final long packed = LongCodec.fromString(prefix);
+                final long expected =
+                        Arrays.stream(geohashes).filter(geohash -> GeohashSets.covers(packed, geohash)).count();
+                final GeohashStore.Range range = store.prefixRange(packed);
+                Assert.assertEquals(prefix, expected, range.size());
+                for (long index = range.from(); index < range.to(); index++) {
+                    Assert.assertTrue(GeohashSets.covers(packed, store.key(index)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final Path path = folder.newFile().toPath();
+        new GeohashStore.Builder(path, 8).close();
+        try (GeohashStore store = GeohashStore.open(path)) {
+            Assert.assertEquals(0, store.size());
+            Assert.assertEquals(-1, store.get(LongCodec.fromString("u33")));
+            Assert.assertEquals(0, store.prefixRange(LongCodec.WORLD).size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_unsortedKeys() throws IOException {
+        try (GeohashStore.Builder builder = new GeohashStore.Builder(folder.newFile().toPath(), 8)) {
+            builder.add(LongCodec.fromString("u34"), 1);
+            builder.add(LongCodec.fromString("u33"), 2);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpen_notAStore() throws IOException {
+        GeohashStore.open(folder.newFile().toPath());
+    }
+}
@@ -6,6 +6,8 @@
  */
 package org.openstreetmap.josm.plugins.geohash.core;
 
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 import net.exfidefortis.map.BoundingBox;
@@ -46,6 +48,71 @@ public class GeohashTest {
         Assert.assertFalse(geohash.children().contains(new Geohash("best")));
     }
 
+    @Test
+    public void testChildren_ordered() {
+        final List<Geohash> children = new Geohash("u33").children();
+        Assert.assertEquals(32, children.size());
+        Assert.assertEquals(new Geohash("u330"), children.get(0));
+        Assert.assertEquals(new Geohash("u33b"), children.get(10));
+        Assert.assertEquals(new Geohash("u33z"), children.get(31));
+    }
+
+    @Test
+    public void testNeighbor() {
+        Assert.assertEquals(new Geohash("u33e"), new Geohash("u33d").neighbor(Direction.NORTH));
+        Assert.assertEquals(new Geohash("u33f"), new Geohash("u33d").neighbor(Direction.EAST));
+        Assert.assertEquals(new Geohash("u339"), new Geohash("u33d").neighbor(Direction.SOUTH));
+        Assert.assertEquals(new Geohash("u336"), new Geohash("u33d").neighbor(Direction.WEST));
+        // crossing the border of the parent
+        Assert.assertEquals(new Geohash("u365"), new Geohash("u33g").neighbor(Direction.EAST));
+        // wrapping around the antimeridian
+        Assert.assertEquals(new Geohash("b"), new Geohash("z").neighbor(Direction.EAST));
+        Assert.assertEquals(new Geohash("pbpb"), new Geohash("0000").neighbor(Direction.WEST));
+        // beyond the poles
+        Assert.assertNull(new Geohash("zz").neighbor(Direction.NORTH));
+        Assert.assertNull(new Geohash("00").neighbor(Direction.SOUTH));
+        Assert.assertNull(Geohash.WORLD.neighbor(Direction.EAST));
+    }
+
+    @Test
+    public void testNeighbor_matchesCellIndices() {
+        for (final String code : new String[] { "u", "u3", "u33", "u33dc", "u33dc0", "u33dc0cpke", "7zzzzz", "p0" }) {
+            final long packed = LongCodec.fromString(code);
+            final int precision = code.length();
+            for (final Direction direction : Direction.values()) {
+                final Geohash neighbor = new Geohash(code).neighbor(direction);
+                final double[] bounds = new double[4];
+                LongCodec.decode(packed, bounds);
+                // the center of the adjacent geohash, encoded directly
+                final double latitude = (bounds[LongCodec.SOUTH] + bounds[LongCodec.NORTH]) / 2
+                        + (direction == Direction.NORTH ? 1 : direction == Direction.SOUTH ? -1 : 0)
+                        * LongCodec.height(precision);
+                double longitude = (bounds[LongCodec.WEST] + bounds[LongCodec.EAST]) / 2
+                        + (direction == Direction.EAST ? 1 : direction == Direction.WEST ? -1 : 0)
+                        * LongCodec.width(precision);
+                longitude = longitude > 180 ? longitude - 360 : longitude < -180 ? longitude + 360 : longitude;
+                if (latitude > 90 || latitude < -90) {
+                    Assert.assertNull(neighbor);
+                } else {
+                    Assert.assertEquals(LongCodec.toString(LongCodec.encode(latitude, longitude, precision)),
+                            neighbor.code());
+                }
+                Assert.assertEquals(new Geohash(code), neighbor == null ? new Geohash(code)
+                        : neighbor.neighbor(direction.opposite()));
+            }
+        }
+    }
+
+    @Test
+    public void testNeighbors() {
+        final List<Geohash> neighbors = new Geohash("u33d").neighbors();
+        Assert.assertEquals(Arrays.asList(new Geohash("u33e"), new Geohash("u33g"), new Geohash("u33f"),
+                new Geohash("u33c"), new Geohash("u339"), new Geohash("u333"), new Geohash("u336"),
+                new Geohash("u337")), neighbors);
+        Assert.assertEquals(5, new Geohash("zz").neighbors().size());
+        Assert.assertTrue(Geohash.WORLD.neighbors().isEmpty());
+    }
+
     @Test
     public void testEquals() {
         final String code = "b";
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class HistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100_000; value++) {
+            final int bucket = Histogram.bucket(value);
+            Assert.assertTrue(Histogram.lowerBound(bucket) <= value);
+            Assert.assertTrue(value < Histogram.lowerBound(bucket + 1));
+        }
+        final int last = Histogram.bucket(Long.MAX_VALUE);
+        Assert.assertTrue(Histogram.lowerBound(last) <= Long.MAX_VALUE && Histogram.lowerBound(last) > 0);
+    }
+
+    @Test
+    public void testPercentiles() {
+        final Histogram histogram = new Histogram("test");
+        Assert.assertEquals(0, histogram.percentile(99));
+        Assert.assertEquals(0, histogram.mean(), 0);
+        final Random random = new Random(11);
+        final long[] values = new long[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        Assert.assertEquals(values.length, histogram.count());
+        Assert.assertEquals(values[values.length - 1], histogram.maximum());
+        Assert.assertEquals(Arrays.stream(values).average().getAsDouble(), histogram.mean(), 1e-6);
+        for (final double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            final long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            final long estimate = histogram.percentile(percentile);
+            Assert.assertTrue(estimate >= exact);
+            Assert.assertTrue(estimate <= exact + exact / 8 + 1);
+        }
+        histogram.reset();
+        Assert.assertEquals(0, histogram.count());
+        Assert.assertEquals(0, histogram.maximum());
+    }
+}
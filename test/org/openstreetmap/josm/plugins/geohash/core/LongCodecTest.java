@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+import net.exfidefortis.map.Point;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class LongCodecTest {
+
+    @Test
+    public void testEncode() {
+        Assert.assertEquals("b", LongCodec.toString(LongCodec.encode(65.6, -151, 1)));
+        Assert.assertEquals("best", LongCodec.toString(LongCodec.encode(65.6, -151, 4)));
+        Assert.assertEquals("777", LongCodec.toString(LongCodec.encode(-25.5, -29, 3)));
+        Assert.assertEquals("", LongCodec.toString(LongCodec.encode(0, 0, 0)));
+        Assert.assertEquals("zzzzzzzzzzzz", LongCodec.toString(LongCodec.encode(90, 180, 12)));
+        Assert.assertEquals("000000000000", LongCodec.toString(LongCodec.encode(-90, -180, 12)));
+    }
+
+    @Test
+    public void testEncode_matchesBitArrayAlgorithm() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            final double latitude = random.nextDouble() * 180 - 90;
+            final double longitude = random.nextDouble() * 360 - 180;
+            // 13 characters go through the bit array algorithm, whose first 12 characters must match
+            final String code = new Codec().encode(
+                    new Point(Longitude.forDegrees(longitude), Latitude.forDegrees(latitude)),
+                    LongCodec.MAX_PRECISION + 1);
+            final long geohash = LongCodec.encode(latitude, longitude, LongCodec.MAX_PRECISION);
+            Assert.assertEquals(code.substring(0, LongCodec.MAX_PRECISION), LongCodec.toString(geohash));
+        }
+    }
+
+    @Test
+    public void testEncode_bulk() {
+        final Random random = new Random(7);
+        final double[] latitudes = new double[1000];
+        final double[] longitudes = new double[1000];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = random.nextDouble() * 180 - 90;
+            longitudes[i] = random.nextDouble() * 360 - 180;
+        }
+        latitudes[0] = 90;
+        longitudes[0] = 180;
+        final long[] geohashes = new long[latitudes.length];
+        LongCodec.encode(latitudes, longitudes, 9, geohashes);
+        for (int i = 0; i < latitudes.length; i++) {
+            Assert.assertEquals(LongCodec.encode(latitudes[i], longitudes[i], 9), geohashes[i]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncode_bulkOutOfRange() {
+        LongCodec.encode(new double[] { 10, Double.NaN }, new double[] { 10, 10 }, 5, new long[2]);
+    }
+
+    @Test
+    public void testDecode_bulk() {
+        final long[] geohashes = { LongCodec.fromString("best"), LongCodec.WORLD, LongCodec.fromString("u33dc0cpke") };
+        final double[] bounds = new double[geohashes.length * 4];
+        LongCodec.decode(geohashes, bounds);
+        final double[] expected = new double[4];
+        for (int i = 0; i < geohashes.length; i++) {
+            LongCodec.decode(geohashes[i], expected);
+            Assert.assertArrayEquals(expected, Arrays.copyOfRange(bounds, i * 4, i * 4 + 4), 0);
+        }
+    }
+
+    @Test
+    public void testDecode() {
+        final double[] bounds = new double[4];
+        LongCodec.decode(LongCodec.fromString("best"), bounds);
+        Assert.assertEquals(65.566406, bounds[LongCodec.SOUTH], 0.00001);
+        Assert.assertEquals(-151.171875, bounds[LongCodec.WEST], 0.00001);
+        Assert.assertEquals(65.742187, bounds[LongCodec.NORTH], 0.00001);
+        Assert.assertEquals(-150.820313, bounds[LongCodec.EAST], 0.00001);
+
+        LongCodec.decode(LongCodec.WORLD, bounds);
+        Assert.assertArrayEquals(new double[] { -90, -180, 90, 180 }, bounds, 0);
+    }
+
+    @Test
+    public void testStringConversion() {
+        for (final String code : new String[] { "", "b", "best", "u4pruydqqvj", "zzzzzzzzzzzz", "0" }) {
+            final long geohash = LongCodec.fromString(code);
+            Assert.assertEquals(code.length(), LongCodec.precision(geohash));
+            Assert.assertEquals(code, LongCodec.toString(geohash));
+            final char[] characters = code.toCharArray();
+            Assert.assertEquals(geohash, LongCodec.fromChars(characters, 0, characters.length));
+        }
+    }
+
+    @Test
+    public void testIsValid() {
+        for (final String code : new String[] { "", "b", "u4pruydqqvj", "zzzzzzzzzzzz" }) {
+            Assert.assertTrue(LongCodec.isValid(code));
+        }
+        for (final String code : new String[] { null, "ba", "U", "u33d ", "0123456789bcd" }) {
+            Assert.assertFalse(LongCodec.isValid(code));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromString_invalidCode() {
+        LongCodec.fromString("ba");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromString_tooLong() {
+        LongCodec.fromString("0123456789bcd");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncode_invalidPrecision() {
+        LongCodec.encode(0, 0, LongCodec.MAX_PRECISION + 1);
+    }
+
+    @Test
+    public void testSort() {
+        final String[] codes = { "z", "b", "", "bz", "b0", "h", "0", "zz" };
+        final long[] geohashes = new long[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            geohashes[i] = LongCodec.fromString(codes[i]);
+        }
+        LongCodec.sort(geohashes);
+        final String[] sorted = { "", "0", "b", "b0", "bz", "h", "z", "zz" };
+        for (int i = 0; i < sorted.length; i++) {
+            Assert.assertEquals(sorted[i], LongCodec.toString(geohashes[i]));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class PointIndexTest {
+
+    private static double distance(final double latitude1, final double longitude1, final double latitude2,
+            final double longitude2) {
+        final double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        final double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        final double a = sinLatitude * sinLatitude + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * PointIndex.EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static void assertNearest(final PointIndex index, final double[] latitudes, final double[] longitudes,
+            final double latitude, final double longitude, final int count) {
+        final double[] distances = new double[count];
+        final long[] nearest = index.nearest(latitude, longitude, count, distances);
+        final double[] expected = IntStream.range(0, latitudes.length)
+                .mapToDouble(i -> distance(latitude, longitude, latitudes[i], longitudes[i])).sorted()
+                .limit(count).toArray();
+        Assert.assertEquals(expected.length, nearest.length);
+        for (int i = 0; i < nearest.length; i++) {
+            final int point = (int) nearest[i];
+            Assert.assertEquals(expected[i], distances[i], 1e-6);
+            Assert.assertEquals(expected[i], distance(latitude, longitude, latitudes[point], longitudes[point]), 1e-6);
+        }
+    }
+
+    @Test
+    public void testNearest() {
+        final Random random = new Random(6);
+        final int pointCount = 20_000;
+        final long[] ids = new long[pointCount];
+        final double[] latitudes = new double[pointCount];
+        final double[] longitudes = new double[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            ids[i] = i;
+            // a dense cluster, and sparse points over the world, including the poles and the antimeridian
+            if (i % 4 == 0) {
+                latitudes[i] = random.nextDouble() * 180 - 90;
+                longitudes[i] = random.nextDouble() * 360 - 180;
+            } else {
+                latitudes[i] = 52.5 + random.nextGaussian() / 10;
+                longitudes[i] = 13.4 + random.nextGaussian() / 10;
+            }
+        }
+        final PointIndex index = PointIndex.build(ids, latitudes, longitudes);
+        Assert.assertEquals(pointCount, index.size());
+        for (int i = 0; i < 300; i++) {
+            final double latitude = i % 3 == 0 ? 52.5 + random.nextGaussian() / 5 : random.nextDouble() * 180 - 90;
+            final double longitude = i % 3 == 0 ? 13.4 + random.nextGaussian() / 5 : random.nextDouble() * 360 - 180;
+            assertNearest(index, latitudes, longitudes, latitude, longitude, 1 + random.nextInt(20));
+        }
+        assertNearest(index, latitudes, longitudes, 89.9, 0, 5);
+        assertNearest(index, latitudes, longitudes, 0, 179.99, 5);
+        assertNearest(index, latitudes, longitudes, -10, -179.99, 5);
+        // with large geohashes the rings wrap around the antimeridian and reach the poles
+        final PointIndex coarseIndex = PointIndex.build(ids, latitudes, longitudes, 2);
+        for (int i = 0; i < 100; i++) {
+            assertNearest(coarseIndex, latitudes, longitudes, random.nextDouble() * 180 - 90,
+                    random.nextDouble() * 360 - 180, 1 + random.nextInt(50));
+        }
+    }
+
+    @Test
+    public void testNearest_farFromThePoints() {
+        final Random random = new Random(7);
+        final int pointCount = 50_000;
+        final long[] ids = new long[pointCount];
+        final double[] latitudes = new double[pointCount];
+        final double[] longitudes = new double[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            ids[i] = i;
+            latitudes[i] = -33.9 + random.nextGaussian();
+            longitudes[i] = 151.2 + random.nextGaussian();
+        }
+        final PointIndex index = PointIndex.build(ids, latitudes, longitudes);
+        for (int i = 0; i < 100; i++) {
+            // the rings would have to reach the other side of the world, so the query descends the geohash tree
+            assertNearest(index, latitudes, longitudes, random.nextDouble() * 180 - 90,
+                    random.nextDouble() * 360 - 180, 1 + random.nextInt(30));
+        }
+        assertNearest(index, latitudes, longitudes, 33.9, -28.8, 10);
+        assertNearest(index, latitudes, longitudes, -90, 0, 10);
+    }
+
+    @Test
+    public void testNearest_fewPoints() {
+        final double[] latitudes = { 52.5, -33.9, 40.7 };
+        final double[] longitudes = { 13.4, 151.2, -74 };
+        final PointIndex index = PointIndex.build(new long[] { 0, 1, 2 }, latitudes, longitudes, 9);
+        final double[] distances = new double[10];
+        final long[] nearest = index.nearest(48.9, 2.35, 10, distances);
+        Assert.assertArrayEquals(new long[] { 0, 2, 1 }, nearest);
+        Assert.assertEquals(878_000, distances[0], 5_000);
+        assertNearest(index, latitudes, longitudes, -40, 170, 2);
+        Assert.assertEquals(0,
+                PointIndex.build(new long[0], new double[0], new double[0]).nearest(0, 0, 3).length);
+    }
+
+    @Test
+    public void testBuild_sameLocation() {
+        final long[] ids = { 7, 8, 9 };
+        final double[] latitudes = new double[3];
+        final double[] longitudes = new double[3];
+        Arrays.fill(latitudes, 1.5);
+        Arrays.fill(longitudes, 2.5);
+        final long[] nearest = PointIndex.build(ids, latitudes, longitudes).nearest(1.5, 2.5, 3);
+        Arrays.sort(nearest);
+        Assert.assertArrayEquals(ids, nearest);
+    }
+}
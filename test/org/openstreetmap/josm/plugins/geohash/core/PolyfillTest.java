@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class PolyfillTest {
+
+    /* A ring slightly inside the given geohash. */
+    private static double[] insetRing(final String code) {
+        final double[] bounds = new double[4];
+        LongCodec.decode(LongCodec.fromString(code), bounds);
+        final double inset = (bounds[LongCodec.NORTH] - bounds[LongCodec.SOUTH]) / 1000;
+        final double south = bounds[LongCodec.SOUTH] + inset;
+        final double west = bounds[LongCodec.WEST] + inset;
+        final double north = bounds[LongCodec.NORTH] - inset;
+        final double east = bounds[LongCodec.EAST] - inset;
+        return new double[] { south, west, north, west, north, east, south, east };
+    }
+
+    /* A star shaped ring, which has concave parts, around the given center. */
+    private static double[] star(final double latitude, final double longitude, final double radius) {
+        final int vertexCount = 14;
+        final double[] ring = new double[2 * vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            final double angle = 2 * Math.PI * i / vertexCount;
+            final double distance = i % 2 == 0 ? radius : radius / 3;
+            ring[2 * i] = latitude + distance * Math.sin(angle);
+            ring[2 * i + 1] = longitude + distance * Math.cos(angle);
+        }
+        return ring;
+    }
+
+    private static boolean isInside(final List<double[]> rings, final double latitude, final double longitude) {
+        boolean inside = false;
+        for (final double[] ring : rings) {
+            final int vertexCount = ring.length / 2;
+            for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+                if ((ring[2 * i] > latitude) != (ring[2 * j] > latitude)
+                        && longitude < ring[2 * i + 1] + (latitude - ring[2 * i]) * (ring[2 * j + 1] - ring[2 * i + 1])
+                                / (ring[2 * j] - ring[2 * i])) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    private static boolean covers(final long[] cover, final double latitude, final double longitude) {
+        final long location = LongCodec.encode(latitude, longitude, LongCodec.MAX_PRECISION);
+        return Arrays.stream(cover).anyMatch(cell -> GeohashSets.covers(cell, location));
+    }
+
+    @Test
+    public void testCover_geohash() {
+        final long[] cover = Polyfill.cover(Collections.singletonList(insetRing("u33d")), 6);
+        Assert.assertEquals(1024, cover.length);
+        for (final long geohash : cover) {
+            Assert.assertTrue(LongCodec.toString(geohash).startsWith("u33d"));
+        }
+        Assert.assertArrayEquals(new long[] { LongCodec.fromString("u33d") },
+                Polyfill.compactCover(Collections.singletonList(insetRing("u33d")), 6));
+    }
+
+    @Test
+    public void testCover_centersInside() {
+        final List<double[]> rings = Arrays.asList(star(52.5, 13.4, 1.2), star(52.5, 13.4, 0.25));
+        final int precision = 5;
+        final long[] cover = Polyfill.cover(rings, precision);
+        for (int i = 1; i < cover.length; i++) {
+            Assert.assertTrue(LongCodec.compare(cover[i - 1], cover[i]) < 0);
+        }
+        final double[] bounds = new double[4];
+        final long firstRow = LongCodec.latitudeIndex(51.2, precision);
+        final long lastRow = LongCodec.latitudeIndex(53.8, precision);
+        final long firstColumn = LongCodec.longitudeIndex(12.1, precision);
+        final long lastColumn = LongCodec.longitudeIndex(14.7, precision);
+        int insideCount = 0;
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                final long geohash = LongCodec.fromIndices(row, column, precision);
+                LongCodec.decode(geohash, bounds);
+                final boolean inside = isInside(rings, (bounds[LongCodec.SOUTH] + bounds[LongCodec.NORTH]) / 2,
+                        (bounds[LongCodec.WEST] + bounds[LongCodec.EAST]) / 2);
+                if (inside) {
+                    insideCount++;
+                    Assert.assertTrue(Arrays.stream(cover).anyMatch(cell -> cell == geohash));
+                }
+            }
+        }
+        // the star has a hole, and the cover also holds the geohashes crossed by the boundary
+        Assert.assertFalse(Arrays.stream(cover).anyMatch(cell -> cell == LongCodec.encode(52.5, 13.4, precision)));
+        Assert.assertTrue(insideCount > 0);
+        Assert.assertTrue(cover.length > insideCount);
+    }
+
+    @Test
+    public void testCompactCover() {
+        final List<double[]> rings = Collections.singletonList(star(52.5, 13.4, 2));
+        final int precision = 5;
+        final long[] cover = Polyfill.cover(rings, precision);
+        final long[] compactCover = Polyfill.compactCover(rings, precision);
+        Assert.assertTrue(compactCover.length < cover.length);
+        long cellCount = 0;
+        for (final long geohash : compactCover) {
+            cellCount += 1L << (LongCodec.BITS_PER_CHARACTER * (precision - LongCodec.precision(geohash)));
+        }
+        Assert.assertEquals(cover.length, cellCount);
+        for (final long geohash : cover) {
+            Assert.assertTrue(Arrays.stream(compactCover).anyMatch(cell -> GeohashSets.covers(cell, geohash)));
+        }
+    }
+
+    @Test
+    public void testCompactCover_matchesCover() {
+        final List<double[]> rings = Arrays.asList(star(52.5, 13.4, 1.2), star(52.5, 13.4, 0.25),
+                insetRing("u0"), star(-33.9, 151.2, 0.4));
+        for (int precision = 1; precision <= 6; precision++) {
+            Assert.assertArrayEquals(GeohashSets.compact(Polyfill.cover(rings, precision)),
+                    Polyfill.compactCover(rings, precision));
+        }
+        Assert.assertEquals(0, Polyfill.compactCover(Collections.emptyList(), 4).length);
+    }
+
+    @Test
+    public void testCompactUnion_overlapping() {
+        final int precision = 5;
+        final double[] square = { 52, 13, 53, 13, 53, 14, 52, 14 };
+        final double[] shifted = { 52.5, 13.5, 53.5, 13.5, 53.5, 14.5, 52.5, 14.5 };
+        final long[] squareCover = Polyfill.compactCover(Collections.singletonList(square), precision);
+        // the same ring selected twice, e.g. as a closed way and as the outer ring of its multipolygon
+        Assert.assertArrayEquals(squareCover, Polyfill.compactUnion(
+                Arrays.asList(Collections.singletonList(square), Collections.singletonList(square)), precision));
+        // a single polygon holding both rings leaves the shared area out
+        Assert.assertFalse(covers(Polyfill.compactCover(Arrays.asList(square, shifted), precision), 52.75, 13.75));
+        final long[] union = Polyfill.compactUnion(
+                Arrays.asList(Collections.singletonList(square), Collections.singletonList(shifted)), precision);
+        Assert.assertArrayEquals(GeohashSets.compact(LongStream.concat(Arrays.stream(Polyfill.cover(
+                Collections.singletonList(square), precision)), Arrays.stream(Polyfill.cover(
+                        Collections.singletonList(shifted), precision))).toArray()), union);
+        for (final double[] location : new double[][] { { 52.25, 13.25 }, { 52.75, 13.75 }, { 53.25, 14.25 } }) {
+            Assert.assertTrue(covers(union, location[0], location[1]));
+        }
+        Assert.assertEquals(0, Polyfill.compactUnion(Collections.emptyList(), precision).length);
+    }
+
+    @Test
+    public void testCompactCover_large() {
+        // the full cover would hold about 70 million geohashes
+        final List<double[]> rings = Collections.singletonList(star(45, 10, 10));
+        final int precision = 7;
+        final long[] compactCover = Polyfill.compactCover(rings, precision);
+        long cellCount = 0;
+        for (final long geohash : compactCover) {
+            Assert.assertTrue(LongCodec.precision(geohash) <= precision);
+            cellCount += 1L << (LongCodec.BITS_PER_CHARACTER * (precision - LongCodec.precision(geohash)));
+        }
+        Assert.assertTrue(cellCount > 50_000_000);
+        Assert.assertTrue(compactCover.length < Polyfill.boundaryCellCount(rings, precision) * 32);
+        final long center = LongCodec.encode(45, 10, precision);
+        final long outside = LongCodec.encode(45, 25, precision);
+        Assert.assertTrue(Arrays.stream(compactCover).anyMatch(cell -> GeohashSets.covers(cell, center)));
+        Assert.assertFalse(Arrays.stream(compactCover).anyMatch(cell -> GeohashSets.covers(cell, outside)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCover_invalidRing() {
+        Polyfill.cover(Collections.singletonList(new double[] { 1, 2, 3, 4 }), 5);
+    }
+}
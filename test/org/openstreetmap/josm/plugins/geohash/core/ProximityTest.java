@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Grabtaxi Holdings PTE LTE (GRAB), All rights reserved.
+ *
+ * Use of this source code is governed by an MIT-style license that can be found in the LICENSE file.
+ *
+ */
+package org.openstreetmap.josm.plugins.geohash.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.LongStream;
+import net.exfidefortis.map.Latitude;
+import net.exfidefortis.map.Longitude;
+import net.exfidefortis.map.Point;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ *
+ *
+ * @author agent
+ */
+public class ProximityTest {
+
+    private static final int SAMPLES_PER_EDGE = 200;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Point point(final double latitude, final double longitude) {
+        return new Point(Longitude.forDegrees(longitude), Latitude.forDegrees(latitude));
+    }
+
+    private static double distance(final double latitude1, final double longitude1, final double latitude2,
+            final double longitude2) {
+        final double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        final double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        final double a = sinLatitude * sinLatitude + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * PointIndex.EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /*
+     * Returns the smallest distance between the given location and the samples of the boundary of the given geohash.
+     */
+    private static double sampledDistance(final double latitude, final double longitude, final long geohash) {
+        final double[] bounds = new double[4];
+        LongCodec.decode(geohash, bounds);
+        double distance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i <= SAMPLES_PER_EDGE; i++) {
+            final double sampleLatitude = bounds[LongCodec.SOUTH]
+                    + (bounds[LongCodec.NORTH] - bounds[LongCodec.SOUTH]) * i / SAMPLES_PER_EDGE;
+            final double sampleLongitude = bounds[LongCodec.WEST]
+                    + (bounds[LongCodec.EAST] - bounds[LongCodec.WEST]) * i / SAMPLES_PER_EDGE;
+            distance = Math.min(distance, distance(latitude, longitude, sampleLatitude, bounds[LongCodec.WEST]));
+            distance = Math.min(distance, distance(latitude, longitude, sampleLatitude, bounds[LongCodec.EAST]));
+            distance = Math.min(distance, distance(latitude, longitude, bounds[LongCodec.SOUTH], sampleLongitude));
+            distance = Math.min(distance, distance(latitude, longitude, bounds[LongCodec.NORTH], sampleLongitude));
+        }
+        return distance;
+    }
+
+    private static void assertCover(final double latitude, final double longitude, final double meters,
+            final int precision) {
+        final long[] cover = Proximity.cover(point(latitude, longitude), meters, precision);
+        final long[] sorted = cover.clone();
+        LongCodec.sort(sorted);
+        Assert.assertArrayEquals(sorted, cover);
+        Assert.assertEquals(cover.length, LongStream.of(cover).distinct().count());
+        // every geohash of the cover has a location within the radius...
+        final double width = LongCodec.width(precision) * Math.PI / 180 * PointIndex.EARTH_RADIUS;
+        for (final long geohash : cover) {
+            final double nearest = GeohashSets.covers(geohash, LongCodec.encode(latitude, longitude,
+                    LongCodec.MAX_PRECISION)) ? 0 : sampledDistance(latitude, longitude, geohash);
+            Assert.assertTrue(nearest <= meters + width / SAMPLES_PER_EDGE + 1e-6);
+        }
+        // ...and every location within the radius lies in a geohash of the cover
+        final Proximity proximity = new Proximity(point(latitude, longitude), meters);
+        final Random random = new Random(8);
+        for (int i = 0; i < 2000; i++) {
+            final double bearing = random.nextDouble() * 2 * Math.PI;
+            final double angle = Math.sqrt(random.nextDouble()) * meters / PointIndex.EARTH_RADIUS;
+            final double phi = Math.toRadians(latitude);
+            final double sampleLatitude = Math.asin(Math.sin(phi) * Math.cos(angle)
+                    + Math.cos(phi) * Math.sin(angle) * Math.cos(bearing));
+            final double sampleLongitude = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angle)
+                    * Math.cos(phi), Math.cos(angle) - Math.sin(phi) * Math.sin(sampleLatitude));
+            final double sampleLatitudeDegrees = Math.toDegrees(sampleLatitude);
+            final double sampleLongitudeDegrees = Math.IEEEremainder(Math.toDegrees(sampleLongitude), 360);
+            final long geohash = LongCodec.encode(sampleLatitudeDegrees, sampleLongitudeDegrees, precision);
+            Assert.assertTrue(LongStream.of(cover).anyMatch(g -> g == geohash));
+            Assert.assertTrue(proximity.contains(sampleLatitudeDegrees, sampleLongitudeDegrees));
+        }
+    }
+
+    @Test
+    public void testCover() {
+        assertCover(52.52, 13.405, 5_000, 7);
+        assertCover(-33.87, 151.21, 800, 8);
+        assertCover(1.29, 103.85, 40_000, 5);
+        assertCover(0, 0, 0, 6);
+        // across the antimeridian and around the poles
+        assertCover(-17.7, 179.99, 60_000, 5);
+        assertCover(89.9, 40, 50_000, 4);
+        assertCover(-88.5, -100, 400_000, 3);
+    }
+
+    @Test
+    public void testCover_excludesTheBoundingBoxCorners() {
+        final long[] cover = Proximity.cover(point(52.52, 13.405), 5_000, 7);
+        final long corner = LongCodec.encode(52.52 + 0.044, 13.405 + 0.073, 7);
+        Assert.assertFalse(LongStream.of(cover).anyMatch(geohash -> geohash == corner));
+        final long[] compact = new Proximity(point(52.52, 13.405), 5_000).compactCover(7);
+        Assert.assertArrayEquals(cover, GeohashSets.expand(compact, 7));
+    }
+
+    @Test
+    public void testFilter() throws IOException {
+        final Random random = new Random(9);
+        final long[] keys = new long[100_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = LongCodec.encode(52 + random.nextDouble(), 13 + random.nextDouble(), 4 + random.nextInt(6));
+        }
+        LongCodec.sort(keys);
+        final long[] distinct = LongStream.of(keys).distinct().toArray();
+        final Path path = folder.newFile().toPath();
+        try (GeohashStore.Builder builder = new GeohashStore.Builder(path, Long.BYTES)) {
+            for (final long key : distinct) {
+                builder.add(key, key);
+            }
+        }
+        final Proximity proximity = new Proximity(point(52.5, 13.4), 3_000);
+        try (GeohashStore store = GeohashStore.open(path)) {
+            final long[] expected = LongStream.range(0, distinct.length).filter(i -> proximity.test(distinct[(int) i]))
+                    .toArray();
+            Assert.assertTrue(expected.length > 100);
+            Assert.assertArrayEquals(expected, proximity.filter(store));
+        }
+        Assert.assertTrue(proximity.test(LongCodec.WORLD));
+        Assert.assertFalse(proximity.test(LongCodec.fromString("u33e")));
+        Assert.assertEquals(0, Arrays.stream(keys).filter(new Proximity(point(-52.5, 13.4), 3_000)).count());
+    }
+}